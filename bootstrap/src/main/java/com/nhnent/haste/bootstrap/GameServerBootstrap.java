@@ -156,6 +156,24 @@ public class GameServerBootstrap {
                 .application(application)
                 .listenPort(udpConfig.option(UDPOption.LISTEN_PORT))
                 .clientStartPort(udpConfig.option(UDPOption.ClIENT_PORT))
+                .reusePort(udpConfig.option(UDPOption.REUSE_PORT))
+                .peerMigration(udpConfig.option(UDPOption.PEER_MIGRATION))
+                .readBudgetDatagrams(udpConfig.option(UDPOption.READ_BUDGET_DATAGRAMS))
+                .readBudgetBytes(udpConfig.option(UDPOption.READ_BUDGET_BYTES))
+                .handshakeThreads(udpConfig.option(UDPOption.HANDSHAKE_THREADS))
+                .keyPairPoolSize(udpConfig.option(UDPOption.KEY_PAIR_POOL_SIZE))
+                .connectionCookie(udpConfig.option(UDPOption.CONNECTION_COOKIE))
+                .connectionRatePerAddress(udpConfig.option(UDPOption.CONNECTION_RATE_PER_ADDRESS))
+                .connectionBurstPerAddress(udpConfig.option(UDPOption.CONNECTION_BURST_PER_ADDRESS))
+                .ackDelay(udpConfig.option(UDPOption.ACK_DELAY_MILLISECONDS))
+                .sendInterval(udpConfig.option(UDPOption.SEND_INTERVAL_MILLISECONDS))
+                .flushDelay(udpConfig.option(UDPOption.FLUSH_DELAY_MILLISECONDS))
+                .congestionControl(udpConfig.option(UDPOption.CONGESTION_CONTROL))
+                .minimumRetransmissionTimeout(udpConfig.option(UDPOption.MIN_RTO_MILLISECONDS))
+                .maximumRetransmissionTimeout(udpConfig.option(UDPOption.MAX_RTO_MILLISECONDS))
+                .fastRetransmitThreshold(udpConfig.option(UDPOption.FAST_RETRANSMIT_THRESHOLD))
+                .maximumReassemblyBytesPerPeer(udpConfig.option(UDPOption.MAX_REASSEMBLY_BYTES_PER_PEER))
+                .maximumReassemblyBytes(udpConfig.option(UDPOption.MAX_REASSEMBLY_BYTES))
                 .sendBufSize(udpConfig.option(UDPOption.SO_SNDBUF))
                 .recvBufSize(udpConfig.option(UDPOption.SO_RCVBUF))
                 .maxConnnection(udpConfig.option(UDPOption.MAX_CONNNECTION))
@@ -167,7 +185,7 @@ public class GameServerBootstrap {
 
         udpTransport = builder.build();
 
-        udpEventGroup = new NioEventLoopGroup(udpTransport);
+        udpEventGroup = new NioEventLoopGroup(udpTransport, null, udpConfig.option(UDPOption.WAIT_STRATEGY));
 
         udpEventGroup.start();
     }
@@ -0,0 +1,55 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sockets are read by dedicated threads which block on receiving, and they wake up the event loop
+ * when a datagram is received. The event loop parks until it is woken up or the next timeout,
+ * so that a datagram is delivered without the delay of polling.
+ * It costs one more thread and a handoff per socket.
+ */
+public final class BlockingReceiveWaitStrategy implements WaitStrategy {
+    @Override
+    public int await(Selector selector, long timeoutMillis) {
+        if (timeoutMillis == 0)
+            return 0;
+
+        if (timeoutMillis < 0) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        }
+
+        return 0;
+    }
+
+    @Override
+    public void wakeup(Selector selector, Thread thread) {
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return true;
+    }
+}
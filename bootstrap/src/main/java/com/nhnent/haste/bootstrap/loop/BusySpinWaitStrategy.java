@@ -0,0 +1,41 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Never block, and poll the selector by {@link Selector#selectNow()} continuously.
+ * It gives the lowest latency, but an event loop occupies a CPU core entirely.
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public int await(Selector selector, long timeoutMillis) throws IOException {
+        return selector.selectNow();
+    }
+
+    @Override
+    public void wakeup(Selector selector, Thread thread) {
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return false;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import com.nhnent.haste.transport.Timeout;
+import com.nhnent.haste.transport.TimeoutTask;
+
+/**
+ * A hashed timing wheel which expires {@link Timeout}s in the event loop thread.
+ * Each bucket of the wheel is a doubly linked list, so scheduling and canceling a timeout is O(1),
+ * and an event loop only touches the buckets which are passed since the last expiration.
+ * This class is not thread-safe, all methods must be called in the owner event loop thread.
+ */
+final class HashedTimingWheel {
+    static final int DEFAULT_WHEEL_SIZE = 512;
+    static final long DEFAULT_TICK_DURATION = 1;
+
+    private final Entry[] wheel;
+    private final int mask;
+    private final long tickDuration;
+
+    private long lastTick;
+    private int size;
+
+    /**
+     * Buckets of ticks from {@code lastTick + 1} to it are empty, so that looking up the next slot resumes from it
+     * instead of scanning the whole wheel. It only moves back when a timeout is scheduled before it.
+     */
+    private long cursorTick;
+
+    HashedTimingWheel(long currentTime) {
+        this(DEFAULT_WHEEL_SIZE, DEFAULT_TICK_DURATION, currentTime);
+    }
+
+    HashedTimingWheel(int wheelSize, long tickDuration, long currentTime) {
+        if (wheelSize <= 0)
+            throw new IllegalArgumentException("wheelSize must be greater than zero");
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("tickDuration must be greater than zero");
+
+        int normalizedSize = 1;
+        while (normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+
+        this.wheel = new Entry[normalizedSize];
+        this.mask = normalizedSize - 1;
+        this.tickDuration = tickDuration;
+        this.lastTick = currentTime / tickDuration;
+        this.cursorTick = lastTick + 1;
+    }
+
+    Timeout newTimeout(TimeoutTask task) {
+        if (task == null)
+            throw new NullPointerException("task");
+
+        return new Entry(this, task);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the delay until the next slot which has any timeout.
+     *
+     * @param currentTime Current time.
+     * @return The delay in milliseconds, or {@code -1} if there is no scheduled timeout.
+     */
+    long delayToNextSlot(long currentTime) {
+        if (size == 0)
+            return -1;
+
+        long tick = Math.max(cursorTick, lastTick + 1);
+        long lastSlotTick = lastTick + wheel.length;
+
+        while (tick < lastSlotTick && wheel[(int) (tick & mask)] == null) {
+            tick++;
+        }
+
+        cursorTick = tick;
+
+        long delay = tick * tickDuration - currentTime;
+        return delay < 0 ? 0 : delay;
+    }
+
+    /**
+     * Run all tasks of which deadline was reached.
+     *
+     * @param currentTime Current time.
+     * @return The count of expired timeouts.
+     */
+    int expire(long currentTime) {
+        long currentTick = currentTime / tickDuration;
+        long previousTick = lastTick;
+
+        if (currentTick <= previousTick)
+            return 0;
+
+        // Timeouts which are scheduled while expiring are placed after the current tick.
+        lastTick = currentTick;
+
+        if (size == 0)
+            return 0;
+
+        long tick = previousTick + 1;
+        if (currentTick - previousTick > wheel.length) {
+            // Visit every bucket only once although the loop was stalled more than a round.
+            tick = currentTick - wheel.length + 1;
+        }
+
+        int expired = 0;
+        for (; tick <= currentTick && size > 0; tick++) {
+            expired += expireBucket((int) (tick & mask), currentTick, currentTime);
+        }
+
+        return expired;
+    }
+
+    private int expireBucket(int bucket, long currentTick, long currentTime) {
+        int expired = 0;
+        Entry entry = wheel[bucket];
+
+        while (entry != null) {
+            Entry next = entry.next;
+
+            if (entry.tick <= currentTick) {
+                remove(entry);
+                expired++;
+                entry.task.run(entry, currentTime);
+
+                // The task can cancel or reschedule other timeouts, then restart from the head of this bucket.
+                if (next != null && next.bucket != bucket) {
+                    next = wheel[bucket];
+                }
+            }
+
+            entry = next;
+        }
+
+        return expired;
+    }
+
+    private void schedule(Entry entry, long deadline) {
+        if (entry.isScheduled()) {
+            remove(entry);
+        }
+
+        long tick = (deadline + tickDuration - 1) / tickDuration;
+        if (tick <= lastTick) {
+            tick = lastTick + 1;
+        }
+
+        int bucket = (int) (tick & mask);
+
+        // A timeout after a round is in the same bucket as the slot of this round.
+        long slotTick = lastTick + 1 + ((tick - lastTick - 1) & mask);
+        if (slotTick < cursorTick) {
+            cursorTick = slotTick;
+        }
+
+        entry.deadline = deadline;
+        entry.tick = tick;
+        entry.bucket = bucket;
+
+        Entry head = wheel[bucket];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        wheel[bucket] = entry;
+
+        size++;
+    }
+
+    private void remove(Entry entry) {
+        Entry prev = entry.prev;
+        Entry next = entry.next;
+
+        if (prev != null) {
+            prev.next = next;
+        } else {
+            wheel[entry.bucket] = next;
+        }
+
+        if (next != null) {
+            next.prev = prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = -1;
+
+        size--;
+    }
+
+    private static final class Entry implements Timeout {
+        private final HashedTimingWheel timingWheel;
+        private final TimeoutTask task;
+
+        private long deadline;
+        private long tick;
+        private int bucket = -1;
+
+        private Entry prev;
+        private Entry next;
+
+        Entry(HashedTimingWheel timingWheel, TimeoutTask task) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+        }
+
+        @Override
+        public TimeoutTask task() {
+            return task;
+        }
+
+        @Override
+        public long deadline() {
+            return deadline;
+        }
+
+        @Override
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+
+        @Override
+        public void schedule(long deadline) {
+            timingWheel.schedule(this, deadline);
+        }
+
+        @Override
+        public void cancel() {
+            if (isScheduled()) {
+                timingWheel.remove(this);
+            }
+        }
+    }
+}
@@ -19,6 +19,9 @@ package com.nhnent.haste.bootstrap.loop;
 import com.nhnent.haste.common.Check;
 import com.nhnent.haste.common.EnvironmentTimer;
 import com.nhnent.haste.transport.EventExecutorGroup;
+import com.nhnent.haste.transport.EventLoopMetrics;
+import com.nhnent.haste.transport.Timeout;
+import com.nhnent.haste.transport.TimeoutTask;
 import com.nhnent.haste.transport.TransportProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,31 +33,57 @@ import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NioEventLoop implements EventLoop {
     private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
 
     private static final int CLOSE_WAIT_MS = 500;
 
+    private static final int MAX_TASKS_PER_ITERATION = 1024;
+
     private boolean isRunning = true;
 
     private final EventExecutorGroup parent;
     private final ExecutorService executorService;
     private final Selector selector;
+    private final WaitStrategy waitStrategy;
     private SelectedSelectionKeySet selectedKeys;
 
+    private volatile Thread thread;
+
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * It is set by the first wakeup while the event loop waits, and following wakeups are skipped.
+     */
+    private final AtomicBoolean wakenUp = new AtomicBoolean(false);
+
+    private final NioEventLoopMetrics metrics = new NioEventLoopMetrics();
+
+    private final HashedTimingWheel timingWheel = new HashedTimingWheel(EnvironmentTimer.currentTimeMillis());
+
     private TransportProxy transportProxy;
 
     private long selectorTimeout = 0;
 
     public NioEventLoop(EventExecutorGroup parent, ExecutorService executorService) throws IOException {
+        this(parent, executorService, new SelectWaitStrategy());
+    }
+
+    public NioEventLoop(EventExecutorGroup parent, ExecutorService executorService, WaitStrategy waitStrategy) throws IOException {
         Check.NotNull(parent, "parent");
         Check.NotNull(executorService, "executorService");
+        Check.NotNull(waitStrategy, "waitStrategy");
 
         this.parent = parent;
         this.executorService = executorService;
+        this.waitStrategy = waitStrategy;
         selector = SelectorProvider.provider().openSelector();
 
         try {
@@ -111,30 +140,110 @@ public class NioEventLoop implements EventLoop {
     }
 
     private void run() {
+        thread = Thread.currentThread();
+
         while (isRunning) {
             if (Thread.currentThread().isInterrupted())
                 break;
 
-            select(selectorTimeout);
+            long startTime = System.nanoTime();
+
+            select(startTime);
+
+            long readStartTime = System.nanoTime();
+            long currentTime = EnvironmentTimer.currentTimeMillis();
+
+            int datagrams;
+            if (waitStrategy.isBlockingReceive()) {
+                datagrams = transportProxy.read(currentTime);
+            } else {
+                datagrams = processKeys(currentTime);
+            }
+
+            long taskStartTime = System.nanoTime();
+
+            runTasks();
 
-            processKeys();
+            long sendStartTime = System.nanoTime();
+
+            processTimeouts(currentTime);
             processSend();
+
+            long endTime = System.nanoTime();
+
+            metrics.recordIteration(startTime, readStartTime, taskStartTime, sendStartTime, endTime, datagrams);
         }
     }
 
-    private void select(long timeoutMills) {
+    /**
+     * Wait for selected keys until the next slot of the timing wheel by the wait strategy.
+     * The selector timeout is used as the upper bound of waiting, and zero means no bound.
+     *
+     * @param startTime The nano time when waiting started, which is used to measure the lag of waking up.
+     */
+    private void select(long startTime) {
         try {
-            selector.select(timeoutMills);
+            long timeoutMillis = selectorTimeout == 0 ? -1 : selectorTimeout;
+            long delayMillis = timingWheel.delayToNextSlot(EnvironmentTimer.currentTimeMillis());
+
+            if (delayMillis >= 0 && (timeoutMillis < 0 || delayMillis < timeoutMillis)) {
+                timeoutMillis = delayMillis;
+            }
+
+            if (!taskQueue.isEmpty()) {
+                timeoutMillis = 0;
+            }
+
+            waitStrategy.await(selector, timeoutMillis);
+
+            if (timeoutMillis >= 0) {
+                // Waking up earlier than the timeout is recorded as no lag.
+                metrics.recordLoopLag(System.nanoTime() - startTime - TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            }
         } catch (IOException e) {
             logger.error("Failed to select", e);
+        } finally {
+            // Wakeups after this line are not skipped, so nothing which arrives while processing is missed.
+            wakenUp.set(false);
         }
     }
 
-    private void processKeys() {
-        processKeys(selectedKeys.flip(), EnvironmentTimer.currentTimeMillis());
+    private void runTasks() {
+        for (int i = 0; i < MAX_TASKS_PER_ITERATION; i++) {
+            Runnable task = taskQueue.poll();
+            if (task == null)
+                break;
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("Raised exception when running a task", t);
+            }
+        }
     }
 
-    private void processKeys(SelectionKey[] selectedKeys, long currentTime) {
+    private int processKeys(long currentTime) {
+        if (selectedKeys != null) {
+            return processKeys(selectedKeys.flip(), currentTime);
+        } else {
+            int datagrams = 0;
+            // The selector could not be instrumented, for instance sun.nio.ch is not opened since Java 9.
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey k = iterator.next();
+                iterator.remove();
+                datagrams += processKey(k, currentTime);
+            }
+            return datagrams;
+        }
+    }
+
+    private void processTimeouts(long currentTime) {
+        timingWheel.expire(currentTime);
+    }
+
+    private int processKeys(SelectionKey[] selectedKeys, long currentTime) {
+        int datagrams = 0;
         for (int i = 0; ; i++) {
             final SelectionKey k = selectedKeys[i];
             if (k == null) {
@@ -142,24 +251,27 @@ public class NioEventLoop implements EventLoop {
             }
 
             selectedKeys[i] = null;
-            processKey(k, currentTime);
+            datagrams += processKey(k, currentTime);
         }
+        return datagrams;
     }
 
     private void processSend() {
         transportProxy.send(EnvironmentTimer.currentTimeMillis());
     }
 
-    private void processKey(SelectionKey key, long currentTime) {
+    /**
+     * @return The count of read datagrams.
+     */
+    private int processKey(SelectionKey key, long currentTime) {
         if (!key.isValid())
-            return;
+            return 0;
 
         int readyOps = key.readyOps();
 
         switch (readyOps) {
             case SelectionKey.OP_READ:
-                transportProxy.read(currentTime);
-                break;
+                return transportProxy.read(currentTime);
             case SelectionKey.OP_ACCEPT:
                 transportProxy.accept(currentTime);
                 break;
@@ -169,6 +281,7 @@ public class NioEventLoop implements EventLoop {
             default:
                 break;
         }
+        return 0;
     }
 
     @Override
@@ -204,4 +317,42 @@ public class NioEventLoop implements EventLoop {
     public void setSelectorTimeout(long milliseconds) {
         this.selectorTimeout = milliseconds;
     }
+
+    @Override
+    public Timeout newTimeout(TimeoutTask task) {
+        return timingWheel.newTimeout(task);
+    }
+
+    @Override
+    public void wakeup() {
+        if (wakenUp.compareAndSet(false, true)) {
+            waitStrategy.wakeup(selector, thread);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Check.NotNull(task, "task");
+
+        taskQueue.offer(task);
+
+        if (!inEventLoop()) {
+            wakeup();
+        }
+    }
+
+    @Override
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return waitStrategy.isBlockingReceive();
+    }
 }
\ No newline at end of file
@@ -35,13 +35,27 @@ public class NioEventLoopGroup implements EventExecutorGroup, EventLoopGroup {
 
     private final Transport transport;
 
+    private final WaitStrategy waitStrategy;
+
     public NioEventLoopGroup(Transport transport) {
         this(transport, null);
     }
 
     public NioEventLoopGroup(Transport transport, ThreadFactory threadFactory) {
+        this(transport, threadFactory, null);
+    }
+
+    /**
+     * @param waitStrategy The wait strategy which is shared by all event loops,
+     *                     {@link SelectWaitStrategy} is used if it is {@code null}.
+     */
+    public NioEventLoopGroup(Transport transport, ThreadFactory threadFactory, WaitStrategy waitStrategy) {
         this.transport = transport;
 
+        if (waitStrategy == null)
+            waitStrategy = new SelectWaitStrategy();
+        this.waitStrategy = waitStrategy;
+
         THREAD_COUNT = transport.threadCount();
 
         if (threadFactory == null)
@@ -63,7 +77,7 @@ public class NioEventLoopGroup implements EventExecutorGroup, EventLoopGroup {
 
     protected NioEventLoop newEventLoop(ExecutorService executorService) {
         try {
-            return new NioEventLoop(this, executorService);
+            return new NioEventLoop(this, executorService, waitStrategy);
         } catch (Exception e) {
             return null;
         }
@@ -0,0 +1,92 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import com.nhnent.haste.common.Histogram;
+import com.nhnent.haste.transport.EventLoopMetrics;
+
+/**
+ * The metrics of {@link NioEventLoop}, which are recorded by the event loop thread.
+ */
+final class NioEventLoopMetrics implements EventLoopMetrics {
+    private final Histogram iterationTime = new Histogram();
+    private final Histogram selectTime = new Histogram();
+    private final Histogram readTime = new Histogram();
+    private final Histogram taskTime = new Histogram();
+    private final Histogram sendTime = new Histogram();
+    private final Histogram workTime = new Histogram();
+    private final Histogram datagramsPerIteration = new Histogram();
+    private final Histogram loopLag = new Histogram();
+
+    /**
+     * Record an iteration by the nano times of its steps.
+     */
+    void recordIteration(long startTime, long readStartTime, long taskStartTime, long sendStartTime, long endTime, int datagrams) {
+        iterationTime.record(endTime - startTime);
+        selectTime.record(readStartTime - startTime);
+        readTime.record(taskStartTime - readStartTime);
+        taskTime.record(sendStartTime - taskStartTime);
+        sendTime.record(endTime - sendStartTime);
+        workTime.record(endTime - readStartTime);
+        datagramsPerIteration.record(datagrams);
+    }
+
+    void recordLoopLag(long nanos) {
+        loopLag.record(nanos);
+    }
+
+    @Override
+    public Histogram iterationTime() {
+        return iterationTime;
+    }
+
+    @Override
+    public Histogram selectTime() {
+        return selectTime;
+    }
+
+    @Override
+    public Histogram readTime() {
+        return readTime;
+    }
+
+    @Override
+    public Histogram taskTime() {
+        return taskTime;
+    }
+
+    @Override
+    public Histogram sendTime() {
+        return sendTime;
+    }
+
+    @Override
+    public Histogram workTime() {
+        return workTime;
+    }
+
+    @Override
+    public Histogram datagramsPerIteration() {
+        return datagramsPerIteration;
+    }
+
+    @Override
+    public Histogram loopLag() {
+        return loopLag;
+    }
+}
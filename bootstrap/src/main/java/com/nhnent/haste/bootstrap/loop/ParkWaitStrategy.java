@@ -0,0 +1,70 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Poll the selector by {@link Selector#selectNow()}, and park the thread for a short time if no event occurs.
+ * The park time bounds the latency of receiving, and the thread is unparked when the event loop is woken up.
+ */
+public final class ParkWaitStrategy implements WaitStrategy {
+    private static final long DEFAULT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final long parkNanos;
+
+    public ParkWaitStrategy() {
+        this(DEFAULT_PARK_NANOS);
+    }
+
+    public ParkWaitStrategy(long parkNanos) {
+        if (parkNanos <= 0)
+            throw new IllegalArgumentException("parkNanos should be larger than zero");
+
+        this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public int await(Selector selector, long timeoutMillis) throws IOException {
+        int selected = selector.selectNow();
+        if (selected > 0 || timeoutMillis == 0)
+            return selected;
+
+        long nanos = parkNanos;
+        if (timeoutMillis > 0)
+            nanos = Math.min(nanos, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+
+        LockSupport.parkNanos(nanos);
+
+        return selector.selectNow();
+    }
+
+    @Override
+    public void wakeup(Selector selector, Thread thread) {
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return false;
+    }
+}
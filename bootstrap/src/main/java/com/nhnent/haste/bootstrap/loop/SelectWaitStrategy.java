@@ -0,0 +1,48 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Block on {@link Selector#select(long)} until an event occurs or the timeout elapses.
+ * It is the default strategy, and it uses the least CPU.
+ */
+public final class SelectWaitStrategy implements WaitStrategy {
+    @Override
+    public int await(Selector selector, long timeoutMillis) throws IOException {
+        if (timeoutMillis == 0)
+            return selector.selectNow();
+
+        if (timeoutMillis < 0)
+            return selector.select();
+
+        return selector.select(timeoutMillis);
+    }
+
+    @Override
+    public void wakeup(Selector selector, Thread thread) {
+        selector.wakeup();
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Poll the selector by {@link Selector#selectNow()} for the given number of spins,
+ * and yield the thread if no event occurs.
+ */
+public final class SpinYieldWaitStrategy implements WaitStrategy {
+    private static final int DEFAULT_SPINS = 100;
+
+    private final int spins;
+
+    public SpinYieldWaitStrategy() {
+        this(DEFAULT_SPINS);
+    }
+
+    public SpinYieldWaitStrategy(int spins) {
+        if (spins <= 0)
+            throw new IllegalArgumentException("spins should be larger than zero");
+
+        this.spins = spins;
+    }
+
+    @Override
+    public int await(Selector selector, long timeoutMillis) throws IOException {
+        for (int i = 0; i < spins; i++) {
+            int selected = selector.selectNow();
+            if (selected > 0 || timeoutMillis == 0)
+                return selected;
+        }
+
+        Thread.yield();
+
+        return selector.selectNow();
+    }
+
+    @Override
+    public void wakeup(Selector selector, Thread thread) {
+    }
+
+    @Override
+    public boolean isBlockingReceive() {
+        return false;
+    }
+}
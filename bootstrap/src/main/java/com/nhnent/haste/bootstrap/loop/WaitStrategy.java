@@ -0,0 +1,54 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * A strategy of {@link NioEventLoop} for waiting I/O events and timeouts.
+ * It decides the tradeoff between the latency of an event loop and CPU usage.
+ * Implementations must be stateless, because an instance is shared by all event loops of a group.
+ */
+public interface WaitStrategy {
+    /**
+     * Wait for I/O events of the selector.
+     *
+     * @param selector        The selector of an event loop.
+     * @param timeoutMillis   The maximum time to wait. Zero means that it must not wait,
+     *                        and a negative value means that there is no bound.
+     * @return The number of selected keys.
+     * @throws IOException If an I/O error occurs
+     */
+    int await(Selector selector, long timeoutMillis) throws IOException;
+
+    /**
+     * Wake up the event loop thread which is waiting in {@link #await(Selector, long)}.
+     * It can be called in any thread.
+     *
+     * @param selector The selector of an event loop.
+     * @param thread   The thread of an event loop, it can be {@code null} if the event loop is not started yet.
+     */
+    void wakeup(Selector selector, Thread thread);
+
+    /**
+     * Return {@code true} if sockets are not registered in the selector, and are read by dedicated threads
+     * which block on receiving {@code false} otherwise.
+     */
+    boolean isBlockingReceive();
+}
@@ -16,7 +16,9 @@
 
 package com.nhnent.haste.bootstrap.options;
 
+import com.nhnent.haste.bootstrap.loop.SelectWaitStrategy;
 import com.nhnent.haste.common.Check;
+import com.nhnent.haste.transport.udp.NoCongestionController;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -36,6 +38,32 @@ public class UDPConfig {
 
         option(UDPOption.MSS_SIZE, 1300);
         option(UDPOption.MAX_CONNNECTION, 2000);
+
+        option(UDPOption.REUSE_PORT, false);
+        option(UDPOption.PEER_MIGRATION, false);
+        option(UDPOption.WAIT_STRATEGY, new SelectWaitStrategy());
+
+        option(UDPOption.READ_BUDGET_DATAGRAMS, 64);
+        option(UDPOption.READ_BUDGET_BYTES, 1024 * 64);
+
+        option(UDPOption.HANDSHAKE_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        option(UDPOption.KEY_PAIR_POOL_SIZE, 256);
+
+        option(UDPOption.CONNECTION_COOKIE, false);
+        option(UDPOption.CONNECTION_RATE_PER_ADDRESS, 0);
+        option(UDPOption.CONNECTION_BURST_PER_ADDRESS, 8);
+
+        option(UDPOption.ACK_DELAY_MILLISECONDS, 0);
+        option(UDPOption.SEND_INTERVAL_MILLISECONDS, 20);
+        option(UDPOption.FLUSH_DELAY_MILLISECONDS, 1);
+
+        option(UDPOption.CONGESTION_CONTROL, NoCongestionController.FACTORY);
+        option(UDPOption.MIN_RTO_MILLISECONDS, 20);
+        option(UDPOption.MAX_RTO_MILLISECONDS, 10000);
+        option(UDPOption.FAST_RETRANSMIT_THRESHOLD, 3);
+
+        option(UDPOption.MAX_REASSEMBLY_BYTES_PER_PEER, 1024 * 1024);
+        option(UDPOption.MAX_REASSEMBLY_BYTES, 64 * 1024 * 1024);
     }
 
     public <T> UDPConfig option(UDPOption<T> option, T value) {
@@ -16,6 +16,9 @@
 
 package com.nhnent.haste.bootstrap.options;
 
+import com.nhnent.haste.bootstrap.loop.WaitStrategy;
+import com.nhnent.haste.transport.udp.CongestionController;
+
 public class UDPOption<T> extends Constant {
 
     private static final ConstantOptions<UDPOption<Object>> pool;
@@ -45,5 +48,28 @@ public class UDPOption<T> extends Constant {
     public static final UDPOption<Integer> THREAD_COUNT = valueOf("THREAD_COUNT");
     public static final UDPOption<Integer> MSS_SIZE = valueOf("MSS_SIZE");
     public static final UDPOption<Integer> MAX_CONNNECTION = valueOf("MAX_CONNNECTION");
+    /**
+     * Shard the listen port by SO_REUSEPORT, which requires a Java 9 or later runtime.
+     * Otherwise the UDP transport fails to be built.
+     */
+    public static final UDPOption<Boolean> REUSE_PORT = valueOf("REUSE_PORT");
+    public static final UDPOption<Boolean> PEER_MIGRATION = valueOf("PEER_MIGRATION");
+    public static final UDPOption<WaitStrategy> WAIT_STRATEGY = valueOf("WAIT_STRATEGY");
+    public static final UDPOption<Integer> READ_BUDGET_DATAGRAMS = valueOf("READ_BUDGET_DATAGRAMS");
+    public static final UDPOption<Integer> READ_BUDGET_BYTES = valueOf("READ_BUDGET_BYTES");
+    public static final UDPOption<Integer> HANDSHAKE_THREADS = valueOf("HANDSHAKE_THREADS");
+    public static final UDPOption<Integer> KEY_PAIR_POOL_SIZE = valueOf("KEY_PAIR_POOL_SIZE");
+    public static final UDPOption<Boolean> CONNECTION_COOKIE = valueOf("CONNECTION_COOKIE");
+    public static final UDPOption<Integer> CONNECTION_RATE_PER_ADDRESS = valueOf("CONNECTION_RATE_PER_ADDRESS");
+    public static final UDPOption<Integer> CONNECTION_BURST_PER_ADDRESS = valueOf("CONNECTION_BURST_PER_ADDRESS");
+    public static final UDPOption<Integer> ACK_DELAY_MILLISECONDS = valueOf("ACK_DELAY_MILLISECONDS");
+    public static final UDPOption<Integer> SEND_INTERVAL_MILLISECONDS = valueOf("SEND_INTERVAL_MILLISECONDS");
+    public static final UDPOption<Integer> FLUSH_DELAY_MILLISECONDS = valueOf("FLUSH_DELAY_MILLISECONDS");
+    public static final UDPOption<CongestionController.Factory> CONGESTION_CONTROL = valueOf("CONGESTION_CONTROL");
+    public static final UDPOption<Integer> MIN_RTO_MILLISECONDS = valueOf("MIN_RTO_MILLISECONDS");
+    public static final UDPOption<Integer> MAX_RTO_MILLISECONDS = valueOf("MAX_RTO_MILLISECONDS");
+    public static final UDPOption<Integer> FAST_RETRANSMIT_THRESHOLD = valueOf("FAST_RETRANSMIT_THRESHOLD");
+    public static final UDPOption<Integer> MAX_REASSEMBLY_BYTES_PER_PEER = valueOf("MAX_REASSEMBLY_BYTES_PER_PEER");
+    public static final UDPOption<Integer> MAX_REASSEMBLY_BYTES = valueOf("MAX_REASSEMBLY_BYTES");
 
 }
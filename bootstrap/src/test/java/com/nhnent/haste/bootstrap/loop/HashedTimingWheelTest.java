@@ -0,0 +1,159 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.bootstrap.loop;
+
+import com.nhnent.haste.transport.Timeout;
+import com.nhnent.haste.transport.TimeoutTask;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HashedTimingWheelTest {
+    private static class RecordTask implements TimeoutTask {
+        private final List<Long> expiredTimes = new ArrayList<>();
+
+        @Override
+        public void run(Timeout timeout, long currentTime) {
+            expiredTimes.add(currentTime);
+        }
+    }
+
+    @Test
+    public void testExpireAtDeadline() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        RecordTask task = new RecordTask();
+
+        Timeout timeout = wheel.newTimeout(task);
+        timeout.schedule(10);
+
+        Assert.assertTrue(timeout.isScheduled());
+        Assert.assertEquals(10, wheel.delayToNextSlot(0));
+
+        Assert.assertEquals(0, wheel.expire(9));
+        Assert.assertEquals(1, wheel.expire(10));
+        Assert.assertFalse(timeout.isScheduled());
+        Assert.assertEquals(1, task.expiredTimes.size());
+        Assert.assertEquals(-1, wheel.delayToNextSlot(10));
+    }
+
+    @Test
+    public void testExpireAfterRounds() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        RecordTask task = new RecordTask();
+
+        Timeout timeout = wheel.newTimeout(task);
+        timeout.schedule(40);
+
+        for (long time = 1; time < 40; time++) {
+            Assert.assertEquals(0, wheel.expire(time));
+        }
+        Assert.assertEquals(1, wheel.expire(40));
+    }
+
+    @Test
+    public void testExpireAfterStall() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        RecordTask task = new RecordTask();
+
+        for (int i = 1; i <= 100; i++) {
+            wheel.newTimeout(task).schedule(i);
+        }
+
+        Assert.assertEquals(100, wheel.expire(1000));
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancelAndReschedule() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        RecordTask task = new RecordTask();
+
+        Timeout canceled = wheel.newTimeout(task);
+        canceled.schedule(5);
+        canceled.cancel();
+
+        Timeout rescheduled = wheel.newTimeout(task);
+        rescheduled.schedule(5);
+        rescheduled.schedule(8);
+
+        Assert.assertEquals(1, wheel.size());
+        Assert.assertEquals(0, wheel.expire(7));
+        Assert.assertEquals(1, wheel.expire(8));
+    }
+
+    @Test
+    public void testScheduleInPastExpiresAtNextTick() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 100);
+        RecordTask task = new RecordTask();
+
+        Timeout timeout = wheel.newTimeout(task);
+        timeout.schedule(50);
+
+        Assert.assertEquals(1, wheel.delayToNextSlot(100));
+        Assert.assertEquals(1, wheel.expire(101));
+    }
+
+    @Test
+    public void testDelayToNextSlotAfterEarlierSchedule() {
+        HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        RecordTask task = new RecordTask();
+
+        Timeout late = wheel.newTimeout(task);
+        late.schedule(12);
+        Assert.assertEquals(12, wheel.delayToNextSlot(0));
+
+        // A timeout before the slot which was found last is found again.
+        Timeout early = wheel.newTimeout(task);
+        early.schedule(5);
+        Assert.assertEquals(5, wheel.delayToNextSlot(0));
+
+        early.cancel();
+        late.cancel();
+
+        // A timeout after a round is placed in the bucket of tick 8 of this round.
+        Timeout afterRound = wheel.newTimeout(task);
+        afterRound.schedule(40);
+        Assert.assertEquals(8, wheel.delayToNextSlot(0));
+    }
+
+    @Test
+    public void testTaskCancelsOtherTimeoutInSameBucket() {
+        final HashedTimingWheel wheel = new HashedTimingWheel(16, 1, 0);
+        final RecordTask task = new RecordTask();
+        final Timeout other = wheel.newTimeout(task);
+        final Timeout last = wheel.newTimeout(task);
+
+        Timeout canceling = wheel.newTimeout(new TimeoutTask() {
+            @Override
+            public void run(Timeout timeout, long currentTime) {
+                other.cancel();
+            }
+        });
+
+        // Inserted at the head of the bucket, so the order is canceling, other, last.
+        last.schedule(3);
+        other.schedule(3);
+        canceling.schedule(3);
+
+        Assert.assertEquals(2, wheel.expire(3));
+        Assert.assertEquals(1, task.expiredTimes.size());
+        Assert.assertEquals(0, wheel.size());
+    }
+}
@@ -16,11 +16,24 @@
 
 package com.nhnent.haste.common;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 public final class CRC {
     public final static int CRC_LENGTH = 8;
 
+    private final static int SCRATCH_CAPACITY = 2048;
+
+    /**
+     * CRC32 of Java 7 can not be updated by {@link ByteBuffer}, so a direct buffer is copied to this array.
+     */
+    private final static ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[SCRATCH_CAPACITY];
+        }
+    };
+
     public static boolean Check(CRC32 crc32, byte[] buf, int length, int offset) {
         long crc = ByteRead.getLong(buf, offset);
 
@@ -31,6 +44,51 @@ public final class CRC {
         return crc == crc32.getValue();
     }
 
+    /**
+     * Check the CRC value at {@code offset} of the buffer, which is calculated from zero to {@code length}.
+     * Positions of the buffer are not changed.
+     */
+    public static boolean Check(CRC32 crc32, ByteBuffer buf, int length, int offset) {
+        if (buf.hasArray() && buf.arrayOffset() == 0)
+            return Check(crc32, buf.array(), length, offset);
+
+        long crc = buf.getLong(offset);
+
+        buf.putLong(offset, 0);
+
+        return crc == calculate(crc32, buf, length);
+    }
+
+    /**
+     * Write the CRC value at {@code offset} of the buffer, which is calculated from zero to {@code length}.
+     * Positions of the buffer are not changed.
+     */
+    public static void Write(CRC32 crc32, ByteBuffer buf, int length, int offset) {
+        if (buf.hasArray() && buf.arrayOffset() == 0) {
+            Write(crc32, buf.array(), length, offset);
+            return;
+        }
+
+        buf.putLong(offset, 0);
+        buf.putLong(offset, calculate(crc32, buf, length));
+    }
+
+    private static long calculate(CRC32 crc32, ByteBuffer buf, int length) {
+        byte[] bytes = scratch.get();
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            scratch.set(bytes);
+        }
+
+        ByteBuffer duplicated = buf.duplicate();
+        duplicated.clear();
+        duplicated.get(bytes, 0, length);
+
+        crc32.reset();
+        crc32.update(bytes, 0, length);
+        return crc32.getValue();
+    }
+
     public static void Write(CRC32 crc32, byte[] buf, int length, int offset) {
         ByteWrite.setLong(0, buf, offset);
 
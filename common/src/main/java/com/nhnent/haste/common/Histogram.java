@@ -0,0 +1,145 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with log-linear buckets, of which relative error is less than 12.5%.
+ * Values are recorded by a single thread without locks and allocation,
+ * and they can be read by any thread at the same time.
+ */
+public final class Histogram {
+    /**
+     * Every power of two is divided into 2^SUB_BUCKET_BITS buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return value < 0 ? 0 : (int) value;
+
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + (index & SUB_BUCKET_MASK)) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * Record a value. It must be called by only one thread. Negative values are recorded as zero.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        int index = bucketIndex(value);
+        buckets.lazySet(index, buckets.get(index) + 1);
+        count.lazySet(count.get() + 1);
+        sum.lazySet(sum.get() + value);
+
+        if (value > max.get())
+            max.lazySet(value);
+    }
+
+    /**
+     * Return the count of recorded values.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Return the sum of recorded values.
+     */
+    public long sum() {
+        return sum.get();
+    }
+
+    /**
+     * Return the mean of recorded values, or {@code 0} if no value was recorded.
+     */
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Return the maximum value which was recorded after the last {@link #getAndResetMax()}.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Return the maximum value which was recorded after the last call, and start a new interval.
+     * A value which is recorded at the same time may be counted in either interval.
+     */
+    public long getAndResetMax() {
+        return max.getAndSet(0);
+    }
+
+    /**
+     * Return the value at the percentile of recorded values. The value is the upper bound of the bucket,
+     * so it is never less than the actual value.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The value at the percentile, or {@code 0} if no value was recorded.
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile should be between 0 and 100");
+
+        long n = count.get();
+        if (n == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        if (rank < 1)
+            rank = 1;
+
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += buckets.get(i);
+            if (accumulated >= rank)
+                return bucketUpperBound(i);
+        }
+
+        // Buckets were updated after the count was read.
+        return max.get();
+    }
+}
@@ -19,6 +19,7 @@ package com.nhnent.haste.common;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 public class Crc32Test {
@@ -39,4 +40,25 @@ public class Crc32Test {
 
         Assert.assertTrue(CRC.Check(crc32, data, data.length, offset));
     }
+
+    @Test
+    public void testCrc32DirectBuffer() {
+        int offset = data.length - 8;
+
+        byte[] expected = data.clone();
+        CRC32 crc32 = new CRC32();
+        CRC.Write(crc32, expected, expected.length, offset);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+
+        CRC.Write(crc32, buffer, data.length, offset);
+
+        Assert.assertEquals(data.length, buffer.position());
+        Assert.assertEquals(ByteRead.getLong(expected, offset), buffer.getLong(offset));
+        Assert.assertTrue(CRC.Check(crc32, buffer, data.length, offset));
+
+        buffer.put(0, (byte) (buffer.get(0) + 1));
+        Assert.assertFalse(CRC.Check(crc32, buffer, data.length, offset));
+    }
 }
@@ -0,0 +1,73 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+    @Test
+    public void testBucketsAreContiguous() {
+        long previousUpperBound = -1;
+        for (int i = 0; i < 200; i++) {
+            long upperBound = Histogram.bucketUpperBound(i);
+            Assert.assertEquals(i, Histogram.bucketIndex(previousUpperBound + 1));
+            Assert.assertEquals(i, Histogram.bucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+
+        Assert.assertEquals(Long.MAX_VALUE, Histogram.bucketUpperBound(Histogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentile() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.percentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(500500, histogram.sum());
+        Assert.assertEquals(500.5, histogram.mean(), 0.0001);
+        Assert.assertEquals(1, histogram.percentile(0));
+        Assert.assertEquals(1000, histogram.max());
+
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        Assert.assertTrue(p50 >= 500 && p50 < 500 * 1.125);
+        Assert.assertTrue(p99 >= 990 && p99 < 990 * 1.125);
+        Assert.assertTrue(histogram.percentile(100) >= 1000);
+    }
+
+    @Test
+    public void testGetAndResetMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(42);
+
+        Assert.assertEquals(0, histogram.percentile(50));
+        Assert.assertEquals(42, histogram.getAndResetMax());
+        Assert.assertEquals(0, histogram.max());
+
+        histogram.record(7);
+        Assert.assertEquals(7, histogram.max());
+        Assert.assertEquals(3, histogram.count());
+    }
+}
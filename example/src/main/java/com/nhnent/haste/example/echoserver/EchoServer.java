@@ -18,7 +18,8 @@ package com.nhnent.haste.example.echoserver;
 
 import com.nhnent.haste.bootstrap.GameServerBootstrap;
 import com.nhnent.haste.bootstrap.options.UDPOption;
-import com.nhnent.haste.transport.MetricListener;
+import com.nhnent.haste.transport.EventLoopMetrics;
+import com.nhnent.haste.transport.ExtendedMetricListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +38,7 @@ public class EchoServer {
                 .option(UDPOption.THREAD_COUNT, 2)
                 .option(UDPOption.SO_RCVBUF, 1024)
                 .option(UDPOption.SO_SNDBUF, 1024)
-                .metricListener(new MetricListener() {
+                .metricListener(new ExtendedMetricListener() {
                     @Override
                     public long periodMilliseconds() {
                         return TimeUnit.MINUTES.toMillis(1);
@@ -47,6 +48,13 @@ public class EchoServer {
                     public void onReceive(int peerCount, double meanOfRoundTripTime, double meanOfRoundTripTimeDeviation) {
                         logger.info("Peer : {}, RTT : {}, RTT-D : {}", peerCount, meanOfRoundTripTime, meanOfRoundTripTimeDeviation);
                     }
+
+                    @Override
+                    public void onReceiveEventLoop(int eventLoopIndex, EventLoopMetrics metrics) {
+                        logger.info("EventLoop : {}, Work p99(ns) : {}, Datagrams p99 : {}, Max lag(ns) : {}",
+                                eventLoopIndex, metrics.workTime().percentile(99),
+                                metrics.datagramsPerIteration().percentile(99), metrics.loopLag().getAndResetMax());
+                    }
                 })
                 .bind(PORT).start();
     }
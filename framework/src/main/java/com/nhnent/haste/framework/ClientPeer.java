@@ -20,57 +20,80 @@ import com.nhnent.haste.common.Check;
 import com.nhnent.haste.framework.fiber.FiberFactory;
 import com.nhnent.haste.framework.security.AesCryptoProvider;
 import com.nhnent.haste.framework.security.CryptoProvider;
+import com.nhnent.haste.objectpool.AbstractPoolable;
+import com.nhnent.haste.objectpool.Handle;
+import com.nhnent.haste.objectpool.ObjectPool;
 import com.nhnent.haste.protocol.Protocol;
 import com.nhnent.haste.protocol.ReturnCode;
 import com.nhnent.haste.protocol.messages.*;
 import com.nhnent.haste.transport.ApplicationPeer;
 import com.nhnent.haste.transport.DisconnectReason;
 import com.nhnent.haste.transport.NetworkPeer;
+import com.nhnent.haste.transport.Payload;
 import com.nhnent.haste.transport.QoS;
+import com.nhnent.haste.transport.SendResult;
 import com.nhnent.haste.transport.state.ConnectionState;
 import org.jetlang.fibers.Fiber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+
 /**
  * Abstract base class for receiving a payload and disconnect message from {@link NetworkPeer}.
  */
 public abstract class ClientPeer implements ApplicationPeer {
     private static final Logger logger = LoggerFactory.getLogger(ClientPeer.class);
 
-    private class ReceiveRunnable implements Runnable {
-        private byte[] receivedData;
-        private int receivedDataLength;
+    /**
+     * Pooled, because it is created for every received payload. The payload is released after the handler returns.
+     */
+    private static final class ReceiveRunnable extends AbstractPoolable implements Runnable {
+        private final static int PRE_CREATE_OBJECT = 128;
+        private final static ObjectPool<ReceiveRunnable> pool = new ObjectPool<ReceiveRunnable>(true, PRE_CREATE_OBJECT) {
+            @Override
+            protected ReceiveRunnable newInstance(Handle handle) {
+                return new ReceiveRunnable(handle);
+            }
+        };
+
+        private final Handle handle;
+
+        private ClientPeer peer;
+        private Payload payload;
         private byte channel;
         private boolean isEncrypted;
         private QoS qos;
 
-        public ReceiveRunnable(byte[] data, int dataLength, byte channel, boolean isEncrypted, QoS qos) {
-            this.receivedData = data;
-            this.receivedDataLength = dataLength;
-            this.channel = channel;
-            this.isEncrypted = isEncrypted;
-            this.qos = qos;
+        private ReceiveRunnable(Handle handle) {
+            this.handle = handle;
         }
 
-        @Override
-        public void run() {
-            if (networkPeer == null) {
-                logger.warn("networkPeer is null");
-                return;
-            }
+        static ReceiveRunnable take(ClientPeer peer, Payload payload, byte channel, boolean isEncrypted, QoS qos) {
+            ReceiveRunnable runnable = pool.take();
+            runnable.peer = peer;
+            runnable.payload = payload;
+            runnable.channel = channel;
+            runnable.isEncrypted = isEncrypted;
+            runnable.qos = qos;
+            return runnable;
+        }
 
-            if (networkPeer.getConnectionState().isNotEqual(ConnectionState.CONNECTED)) {
-                logger.warn("networkPeer is not connected");
-                return;
-            }
+        @Override
+        protected Handle getHandle() {
+            return handle;
+        }
 
-            if (receivedData == null) {
-                logger.warn("receivedData is null when receiving");
-                return;
+        @Override
+        public void run() {
+            try {
+                peer.onReceived(payload, channel, isEncrypted, qos);
+            } finally {
+                payload.release();
+                payload = null;
+                peer = null;
+                release();
             }
-
-            ClientPeer.this.onReceived(receivedData, receivedDataLength, channel, isEncrypted, qos);
         }
     }
 
@@ -108,12 +131,27 @@ public abstract class ClientPeer implements ApplicationPeer {
     }
 
     @Override
+    public void internal_onReceive(Payload payload, byte channel, boolean isEncrypted, QoS qos) {
+        fiber.execute(ReceiveRunnable.take(this, payload, channel, isEncrypted, qos));
+    }
+
+    /**
+     * Receives a copy of a payload, for callers of the previous version which passed a byte array.
+     * It is not a part of {@link ApplicationPeer} anymore.
+     * @deprecated Use {@link #internal_onReceive(Payload, byte, boolean, QoS)}, which does not copy the payload.
+     */
+    @Deprecated
     public void internal_onReceive(byte[] data, int dataLength, byte channel, boolean isEncrypted, QoS qos) {
-        if (data.length < dataLength)
+        Payload payload = Payload.take();
+        if (payload == null) {
+            logger.error("Failed to take a payload : length[{}]", dataLength);
             return;
+        }
+
+        payload.copyBytes(data, 0, dataLength);
+        payload.setLength(dataLength);
 
-        ReceiveRunnable runnable = new ReceiveRunnable(data, dataLength, channel, isEncrypted, qos);
-        fiber.execute(runnable);
+        internal_onReceive(payload, channel, isEncrypted, qos);
     }
 
     @Override
@@ -125,18 +163,31 @@ public abstract class ClientPeer implements ApplicationPeer {
         networkPeer.disconnect(reason, detail);
     }
 
-    private void onReceived(byte[] payloadBytes, int payloadLength, byte channel, boolean isEncrypted, QoS qos) {
+    private void onReceived(Payload payload, byte channel, boolean isEncrypted, QoS qos) {
+        if (networkPeer == null) {
+            logger.warn("networkPeer is null");
+            return;
+        }
+
+        if (networkPeer.getConnectionState().isNotEqual(ConnectionState.CONNECTED)) {
+            logger.warn("networkPeer is not connected");
+            return;
+        }
+
+        // The pooled bytes are read in place through a read-only view, so that a protocol can not modify them.
+        ByteBuffer data = payload.asReadOnlyBuffer();
+
         if (isEncrypted) {
-            byte[] decryptedPayload = this.cryptoProvider.decrypt(payloadBytes, 0, payloadLength);
+            byte[] decryptedPayload = this.cryptoProvider.decrypt(payload.copyOf());
             if (decryptedPayload == null) {
                 if (logger.isWarnEnabled())
-                    logger.warn("Failed Encrypted Data : length[{}]", payloadLength);
+                    logger.warn("Failed Encrypted Data : length[{}]", payload.getLength());
                 return;
             }
-            payloadBytes = decryptedPayload;
+            data = ByteBuffer.wrap(decryptedPayload);
         }
 
-        MessageType type = this.protocol.getMessageType(payloadBytes);
+        MessageType type = this.protocol.getMessageType(data);
         switch (type) {
             case INITIAL_REQUEST:
                 // TODO Validate InitialRequest
@@ -148,7 +199,7 @@ public abstract class ClientPeer implements ApplicationPeer {
             case REQUEST_MESSAGE:
             case RESPONSE_MESSAGE:
             case EVENT_MESSAGE:
-                Message message = this.protocol.deserializeMessage(payloadBytes);
+                Message message = this.protocol.deserializeMessage(data);
                 if (message != null) {
                     if (logger.isTraceEnabled()) {
                         logger.trace("onReceived message : {}", message.toString());
@@ -211,21 +262,44 @@ public abstract class ClientPeer implements ApplicationPeer {
             return false;
         }
 
-        boolean result = networkPeer.enqueueOutgoingCommand(payload, payloadLength, channel, encrypt, qos);
+        SendResult result = networkPeer.enqueueOutgoingCommand(payload, payloadLength, channel, encrypt, qos);
+
+        switch (result) {
+            case QUEUED:
+                onSent(payload, channel, encrypt, qos);
+                return true;
+            case QUEUE_FULL:
+                onQueueFull(payload, channel, encrypt, qos);
+                return false;
+            default:
+                onFailedToSend(payload, channel, encrypt, qos);
+                return false;
+        }
+    }
 
-        if (result) {
-            onSent(payload, channel, encrypt, qos);
-        } else {
-            onFailedToSend(payload, channel, encrypt, qos);
+    /**
+     * Send messages which were sent before it without waiting for the send interval.
+     */
+    protected void flush() {
+        if (networkPeer == null) {
+            return;
         }
 
-        return result;
+        networkPeer.flush();
     }
 
     protected void onFailedToSend(byte[] payload, byte channel, boolean encrypt, QoS qos) {
         logger.error("ch[{}] Failed to send command!!", channel);
     }
 
+    /**
+     * Called when the payload was not sent, because too many payloads are waiting in the channel.
+     * The payload can be sent again later, or the peer can be disconnected as a slow consumer.
+     */
+    protected void onQueueFull(byte[] payload, byte channel, boolean encrypt, QoS qos) {
+        onFailedToSend(payload, channel, encrypt, qos);
+    }
+
     protected void onSent(byte[] payload, byte channel, boolean encrypt, QoS qos) {
     }
 
@@ -50,7 +50,13 @@ public abstract class ServerApplication implements Application {
 
     @Override
     public void onConnect(NetworkPeer networkPeer, Payload payload, byte channel) {
-        byte[] payloadBytes = payload.getBytes();
+        // The payload is pooled and its array is larger than its length, so only the received bytes are parsed.
+        byte[] payloadBytes = payload.copyOf();
+        if (payloadBytes.length == 0) {
+            networkPeer.disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Empty initial request");
+            logger.error("Failed to get initial request");
+            return;
+        }
 
         // TODO Improve to get protocol version. Because this method is different by protocol.
         Protocol protocol = ProtocolChooser.getProtocol(payloadBytes[0]);
@@ -60,7 +66,12 @@ public abstract class ServerApplication implements Application {
             return;
         }
 
-        InitialRequest initialRequest = protocol.deserializeInitialRequest(payloadBytes);
+        InitialRequest initialRequest;
+        try {
+            initialRequest = protocol.deserializeInitialRequest(payloadBytes);
+        } catch (IndexOutOfBoundsException e) {
+            initialRequest = null;
+        }
 
         if (initialRequest == null) {
             networkPeer.disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Invalid Data format");
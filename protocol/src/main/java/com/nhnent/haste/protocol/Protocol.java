@@ -21,11 +21,19 @@ import com.nhnent.haste.protocol.messages.InitialResponse;
 import com.nhnent.haste.protocol.messages.Message;
 import com.nhnent.haste.protocol.messages.MessageType;
 
+import java.nio.ByteBuffer;
+
 public interface Protocol {
     byte getVersion();
 
     MessageType getMessageType(byte[] data);
 
+    /**
+     * Return the type of the message from the position to the limit of the data, so that a read-only view of a pooled buffer
+     * can be read without copying. The position of the data is not changed.
+     */
+    MessageType getMessageType(ByteBuffer data);
+
     byte[] serialize(Message message);
 
     byte[] serialize(InitialRequest initialRequest);
@@ -36,6 +44,12 @@ public interface Protocol {
 
     Message deserializeMessage(byte[] data);
 
+    /**
+     * Deserialize the message from the position to the limit of the data, so that a read-only view of a pooled buffer
+     * can be read without copying. The position of the data is not changed, and the message does not refer to the data.
+     */
+    Message deserializeMessage(ByteBuffer data);
+
     InitialRequest deserializeInitialRequest(byte[] data);
 
     InitialResponse deserializeInitialResponse(byte[] data);
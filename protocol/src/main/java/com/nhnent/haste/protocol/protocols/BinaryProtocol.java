@@ -29,6 +29,8 @@ import com.nhnent.haste.protocol.messages.InitialResponse;
 import com.nhnent.haste.protocol.messages.Message;
 import com.nhnent.haste.protocol.messages.MessageType;
 
+import java.nio.ByteBuffer;
+
 public class BinaryProtocol implements Protocol {
     public static BinaryProtocol instance = new BinaryProtocol();
 
@@ -44,15 +46,26 @@ public class BinaryProtocol implements Protocol {
 
     @Override
     public MessageType getMessageType(byte[] data) {
-        if (data == null || data.length < 2) {
+        if (data == null) {
             return MessageType.NONE;
         }
 
-        if (data[0] != VERSION) {
-            throw new IllegalArgumentException("illegal version : " + data[0]);
+        return getMessageType(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public MessageType getMessageType(ByteBuffer data) {
+        if (data == null || data.remaining() < 2) {
+            return MessageType.NONE;
         }
 
-        return MessageType.getType(data[1]);
+        int offset = data.position();
+
+        if (data.get(offset) != VERSION) {
+            throw new IllegalArgumentException("illegal version : " + data.get(offset));
+        }
+
+        return MessageType.getType(data.get(offset + 1));
     }
 
     @Override
@@ -128,20 +141,25 @@ public class BinaryProtocol implements Protocol {
     public Message deserializeMessage(byte[] data) {
         Check.NotNull(data, "data");
 
-        int offset = 0;
-        byte version = data[offset++];
+        return deserializeMessage(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public Message deserializeMessage(ByteBuffer data) {
+        Check.NotNull(data, "data");
+
+        ByteBuffer buffer = data.duplicate();
+        byte version = buffer.get();
 
         if (version != VERSION) {
             throw new IllegalArgumentException("illegal version");
         }
 
-        Message message = null;
-        MessageType type = MessageType.getType(data[offset++]);
+        MessageType type = MessageType.getType(buffer.get());
 
-        short code = ByteRead.getShort(data, offset);
-        offset += 2;
-        byte[] payload = ByteRead.getBytes(data, offset);
-        offset += payload.length;
+        short code = buffer.getShort();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
 
         return Message.toMessage(type, code, DataObject.toDataObject(payload));
     }
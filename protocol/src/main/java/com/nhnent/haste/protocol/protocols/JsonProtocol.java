@@ -23,6 +23,8 @@ import com.nhnent.haste.protocol.messages.InitialResponse;
 import com.nhnent.haste.protocol.messages.Message;
 import com.nhnent.haste.protocol.messages.MessageType;
 
+import java.nio.ByteBuffer;
+
 public class JsonProtocol implements Protocol {
     public static JsonProtocol instance = new JsonProtocol();
 
@@ -41,6 +43,11 @@ public class JsonProtocol implements Protocol {
         throw new UnsupportedOperationException("JsonProtocol is not supported");
     }
 
+    @Override
+    public MessageType getMessageType(ByteBuffer data) {
+        throw new UnsupportedOperationException("JsonProtocol is not supported");
+    }
+
     @Override
     public byte[] serialize(Message message) {
         throw new UnsupportedOperationException("JsonProtocol is not supported");
@@ -66,6 +73,11 @@ public class JsonProtocol implements Protocol {
         throw new UnsupportedOperationException("JsonProtocol is not supported");
     }
 
+    @Override
+    public Message deserializeMessage(ByteBuffer data) {
+        throw new UnsupportedOperationException("JsonProtocol is not supported");
+    }
+
     @Override
     public InitialRequest deserializeInitialRequest(byte[] data) {
         throw new UnsupportedOperationException("JsonProtocol is not supported");
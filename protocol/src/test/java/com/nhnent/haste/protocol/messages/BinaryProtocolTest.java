@@ -28,6 +28,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class BinaryProtocolTest {
     static class CustomDataSchema extends DataSchema {
@@ -137,6 +138,37 @@ public class BinaryProtocolTest {
         Assert.assertEquals(CODE, message.getCode());
     }
 
+    @Test
+    public void testDeserializeRangeOfBuffer() {
+        final byte ID = 9;
+        final long UUID = 1234567891011L;
+        final short CODE = 1;
+
+        Protocol protocol = BinaryProtocol.instance;
+
+        CustomDataSchema data = new CustomDataSchema();
+        data.id = ID;
+        data.uuid = UUID;
+
+        byte[] serialized = data.eventSerialize(protocol.getVersion(), CODE).array();
+
+        // A pooled buffer has bytes of the previous use around the message.
+        byte[] buffer = new byte[serialized.length + 16];
+        Arrays.fill(buffer, (byte) 0x7F);
+        System.arraycopy(serialized, 0, buffer, 3, serialized.length);
+
+        ByteBuffer view = ByteBuffer.wrap(buffer, 3, serialized.length).slice().asReadOnlyBuffer();
+
+        Assert.assertEquals(MessageType.EVENT_MESSAGE, protocol.getMessageType(view));
+
+        Message message = protocol.deserializeMessage(view);
+        Assert.assertEquals(0, view.position());
+
+        Assert.assertEquals(CODE, message.getCode());
+        Assert.assertEquals(ID, message.getDataObject().get((byte) 0x29).value);
+        Assert.assertEquals(UUID, message.getDataObject().get((byte) 0x39).value);
+    }
+
     @Test
     public void testSerializeInitialResponse() {
         Protocol protocol = BinaryProtocol.instance;
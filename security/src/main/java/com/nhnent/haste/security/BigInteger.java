@@ -2844,4 +2844,131 @@ public class BigInteger {
         int word = magnitude[magnitude.length - 1 - wordNum];
         return ((word >> (n % 32)) & 1) > 0;
     }
+    /**
+     * Powers of a fixed base which are precomputed in Montgomery form, so that exponentiation of the base
+     * only needs one Montgomery multiplication per window of the exponent and no squaring.
+     * <br>
+     * table[i][d] = base^(d * 2^(windowBits * i)) * R mod m, where R = 2^(32 * n)
+     * <br>
+     * Exponents which are longer than the precomputed bits, negative exponents, and even moduli
+     * are computed by {@link BigInteger#modPow(BigInteger, BigInteger)}.
+     * The instance is immutable once it is created, so it can be shared by threads.
+     */
+    static final class FixedBasePowers {
+        private final BigInteger base;
+        private final BigInteger m;
+        private final int mDash;
+        private final boolean smallMontyModulus;
+        private final int windowBits;
+        private final int maxExponentBits;
+        private final int[][][] table;
+
+        FixedBasePowers(BigInteger base, BigInteger m, int maxExponentBits, int windowBits) {
+            if (m.sign < 1) {
+                throw new ArithmeticException("Modulus must be positive");
+            }
+
+            if (windowBits < 1 || windowBits > 8) {
+                throw new IllegalArgumentException("Window bits must be between 1 and 8");
+            }
+
+            this.base = base;
+            this.m = m;
+            this.windowBits = windowBits;
+            this.maxExponentBits = maxExponentBits;
+
+            int n = m.magnitude.length;
+            int powR = 32 * n;
+            this.smallMontyModulus = m.bitLength() + 2 <= powR;
+
+            if ((m.magnitude[n - 1] & 1) == 0 || m.equals(ONE) || maxExponentBits < 1) {
+                this.mDash = 0;
+                this.table = null;
+                return;
+            }
+
+            this.mDash = m.getMQuote();
+
+            int windows = (maxExponentBits + windowBits - 1) / windowBits;
+            int digits = 1 << windowBits;
+            int[] yAccum = new int[n + 1];
+
+            // g = base^(2^(windowBits * i)) * R mod m
+            int[] g = toMonty(base.mod(m).shiftLeft(powR).remainder(m), n);
+
+            table = new int[windows][digits][];
+            for (int i = 0; i < windows; ++i) {
+                table[i][1] = g;
+                for (int d = 2; d < digits; ++d) {
+                    table[i][d] = Arrays.clone(table[i][d - 1]);
+                    multiplyMonty(yAccum, table[i][d], g, m.magnitude, mDash, smallMontyModulus);
+                }
+
+                if (i + 1 < windows) {
+                    g = Arrays.clone(g);
+                    for (int j = 0; j < windowBits; ++j) {
+                        squareMonty(yAccum, g, m.magnitude, mDash, smallMontyModulus);
+                    }
+                }
+            }
+        }
+
+        private static int[] toMonty(BigInteger x, int n) {
+            int[] mag = x.magnitude;
+            int[] result = new int[n];
+            System.arraycopy(mag, 0, result, n - mag.length, mag.length);
+            return result;
+        }
+
+        /**
+         * Return the bits of the magnitude from the bit position as many as the window bits.
+         */
+        private static int window(int[] mag, int bitPos, int windowBits) {
+            int wordNum = bitPos >>> 5;
+            int shift = bitPos & 31;
+
+            long word = mag[mag.length - 1 - wordNum] & IMASK;
+            if (shift + windowBits > 32 && wordNum + 1 < mag.length) {
+                word |= (mag[mag.length - 2 - wordNum] & IMASK) << 32;
+            }
+
+            return (int) (word >>> shift) & ((1 << windowBits) - 1);
+        }
+
+        /**
+         * Return base^e mod m.
+         */
+        BigInteger modPow(BigInteger e) {
+            if (table == null || e.sign < 0 || e.bitLength() > maxExponentBits) {
+                return base.modPow(e, m);
+            }
+
+            if (e.sign == 0) {
+                return ONE;
+            }
+
+            int n = m.magnitude.length;
+            int[] yAccum = new int[n + 1];
+            int[] yVal = null;
+
+            int windows = (e.bitLength() + windowBits - 1) / windowBits;
+            for (int i = 0; i < windows; ++i) {
+                int d = window(e.magnitude, i * windowBits, windowBits);
+                if (d == 0) {
+                    continue;
+                }
+
+                if (yVal == null) {
+                    yVal = Arrays.clone(table[i][d]);
+                } else {
+                    multiplyMonty(yAccum, yVal, table[i][d], m.magnitude, mDash, smallMontyModulus);
+                }
+            }
+
+            // Return y * R^(-1) mod m
+            reduceMonty(yVal, m.magnitude, mDash);
+
+            return new BigInteger(1, yVal);
+        }
+    }
 }
\ No newline at end of file
@@ -16,22 +16,63 @@
 
 package com.nhnent.haste.security;
 
+import java.security.SecureRandom;
 import java.util.Random;
 
 public class DiffieHellman {
     private static final BigInteger baseNumber = OakleyGroup1.generator;
     private static final BigInteger primeNumber = OakleyGroup1.primeNumber;
-    private static final Random random = new Random();
+    private static final Random random = new SecureRandom();
+
+    /**
+     * Private keys up to this bits are raised by the precomputed powers of the generator.
+     */
+    private static final int PRECOMPUTED_EXPONENT_BITS = 256;
+
+    private static final int PRECOMPUTED_WINDOW_BITS = 5;
+
+    private static final BigInteger.FixedBasePowers basePowers =
+            new BigInteger.FixedBasePowers(baseNumber, primeNumber, PRECOMPUTED_EXPONENT_BITS, PRECOMPUTED_WINDOW_BITS);
 
     public static BigInteger generateSecretKey(BigInteger remotePublicKey, BigInteger privateKey) {
         return remotePublicKey.modPow(privateKey, primeNumber);
     }
 
     public static BigInteger generatePublicKey(BigInteger privateKey) {
-        return baseNumber.modPow(privateKey, primeNumber);
+        return basePowers.modPow(privateKey);
     }
 
+    /**
+     * Generate a random private key of which the highest bit is set, so that it has exactly the bit length.
+     * The private key does not need to be a prime, so it is not tested for primality.
+     */
     public static BigInteger generatePrivateKey(int bitLength) {
-        return BigInteger.probablePrime(bitLength, random);
+        return new BigInteger(bitLength, random).setBit(bitLength - 1);
+    }
+
+    public static KeyPair generateKeyPair(int bitLength) {
+        BigInteger privateKey = generatePrivateKey(bitLength);
+        return new KeyPair(privateKey, generatePublicKey(privateKey));
+    }
+
+    /**
+     * A private key and the public key of it, which is used for only one key agreement.
+     */
+    public static final class KeyPair {
+        private final BigInteger privateKey;
+        private final BigInteger publicKey;
+
+        private KeyPair(BigInteger privateKey, BigInteger publicKey) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+
+        public BigInteger getPrivateKey() {
+            return privateKey;
+        }
+
+        public BigInteger getPublicKey() {
+            return publicKey;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.security;
+
+import java.text.MessageFormat;
+import java.util.Random;
+
+/**
+ * Compare generating public keys by the generic exponentiation with the precomputed powers of the generator.
+ * It has no test, so that it is not run by every build, and it is run by {@link #main(String[])} manually.
+ * The correctness of the precomputed powers is tested by {@link DiffieHellmanTest}.
+ */
+public class DiffieHellmanBenchmark {
+    private static final int PRIVATE_KEY_BITS = 160;
+    private static final int KEY_COUNT = 256;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private interface Operation {
+        BigInteger run(BigInteger privateKey);
+    }
+
+    private static long measure(BigInteger[] privateKeys, Operation operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (BigInteger privateKey : privateKeys) {
+                operation.run(privateKey);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            for (BigInteger privateKey : privateKeys) {
+                operation.run(privateKey);
+            }
+        }
+        return (System.nanoTime() - startTime) / ((long) MEASURE_ROUNDS * privateKeys.length);
+    }
+
+    public static void main(String[] args) {
+        final Random random = new Random();
+        BigInteger[] privateKeys = new BigInteger[KEY_COUNT];
+        for (int i = 0; i < privateKeys.length; i++) {
+            privateKeys[i] = DiffieHellman.generatePrivateKey(PRIVATE_KEY_BITS);
+        }
+
+        long modPowNanos = measure(privateKeys, new Operation() {
+            @Override
+            public BigInteger run(BigInteger privateKey) {
+                return OakleyGroup1.generator.modPow(privateKey, OakleyGroup1.primeNumber);
+            }
+        });
+
+        long precomputedNanos = measure(privateKeys, new Operation() {
+            @Override
+            public BigInteger run(BigInteger privateKey) {
+                return DiffieHellman.generatePublicKey(privateKey);
+            }
+        });
+
+        long probablePrimeNanos = measure(new BigInteger[KEY_COUNT / 16], new Operation() {
+            @Override
+            public BigInteger run(BigInteger privateKey) {
+                return BigInteger.probablePrime(PRIVATE_KEY_BITS, random);
+            }
+        });
+
+        long randomBitsNanos = measure(privateKeys, new Operation() {
+            @Override
+            public BigInteger run(BigInteger privateKey) {
+                return DiffieHellman.generatePrivateKey(PRIVATE_KEY_BITS);
+            }
+        });
+
+        System.out.println("============================================");
+        System.out.println(MessageFormat.format("Public key by modPow : {0} ns/op", modPowNanos));
+        System.out.println(MessageFormat.format("Public key by precomputed powers : {0} ns/op", precomputedNanos));
+        System.out.println(MessageFormat.format("Private key by probablePrime : {0} ns/op", probablePrimeNanos));
+        System.out.println(MessageFormat.format("Private key by random bits : {0} ns/op", randomBitsNanos));
+        System.out.println("============================================");
+    }
+}
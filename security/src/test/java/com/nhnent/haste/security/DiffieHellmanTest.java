@@ -20,6 +20,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.text.MessageFormat;
+import java.util.Random;
 
 public class DiffieHellmanTest {
     private void testDH(BigInteger clientPrivateKey, BigInteger clientPublicKey, BigInteger serverPrivateKey, BigInteger serverPublicKey) {
@@ -97,4 +98,22 @@ public class DiffieHellmanTest {
 
         testDH(clientPrivateKey, clientPublicKey, serverPrivateKey, serverPublicKey);
     }
+
+    @Test
+    public void testPrecomputedPublicKey() {
+        Random random = new Random(0);
+        for (int bitLength = 1; bitLength <= 300; bitLength++) {
+            BigInteger privateKey = new BigInteger(bitLength, random);
+            BigInteger expected = OakleyGroup1.generator.modPow(privateKey, OakleyGroup1.primeNumber);
+
+            Assert.assertEquals(expected, DiffieHellman.generatePublicKey(privateKey));
+        }
+    }
+
+    @Test
+    public void testPrivateKeyBitLength() {
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(160, DiffieHellman.generatePrivateKey(160).bitLength());
+        }
+    }
 }
\ No newline at end of file
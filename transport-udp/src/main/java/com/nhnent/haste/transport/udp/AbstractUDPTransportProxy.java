@@ -16,16 +16,24 @@
 
 package com.nhnent.haste.transport.udp;
 
+import com.nhnent.haste.common.CRC;
+import com.nhnent.haste.common.EnvironmentTimer;
+import com.nhnent.haste.transport.EventExecutor;
 import com.nhnent.haste.transport.TransportProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.crypto.Mac;
 import java.io.IOException;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.util.zip.CRC32;
 
 abstract class AbstractUDPTransportProxy implements TransportProxy {
-    private final byte[] readBuf = new byte[2048];
+    private static final Logger logger = LoggerFactory.getLogger(AbstractUDPTransportProxy.class);
 
-    private final byte[] writeBuf = new byte[2048];
+    private static final int BUFFER_SIZE = 2048;
 
     private final int port;
 
@@ -33,24 +41,99 @@ abstract class AbstractUDPTransportProxy implements TransportProxy {
 
     protected final DatagramChannel ch;
 
-    protected final ByteBuffer readByteBuffer = ByteBuffer.wrap(readBuf);
+    protected final EventExecutor executor;
 
-    protected final ByteBuffer writeByteBuffer = ByteBuffer.wrap(writeBuf);
+    /**
+     * Buffers of the event loop are direct, so that sending and receiving do not copy through a temporary direct buffer.
+     */
+    protected final ByteBuffer readByteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
-    public AbstractUDPTransportProxy(UDPTransport transport, DatagramChannel ch, int port) {
+    protected final ByteBuffer writeByteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    protected final CRC32 crc32 = new CRC32();
+
+    private final EndPointCache endPointCache;
+
+    private BlockingReceiver blockingReceiver;
+
+    private final int readBudgetDatagrams;
+
+    private final int readBudgetBytes;
+
+    private volatile long readBudgetExhaustedCount;
+
+    private volatile long receivedBytes;
+
+    private final ConnectionCookie connectionCookie;
+
+    private final Mac cookieMac;
+
+    public AbstractUDPTransportProxy(UDPTransport transport, EventExecutor executor, DatagramChannel ch, int port) {
         this.transport = transport;
+        this.executor = executor;
         this.ch = ch;
         this.port = port;
+        this.readBudgetDatagrams = transport.readBudgetDatagrams();
+        this.readBudgetBytes = transport.readBudgetBytes();
+        this.endPointCache = transport.endPointCache();
+        this.connectionCookie = transport.connectionCookie();
+        this.cookieMac = connectionCookie == null ? null : connectionCookie.newMac();
     }
 
     @Override
     public void accept(long currentTime) {
     }
 
+    /**
+     * Receive datagrams until no datagram is available, or the read budget of datagrams or bytes is exhausted.
+     * The remains are read in the next iteration of the event loop, so that sending is not starved.
+     */
     @Override
-    public void read(long currentTime) {
+    public int read(long currentTime) {
+        int datagrams = 0;
+        int bytes = 0;
+
+        try {
+            SocketAddress sa;
+
+            while ((sa = receive(readByteBuffer)) != null) {
+                int transferredBytes = readByteBuffer.position();
+                readByteBuffer.position(0);
+
+                if (transferredBytes > 0)
+                    onDatagram(currentTime, sa, transferredBytes);
+
+                readByteBuffer.clear();
+
+                datagrams++;
+                bytes += transferredBytes;
+
+                if (datagrams >= readBudgetDatagrams || bytes >= readBudgetBytes) {
+                    readBudgetExhaustedCount++;
+
+                    if (blockingReceiver != null)
+                        blockingReceiver.wakeupIfPending();
+                    break;
+                }
+            }
+
+        } catch (IOException e) {
+            logger.error("Failed to read data in {}", getClass().getSimpleName(), e);
+        } finally {
+            readByteBuffer.clear();
+        }
+
+        if (bytes > 0)
+            receivedBytes += bytes;
+
+        return datagrams;
     }
 
+    /**
+     * Handle a received datagram in the read buffer. It is called in the event loop thread.
+     */
+    protected abstract void onDatagram(long currentTime, SocketAddress sa, int transferredBytes);
+
     @Override
     public void write(long currentTime) {
     }
@@ -67,4 +150,173 @@ abstract class AbstractUDPTransportProxy implements TransportProxy {
     public int port() {
         return port;
     }
+
+    /**
+     * Return how many times reading was stopped by the read budget.
+     */
+    long readBudgetExhaustedCount() {
+        return readBudgetExhaustedCount;
+    }
+
+    /**
+     * Return the total bytes of datagrams which were received by this proxy.
+     */
+    long receivedBytes() {
+        return receivedBytes;
+    }
+
+    EventExecutor executor() {
+        return executor;
+    }
+
+    /**
+     * Start a dedicated thread which receives from the blocking channel instead of the selector.
+     */
+    void startBlockingReceive(EventExecutor executor) {
+        blockingReceiver = new BlockingReceiver(ch, executor, BUFFER_SIZE);
+        blockingReceiver.start("haste-udp-receiver-" + port);
+    }
+
+    protected boolean isBlockingReceive() {
+        return blockingReceiver != null;
+    }
+
+    /**
+     * Receive a datagram into the buffer.
+     *
+     * @return The address of the sender, or {@code null} if no datagram is available.
+     */
+    protected SocketAddress receive(ByteBuffer dst) throws IOException {
+        if (blockingReceiver != null)
+            return blockingReceiver.poll(dst);
+
+        return ch.receive(dst);
+    }
+
+    /**
+     * Handle a connection request in the read buffer.
+     * A duplicated request from a connecting end point is answered with the previous connection information,
+     * or it is ignored while the handshake of the end point is in progress.
+     */
+    protected void onConnect(long currentTime, SocketAddress sa, int transferredBytes) {
+        if (endPointCache.exist(currentTime, sa)) {
+            ConnectionInfo info = endPointCache.getInfo(sa);
+
+            if (info == null)
+                return;
+
+            sendResponseDuplicatedRequest(sa, currentTime, info);
+
+        } else if (transport.accept(currentTime, sa, readByteBuffer, transferredBytes, this)) {
+            endPointCache.addEndPoint(sa, currentTime, null);
+        }
+    }
+
+    /**
+     * Answer the connection request of which handshake was completed. It is called in the event loop thread.
+     */
+    void onHandshakeCompleted(SocketAddress sa, ConnectionInfo info, long sendingTime) {
+        long currentTime = EnvironmentTimer.currentTimeMillis();
+
+        endPointCache.addEndPoint(sa, currentTime, info);
+
+        sendConnectionResponse(sa, info, sendingTime, currentTime);
+    }
+
+    /**
+     * Forget the connection request of which handshake was aborted. It is called in the event loop thread,
+     * after the end point was added by {@link #onConnect(long, SocketAddress, int)}.
+     */
+    void onHandshakeAborted(SocketAddress sa, long requestTime) {
+        endPointCache.removeEndPoint(sa, requestTime);
+    }
+
+    private void sendResponseDuplicatedRequest(SocketAddress sa, long currentTime, ConnectionInfo connectionInfo) {
+        readByteBuffer.position(0);
+
+        if (CommandType.CONNECT.isNotEqual(readByteBuffer.get()))  //1
+            return;
+
+        int version = readByteBuffer.getInt();             //4
+
+        if (!transport.validateProtocolVersion(version))
+            return;
+
+        long sendingTime = readByteBuffer.getLong();        //8
+
+        sendConnectionResponse(sa,
+                connectionInfo,
+                sendingTime,
+                currentTime);
+    }
+
+    /**
+     * Verify the cookie which follows the connection request in the read buffer.
+     */
+    boolean verifyCookie(long currentTime, SocketAddress sa, int transferredBytes) {
+        int position = readByteBuffer.position();
+
+        if (transferredBytes - position < 1 + ConnectionCookie.LENGTH)
+            return false;
+
+        if (readByteBuffer.get() != ConnectionCookie.LENGTH)
+            return false;
+
+        return connectionCookie.verify(cookieMac, readByteBuffer, sa, currentTime);
+    }
+
+    /**
+     * Answer the connection request by a new cookie, which the client sends back with the request again.
+     */
+    void sendCookie(SocketAddress target, long sendingTime, long currentTime) {
+        writeByteBuffer.clear();
+
+        writeByteBuffer.put(CommandType.CONNECT_COOKIE.getByte());     //1
+        writeByteBuffer.putLong(sendingTime);                           //8
+        writeByteBuffer.put((byte) ConnectionCookie.LENGTH);            //1
+        connectionCookie.write(cookieMac, writeByteBuffer, target, currentTime);
+
+        CRC.Write(crc32, writeByteBuffer,
+                writeByteBuffer.position() + CRC.CRC_LENGTH,
+                writeByteBuffer.position());
+
+        writeByteBuffer.position(writeByteBuffer.position() + CRC.CRC_LENGTH);
+
+        try {
+            writeByteBuffer.flip();
+            ch.send(writeByteBuffer, target);
+        } catch (IOException e) {
+            logger.error("Failed to send connection cookie", e);
+        }
+    }
+
+    void sendConnectionResponse(SocketAddress target,
+                                ConnectionInfo connectionInfo,
+                                long sendingTime,
+                                long responseTime) {
+        writeByteBuffer.clear();
+
+        byte[] serverKey = connectionInfo.getServerKeyNumber().toByteArray();
+
+        writeByteBuffer.put(CommandType.CONNECT_RESPONSE.getByte());   //1
+        writeByteBuffer.putInt(connectionInfo.getPeerID());     //4
+        writeByteBuffer.put((byte) serverKey.length);
+        writeByteBuffer.put(serverKey);
+        writeByteBuffer.putInt(connectionInfo.getPort());       //4
+        writeByteBuffer.putLong(sendingTime);                   //8
+        writeByteBuffer.putLong(responseTime);                  //8
+
+        CRC.Write(crc32, writeByteBuffer,
+                writeByteBuffer.position() + CRC.CRC_LENGTH,
+                writeByteBuffer.position());
+
+        writeByteBuffer.position(writeByteBuffer.position() + CRC.CRC_LENGTH);
+
+        try {
+            writeByteBuffer.flip();
+            ch.send(writeByteBuffer, target);
+        } catch (IOException e) {
+            logger.error("Failed to send connection response", e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pending acknowledgements of a peer in a ring buffer of primitives, which are written to the send buffer directly.
+ * So that receiving a reliable command does not allocate an {@link OutgoingCommand} for its acknowledgement.
+ * The ring grows when it is full, and it is accessed only in the event loop thread of the peer.
+ * <br>
+ * When the client supports {@link CommandType#SACK}, only channels are marked instead,
+ * and one SACK command of the received state is written for every marked channel.
+ */
+final class AckQueue {
+    /**
+     * The length of an ACK command, which is the header and the acknowledged sequence number and sent time.
+     */
+    static final int ACK_COMMAND_LENGTH = CommandLength.ACK_HEADER_SIZE.getLength() + CommandLength.ACK_PAYLOAD.getLength();
+
+    /**
+     * The length of a SACK command, which is the header and the cumulative sequence number, bits and sent time.
+     */
+    static final int SACK_COMMAND_LENGTH = CommandLength.ACK_HEADER_SIZE.getLength() + CommandLength.SACK_PAYLOAD.getLength();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] channels = new byte[INITIAL_CAPACITY];
+    private long[] reliableSeqNums = new long[INITIAL_CAPACITY];
+    private long[] sentTimes = new long[INITIAL_CAPACITY];
+
+    private int head;
+    private int size;
+
+    /**
+     * Channels which are marked for SACK commands in the order of marking, and the sent time by channel number.
+     */
+    private final Channel[] selectiveChannels;
+    private final long[] selectiveSentTimes;
+    private final boolean[] selectiveMarked;
+    private int selectiveCount;
+
+    AckQueue(int channelCount) {
+        this.selectiveChannels = new Channel[channelCount];
+        this.selectiveSentTimes = new long[channelCount];
+        this.selectiveMarked = new boolean[channelCount];
+    }
+
+    /**
+     * Add an acknowledgement of the reliable command which was received in the channel.
+     *
+     * @param sentTime The time when the datagram of the command was sent by the remote peer.
+     */
+    void add(byte channel, long reliableSeqNum, long sentTime) {
+        if (size == channels.length)
+            grow();
+
+        int tail = (head + size) & (channels.length - 1);
+
+        channels[tail] = channel;
+        reliableSeqNums[tail] = reliableSeqNum;
+        sentTimes[tail] = sentTime;
+
+        size++;
+    }
+
+    /**
+     * Mark the channel in which a reliable command was received, so that a SACK command of it is written.
+     *
+     * @param sentTime The time when the datagram of the command was sent by the remote peer.
+     */
+    void addSelective(Channel channel, long sentTime) {
+        int number = channel.getChannelNumber();
+
+        selectiveSentTimes[number] = sentTime;
+
+        if (selectiveMarked[number])
+            return;
+
+        selectiveMarked[number] = true;
+        selectiveChannels[selectiveCount++] = channel;
+    }
+
+    /**
+     * Write ACK commands in the order of adding, and then SACK commands of marked channels,
+     * to the position of the buffer while the position is less than the limit.
+     *
+     * @return The count of written commands.
+     */
+    int write(ByteBuffer dst, int limit) {
+        int count = writeAcks(dst, limit);
+
+        int written = 0;
+        while (written < selectiveCount && dst.position() + SACK_COMMAND_LENGTH < limit) {
+            Channel channel = selectiveChannels[written];
+            int number = channel.getChannelNumber();
+
+            dst.put(CommandType.SACK.getByte());
+            dst.put((byte) number);
+            dst.put(UDPCommand.CommandFlags.CF_UNRELIABLE);
+            dst.putShort((short) SACK_COMMAND_LENGTH);
+            dst.putLong(0);
+            dst.putLong(channel.getIncomingReliableSeqNum());
+            dst.putLong(channel.getIncomingReliableBits());
+            dst.putLong(selectiveSentTimes[number]);
+
+            selectiveMarked[number] = false;
+            written++;
+        }
+
+        if (written > 0) {
+            System.arraycopy(selectiveChannels, written, selectiveChannels, 0, selectiveCount - written);
+            for (int i = selectiveCount - written; i < selectiveCount; i++) {
+                selectiveChannels[i] = null;
+            }
+            selectiveCount -= written;
+        }
+
+        return count + written;
+    }
+
+    private int writeAcks(ByteBuffer dst, int limit) {
+        int count = 0;
+        int mask = channels.length - 1;
+
+        while (size > 0 && dst.position() + ACK_COMMAND_LENGTH < limit) {
+            dst.put(CommandType.ACK.getByte());
+            dst.put(channels[head]);
+            dst.put(UDPCommand.CommandFlags.CF_UNRELIABLE);
+            dst.putShort((short) ACK_COMMAND_LENGTH);
+            dst.putLong(0);
+            dst.putLong(reliableSeqNums[head]);
+            dst.putLong(sentTimes[head]);
+
+            head = (head + 1) & mask;
+            size--;
+            count++;
+        }
+
+        return count;
+    }
+
+    boolean isEmpty() {
+        return size == 0 && selectiveCount == 0;
+    }
+
+    int size() {
+        return size + selectiveCount;
+    }
+
+    private void grow() {
+        int capacity = channels.length;
+        byte[] newChannels = new byte[capacity * 2];
+        long[] newReliableSeqNums = new long[capacity * 2];
+        long[] newSentTimes = new long[capacity * 2];
+
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & (capacity - 1);
+            newChannels[i] = channels[index];
+            newReliableSeqNums[i] = reliableSeqNums[index];
+            newSentTimes[i] = sentTimes[index];
+        }
+
+        channels = newChannels;
+        reliableSeqNums = newReliableSeqNums;
+        sentTimes = newSentTimes;
+        head = 0;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+/**
+ * Additive increase and multiplicative decrease of the congestion window like TCP Reno.
+ * The window grows by acknowledged bytes in slow start, and by one segment per window after it.
+ * It is halved at most once per round trip when commands are retransmitted.
+ * Datagrams are paced at the window per smoothed round trip time.
+ */
+public final class AimdCongestionController implements CongestionController {
+    public static final CongestionController.Factory FACTORY = new CongestionController.Factory() {
+        @Override
+        public CongestionController newController(int maxSegmentSize) {
+            return new AimdCongestionController(maxSegmentSize);
+        }
+    };
+
+    static final int INITIAL_WINDOW_SEGMENTS = 10;
+
+    static final int MINIMUM_WINDOW_SEGMENTS = 2;
+
+    private static final double SLOW_START_PACING_GAIN = 2.0;
+
+    private static final double PACING_GAIN = 1.25;
+
+    private final int maxSegmentSize;
+
+    private int congestionWindow;
+    private int slowStartThreshold = Integer.MAX_VALUE;
+
+    private long smoothedRoundTripTime = 0;
+
+    /**
+     * The window is not reduced again until this time.
+     */
+    private long recoveryEndTime = 0;
+
+    AimdCongestionController(int maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+        this.congestionWindow = INITIAL_WINDOW_SEGMENTS * maxSegmentSize;
+    }
+
+    @Override
+    public int congestionWindow() {
+        return congestionWindow;
+    }
+
+    @Override
+    public double pacingRate() {
+        if (smoothedRoundTripTime == 0)
+            return 0;
+
+        double gain = congestionWindow < slowStartThreshold ? SLOW_START_PACING_GAIN : PACING_GAIN;
+        return gain * congestionWindow / smoothedRoundTripTime;
+    }
+
+    @Override
+    public void onAcked(int ackedBytes, long roundTripTime, long currentTime) {
+        long rtt = Math.max(1, roundTripTime);
+        smoothedRoundTripTime = smoothedRoundTripTime == 0 ? rtt : smoothedRoundTripTime - (smoothedRoundTripTime >> 3) + (rtt >> 3);
+        smoothedRoundTripTime = Math.max(1, smoothedRoundTripTime);
+
+        long window;
+        if (congestionWindow < slowStartThreshold) {
+            window = (long) congestionWindow + ackedBytes;
+        } else {
+            window = congestionWindow + Math.max(1, (long) maxSegmentSize * ackedBytes / congestionWindow);
+        }
+        congestionWindow = (int) Math.min(Integer.MAX_VALUE, window);
+    }
+
+    @Override
+    public void onLoss(long currentTime) {
+        // Retransmissions of the same window are caused by one congestion event.
+        if (currentTime < recoveryEndTime)
+            return;
+
+        recoveryEndTime = currentTime + smoothedRoundTripTime;
+
+        slowStartThreshold = Math.max(congestionWindow / 2, MINIMUM_WINDOW_SEGMENTS * maxSegmentSize);
+        congestionWindow = slowStartThreshold;
+    }
+}
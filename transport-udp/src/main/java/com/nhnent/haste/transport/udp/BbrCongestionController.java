@@ -0,0 +1,178 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+/**
+ * A model-based congestion control like BBR, which estimates the bottleneck bandwidth and the minimum round trip time,
+ * instead of reacting to losses. The window is twice the estimated bandwidth-delay product,
+ * and datagrams are paced at the estimated bandwidth with gains of startup, drain and probing.
+ * <br>
+ * The bandwidth is sampled by acknowledged bytes per round, which is as long as the minimum round trip time,
+ * and the maximum of recent rounds is used. Samples are not excluded when the peer had nothing to send,
+ * so the window and the pacing rate are never lower than those of the initial window.
+ */
+public final class BbrCongestionController implements CongestionController {
+    public static final CongestionController.Factory FACTORY = new CongestionController.Factory() {
+        @Override
+        public CongestionController newController(int maxSegmentSize) {
+            return new BbrCongestionController(maxSegmentSize);
+        }
+    };
+
+    static final int INITIAL_WINDOW_SEGMENTS = 10;
+
+    static final double STARTUP_GAIN = 2.885;
+
+    private static final double WINDOW_GAIN = 2;
+
+    private static final double[] PROBE_GAINS = {1.25, 0.75, 1, 1, 1, 1, 1, 1};
+
+    static final int BANDWIDTH_FILTER_ROUNDS = 10;
+
+    private static final long MIN_ROUND_TRIP_TIME_EXPIRY = 10000;
+
+    private static final int FULL_BANDWIDTH_ROUNDS = 3;
+
+    private static final double FULL_BANDWIDTH_GROWTH = 1.25;
+
+    static final int STARTUP = 0;
+    static final int DRAIN = 1;
+    static final int PROBE_BANDWIDTH = 2;
+
+    private final int initialWindow;
+
+    private final double[] bandwidthSamples = new double[BANDWIDTH_FILTER_ROUNDS];
+    private int sampleCount;
+
+    /**
+     * The estimated bottleneck bandwidth in bytes per millisecond.
+     */
+    private double bottleneckBandwidth;
+
+    private long minRoundTripTime = Long.MAX_VALUE;
+    private long minRoundTripTimeStamp;
+
+    private long roundStartTime = -1;
+    private long roundDeliveredBytes;
+
+    private int state = STARTUP;
+    private double fullBandwidth;
+    private int fullBandwidthRounds;
+    private int cycleIndex;
+
+    BbrCongestionController(int maxSegmentSize) {
+        this.initialWindow = INITIAL_WINDOW_SEGMENTS * maxSegmentSize;
+    }
+
+    @Override
+    public int congestionWindow() {
+        if (bottleneckBandwidth == 0)
+            return initialWindow;
+
+        double gain = state == STARTUP ? STARTUP_GAIN : WINDOW_GAIN;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(initialWindow, gain * bottleneckBandwidth * minRoundTripTime));
+    }
+
+    @Override
+    public double pacingRate() {
+        if (bottleneckBandwidth == 0)
+            return 0;
+
+        return Math.max(pacingGain() * bottleneckBandwidth, (double) initialWindow / minRoundTripTime);
+    }
+
+    private double pacingGain() {
+        switch (state) {
+            case STARTUP:
+                return STARTUP_GAIN;
+            case DRAIN:
+                return 1 / STARTUP_GAIN;
+            default:
+                return PROBE_GAINS[cycleIndex];
+        }
+    }
+
+    @Override
+    public void onAcked(int ackedBytes, long roundTripTime, long currentTime) {
+        long rtt = Math.max(1, roundTripTime);
+
+        if (rtt <= minRoundTripTime || currentTime - minRoundTripTimeStamp > MIN_ROUND_TRIP_TIME_EXPIRY) {
+            minRoundTripTime = rtt;
+            minRoundTripTimeStamp = currentTime;
+        }
+
+        if (roundStartTime < 0) {
+            roundStartTime = currentTime;
+            roundDeliveredBytes = 0;
+        }
+
+        roundDeliveredBytes += ackedBytes;
+
+        long elapsed = currentTime - roundStartTime;
+        if (elapsed >= minRoundTripTime) {
+            onRoundEnd((double) roundDeliveredBytes / elapsed);
+
+            roundStartTime = currentTime;
+            roundDeliveredBytes = 0;
+        }
+    }
+
+    private void onRoundEnd(double bandwidthSample) {
+        bandwidthSamples[sampleCount++ % BANDWIDTH_FILTER_ROUNDS] = bandwidthSample;
+
+        double bandwidth = 0;
+        for (double sample : bandwidthSamples) {
+            bandwidth = Math.max(bandwidth, sample);
+        }
+        bottleneckBandwidth = bandwidth;
+
+        switch (state) {
+            case STARTUP:
+                if (bandwidth >= fullBandwidth * FULL_BANDWIDTH_GROWTH) {
+                    fullBandwidth = bandwidth;
+                    fullBandwidthRounds = 0;
+                } else if (++fullBandwidthRounds >= FULL_BANDWIDTH_ROUNDS) {
+                    state = DRAIN;
+                }
+                break;
+            case DRAIN:
+                // The queue which was built in startup is drained in a round.
+                state = PROBE_BANDWIDTH;
+                cycleIndex = 0;
+                break;
+            default:
+                cycleIndex = (cycleIndex + 1) % PROBE_GAINS.length;
+                break;
+        }
+    }
+
+    @Override
+    public void onLoss(long currentTime) {
+        // Losses are not a signal of the model, except that the pipe is regarded as full in startup.
+        if (state == STARTUP && bottleneckBandwidth > 0)
+            state = DRAIN;
+    }
+
+    int state() {
+        return state;
+    }
+
+    double bottleneckBandwidth() {
+        return bottleneckBandwidth;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.transport.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Receive datagrams from a blocking channel in a dedicated thread, and hand them off to the event loop.
+ * Received buffers are recycled, and datagrams are dropped if the event loop does not keep up with receiving.
+ */
+final class BlockingReceiver implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(BlockingReceiver.class);
+
+    private static final int MAX_PENDING_DATAGRAMS = 4096;
+
+    private final DatagramChannel ch;
+    private final EventExecutor executor;
+    private final int bufferSize;
+
+    private final Queue<Datagram> received = new ConcurrentLinkedQueue<>();
+    private final Queue<Datagram> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private static final class Datagram {
+        private SocketAddress socketAddress;
+        private final ByteBuffer buffer;
+
+        Datagram(int bufferSize) {
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+
+    BlockingReceiver(DatagramChannel ch, EventExecutor executor, int bufferSize) {
+        this.ch = ch;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    void start(String name) {
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (ch.isOpen()) {
+            Datagram datagram = pool.poll();
+            if (datagram == null)
+                datagram = new Datagram(bufferSize);
+
+            datagram.buffer.clear();
+
+            try {
+                datagram.socketAddress = ch.receive(datagram.buffer);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                logger.error("Failed to receive data in BlockingReceiver", e);
+                pool.offer(datagram);
+                continue;
+            }
+
+            if (pending.get() >= MAX_PENDING_DATAGRAMS) {
+                pool.offer(datagram);
+                continue;
+            }
+
+            pending.incrementAndGet();
+            received.offer(datagram);
+            executor.wakeup();
+        }
+    }
+
+    /**
+     * Wake up the event loop again if received datagrams remain. It is called in the event loop thread.
+     */
+    void wakeupIfPending() {
+        if (pending.get() > 0)
+            executor.wakeup();
+    }
+
+    /**
+     * Copy the oldest received datagram into the buffer. It is called in the event loop thread.
+     *
+     * @return The address of the sender, or {@code null} if there is no received datagram.
+     */
+    SocketAddress poll(ByteBuffer dst) {
+        Datagram datagram = received.poll();
+
+        if (datagram == null)
+            return null;
+
+        pending.decrementAndGet();
+
+        datagram.buffer.flip();
+        dst.put(datagram.buffer);
+
+        SocketAddress socketAddress = datagram.socketAddress;
+        datagram.socketAddress = null;
+        pool.offer(datagram);
+
+        return socketAddress;
+    }
+}
@@ -19,7 +19,8 @@ package com.nhnent.haste.transport.udp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 public final class Channel {
     private static final Logger logger = LoggerFactory.getLogger(Channel.class);
@@ -35,18 +36,68 @@ public final class Channel {
     private volatile long outgoingReliableSeqNum = INITIAL_SEQ;
     private volatile long outgoingUnreliableSeqNum = INITIAL_SEQ;
 
-    private Map<Long, IncomingCommand> incomingReliableCommandList = new HashMap<>(MAX_COMMAND_SIZE);
-    private Map<Long, IncomingCommand> incomingUnreliableCommandList = new HashMap<>(MAX_COMMAND_SIZE);
-
-    private Object syncRoot = new Object();
-
-    private Queue<OutgoingCommand> toPassOutgoingReliableCommandList = new ArrayDeque<>(MAX_COMMAND_SIZE);
-    private Queue<OutgoingCommand> toPassOutgoingUnreliableCommandList = new ArrayDeque<>(MAX_COMMAND_SIZE);
+    private final static int INITIAL_WINDOW_CAPACITY = 16;
+
+    /**
+     * A sender keeps at most {@link #MAX_COMMAND_SIZE} outgoing commands of a channel, so a larger window is never used
+     * by a well-behaved client, and it only lets a remote client grow the rings of every channel.
+     * Every fragment of a message must fit in it, so a message of more fragments is rejected.
+     */
+    final static int MAX_INCOMING_RELIABLE_WINDOW = 1024;
+    private final static int MAX_INCOMING_UNRELIABLE_WINDOW = 1024;
+
+    /**
+     * Sent commands are limited by the congestion window, so the sent window is practically unbounded.
+     */
+    private final static int MAX_SENT_WINDOW = 1 << 30;
+
+    /**
+     * Received reliable commands from {@code incomingReliableSeqNum + 1}.
+     */
+    private final SequenceWindow<IncomingCommand> incomingReliableCommands =
+            new SequenceWindow<>(INITIAL_WINDOW_CAPACITY, MAX_INCOMING_RELIABLE_WINDOW);
+
+    /**
+     * Received unreliable commands from {@code incomingUnreliableSeqNum + 1}.
+     */
+    private final SequenceWindow<IncomingCommand> incomingUnreliableCommands =
+            new SequenceWindow<>(INITIAL_WINDOW_CAPACITY, MAX_INCOMING_UNRELIABLE_WINDOW);
+
+    /**
+     * Fragmented payloads which are being received, by the start sequence numbers from {@code incomingReliableSeqNum + 1}.
+     */
+    private final SequenceWindow<FragmentReassembly> fragmentReassemblies =
+            new SequenceWindow<>(INITIAL_WINDOW_CAPACITY, MAX_INCOMING_RELIABLE_WINDOW);
 
     private Queue<OutgoingCommand> outgoingReliableCommandList = new ArrayDeque<>(MAX_COMMAND_SIZE);
     private Queue<OutgoingCommand> outgoingUnreliableCommandList = new ArrayDeque<>(MAX_COMMAND_SIZE);
 
-    private Map<Long, OutgoingCommand> sentReliableCommands = new HashMap<>();
+    /**
+     * Sent reliable commands which are not acknowledged yet, from {@code lowestSentSeqNum} to {@code highestSentSeqNum}.
+     * Commands are sent first in the order of sequence numbers, so a sequence number lower than the highest one is never added.
+     */
+    private final SequenceWindow<OutgoingCommand> sentReliableCommands =
+            new SequenceWindow<>(INITIAL_WINDOW_CAPACITY, MAX_SENT_WINDOW);
+    private long lowestSentSeqNum = INITIAL_SEQ + 1;
+    private long highestSentSeqNum = INITIAL_SEQ;
+
+    private final RetransmissionQueue retransmissionQueue = new RetransmissionQueue();
+
+    /**
+     * The count of acknowledgements of later sequence numbers since the lowest unacknowledged command was sent.
+     */
+    private long lowestUnacknowledgedSeqNum = -1;
+    private int laterAcknowledgementCount;
+
+    /**
+     * The number of payloads which can wait for the event loop thread to assign sequence numbers.
+     */
+    private final static int OUTGOING_QUEUE_CAPACITY = 256;
+
+    /**
+     * Commands which were accepted by any thread, and they are moved to the outgoing lists by the event loop thread.
+     */
+    private final OutgoingCommandQueue pendingOutgoingCommands = new OutgoingCommandQueue(OUTGOING_QUEUE_CAPACITY);
 
     public Channel(int channelNumber) {
         this.channelNumber = channelNumber;
@@ -65,86 +116,171 @@ public final class Channel {
     }
 
     public boolean containIncomingReliableSeqNum(long reliableSeq) {
-        return incomingReliableCommandList.containsKey(reliableSeq);
+        return incomingReliableCommands.contains(reliableSeq);
     }
 
     public boolean containIncomingUnreliableCommand(IncomingCommand command) {
-        return incomingUnreliableCommandList.containsKey(command.getUnreliableSeqNum());
+        return incomingUnreliableCommands.contains(command.getUnreliableSeqNum());
     }
 
-    public void insertIncomingReliableCommand(IncomingCommand command) {
-        incomingReliableCommandList.put(command.getReliableSeqNum(), command);
+    /**
+     * @return {@code false} if the command is beyond the incoming window, or it was already received {@code true} otherwise.
+     */
+    public boolean insertIncomingReliableCommand(IncomingCommand command) {
+        return incomingReliableCommands.put(incomingReliableSeqNum + 1, command.getReliableSeqNum(), command);
     }
 
-    public void insertIncomingUnreliableCommand(IncomingCommand command) {
-        incomingUnreliableCommandList.put(command.getUnreliableSeqNum(), command);
+    /**
+     * @return {@code false} if the command is beyond the incoming window, or it was already received {@code true} otherwise.
+     */
+    public boolean insertIncomingUnreliableCommand(IncomingCommand command) {
+        return incomingUnreliableCommands.put(incomingUnreliableSeqNum + 1, command.getUnreliableSeqNum(), command);
+    }
+
+    /**
+     * Return {@code false} if the reliable sequence number is beyond the incoming window {@code true} otherwise.
+     */
+    public boolean isInIncomingReliableWindow(long reliableSeq) {
+        return reliableSeq - incomingReliableSeqNum <= MAX_INCOMING_RELIABLE_WINDOW;
+    }
+
+    public FragmentReassembly getFragmentReassembly(long startSeq) {
+        return fragmentReassemblies.get(startSeq);
+    }
+
+    /**
+     * @return {@code false} if the start sequence number is beyond the incoming window, or it is already being received
+     * {@code true} otherwise.
+     */
+    public boolean addFragmentReassembly(FragmentReassembly reassembly) {
+        return fragmentReassemblies.put(incomingReliableSeqNum + 1, reassembly.getStartSeqNum(), reassembly);
+    }
+
+    public void removeFragmentReassembly(long startSeq) {
+        fragmentReassemblies.remove(startSeq);
     }
 
     public int incomingReliableCommandCount() {
-        return incomingReliableCommandList.size();
+        return incomingReliableCommands.size();
     }
 
     public int incomingUnreliableCommandCount() {
-        return incomingUnreliableCommandList.size();
+        return incomingUnreliableCommands.size();
     }
 
     public int outgoingReliableCommandCount() {
         return outgoingReliableCommandList.size();
     }
 
+    /**
+     * Offer commands of a payload to be queued by the event loop thread. It can be called in any thread.
+     * Commands which are rejected are released in the calling thread, which is the only holder of them and their payload.
+     *
+     * @return {@code false} if too many payloads are waiting {@code true} otherwise.
+     */
+    public boolean offerPendingOutgoingCommands(OutgoingCommand[] commands) {
+        if (pendingOutgoingCommands.offer(commands))
+            return true;
+
+        for (OutgoingCommand command : commands) {
+            command.release();
+        }
+        return false;
+    }
+
+    /**
+     * Return commands of the next payload which was offered, or {@code null} if nothing is waiting
+     * or the outgoing lists are full. It must be called in the event loop thread.
+     * Payloads are left in the pending queue while the outgoing lists are full,
+     * so that offering fails when the peer can not keep up with them.
+     */
+    public OutgoingCommand[] pollPendingOutgoingCommands() {
+        if (outgoingReliableCommandList.size() + outgoingUnreliableCommandList.size() >= MAX_COMMAND_SIZE)
+            return null;
+
+        return pendingOutgoingCommands.poll();
+    }
+
+    public boolean hasPendingOutgoingCommands() {
+        return !pendingOutgoingCommands.isEmpty();
+    }
+
     public int outgoingUnreliableCommandCount() {
         return outgoingUnreliableCommandList.size();
     }
 
-    public Set<Long> getIncomingUnreliableCommandSeqs() {
-        return incomingUnreliableCommandList.keySet();
+    /**
+     * Remove and return the lowest unreliable command which follows the incoming reliable sequence number,
+     * and set the incoming unreliable sequence number to it. Commands which follow older reliable ones are dropped on the way.
+     *
+     * @return The next unreliable command, or {@code null} if nothing can be processed until the next reliable command.
+     */
+    public IncomingCommand pollIncomingUnreliableCommand() {
+        long seq = incomingUnreliableSeqNum;
+
+        while (!incomingUnreliableCommands.isEmpty()) {
+            seq = incomingUnreliableCommands.first(seq + 1);
+            IncomingCommand command = incomingUnreliableCommands.get(seq);
+
+            if (command.getReliableSeqNum() > incomingReliableSeqNum)
+                return null;
+
+            incomingUnreliableCommands.remove(seq);
+
+            if (command.getReliableSeqNum() < incomingReliableSeqNum) {
+                command.release();
+                continue;
+            }
+
+            incomingUnreliableSeqNum = seq;
+            return command;
+        }
+        return null;
     }
 
     public IncomingCommand getIncomingReliableCommand(long reliableSeq) {
-        return incomingReliableCommandList.get(reliableSeq);
+        return incomingReliableCommands.get(reliableSeq);
     }
 
     public IncomingCommand getIncomingUnreliableCommand(long unreliableSeq) {
-        return incomingUnreliableCommandList.get(unreliableSeq);
+        return incomingUnreliableCommands.get(unreliableSeq);
     }
 
     public void removeIncomingUnreliableCommand(long unreliableSeq) {
-        incomingUnreliableCommandList.remove(unreliableSeq);
+        incomingUnreliableCommands.remove(unreliableSeq);
     }
 
     public void removeIncomingReliableCommand(long reliableSeq) {
-        incomingReliableCommandList.remove(reliableSeq);
+        incomingReliableCommands.remove(reliableSeq);
     }
 
     public Queue<OutgoingCommand> getOutgoingReliableCommandList() {
-        synchronized (syncRoot) {
-            Queue<OutgoingCommand> tmp = outgoingReliableCommandList;
-            outgoingReliableCommandList = toPassOutgoingReliableCommandList;
-            outgoingReliableCommandList.clear();
-            toPassOutgoingReliableCommandList = tmp;
-            return tmp;
-        }
+        return outgoingReliableCommandList;
     }
 
     public Queue<OutgoingCommand> getOutgoingUnreliableCommandQueue() {
-        synchronized (syncRoot) {
-            Queue<OutgoingCommand> tmp = outgoingUnreliableCommandList;
-            outgoingUnreliableCommandList = toPassOutgoingUnreliableCommandList;
-            outgoingUnreliableCommandList.clear();
-            toPassOutgoingUnreliableCommandList = tmp;
-            return tmp;
-        }
+        return outgoingUnreliableCommandList;
     }
 
     public void insertOutgoingReliableCommand(OutgoingCommand command) {
-        synchronized (syncRoot) {
-            outgoingReliableCommandList.add(command);
-        }
+        command.setQueued(true);
+        outgoingReliableCommandList.add(command);
     }
 
     public void insertOutgoingUnreliableCommand(OutgoingCommand command) {
-        synchronized (syncRoot) {
-            outgoingUnreliableCommandList.add(command);
+        command.setQueued(true);
+        outgoingUnreliableCommandList.add(command);
+    }
+
+    /**
+     * Release the acknowledged command which was removed from the sent commands.
+     * If it is waiting for retransmission in the outgoing list, it is released when it is polled from there.
+     */
+    public void releaseAcknowledgedCommand(OutgoingCommand command) {
+        if (command.isQueued()) {
+            command.setAcknowledged();
+        } else {
+            command.release();
         }
     }
 
@@ -169,30 +305,195 @@ public final class Channel {
     }
 
     public void addSentReliableCommand(OutgoingCommand command) {
-        sentReliableCommands.put(command.getReliableSeqNum(), command);
+        long reliableSeq = command.getReliableSeqNum();
+
+        if (sentReliableCommands.put(lowestSentSeqNum, reliableSeq, command) && reliableSeq > highestSentSeqNum)
+            highestSentSeqNum = reliableSeq;
     }
 
-    public boolean removeSentReliableCommand(long reliableSeqNum) {
-        return sentReliableCommands.remove(reliableSeqNum) != null;
+    /**
+     * @return The removed command, or {@code null} if it was not found.
+     * It must be released by {@link #releaseAcknowledgedCommand(OutgoingCommand)} after it is used.
+     */
+    public OutgoingCommand removeSentReliableCommand(long reliableSeqNum) {
+        OutgoingCommand command = sentReliableCommands.remove(reliableSeqNum);
+
+        if (command != null) {
+            retransmissionQueue.remove(command);
+            advanceLowestSentSeqNum();
+        }
+
+        return command;
     }
 
-    public boolean resend(long currentTime) {
+    /**
+     * Return the lowest sent command which is not acknowledged yet, or {@code null} if nothing is waiting.
+     */
+    private OutgoingCommand lowestSentReliableCommand() {
+        return lowestSentSeqNum <= highestSentSeqNum ? sentReliableCommands.get(lowestSentSeqNum) : null;
+    }
+
+    private void advanceLowestSentSeqNum() {
+        while (lowestSentSeqNum <= highestSentSeqNum && !sentReliableCommands.contains(lowestSentSeqNum)) {
+            lowestSentSeqNum++;
+        }
+    }
+
+    /**
+     * Remove sent reliable commands which were acknowledged by a SACK command at once.
+     *
+     * @param cumulativeSeqNum Every sequence number up to it was acknowledged.
+     * @param bits             Bit i means that the sequence number of {@code cumulativeSeqNum + 1 + i} was acknowledged.
+     * @return The total serialized length of removed commands.
+     */
+    public int removeSentReliableCommands(long cumulativeSeqNum, long bits) {
+        int removedBytes = 0;
+
+        // The cumulative part is removed from the lowest, and the following ones are looked up by bits.
+        long endSeq = Math.min(cumulativeSeqNum, highestSentSeqNum);
+        for (long seq = lowestSentSeqNum; seq <= endSeq; seq++) {
+            OutgoingCommand command = sentReliableCommands.remove(seq);
+            if (command == null)
+                continue;
+
+            removedBytes += command.getSerializedLength();
+            retransmissionQueue.remove(command);
+            releaseAcknowledgedCommand(command);
+        }
+        advanceLowestSentSeqNum();
+
+        while (bits != 0) {
+            int offset = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+
+            OutgoingCommand command = removeSentReliableCommand(cumulativeSeqNum + 1 + offset);
+            if (command != null) {
+                removedBytes += command.getSerializedLength();
+                releaseAcknowledgedCommand(command);
+            }
+        }
+
+        return removedBytes;
+    }
+
+    /**
+     * Return the bits of reliable commands which were received after the incoming reliable sequence number,
+     * in which bit i means that the sequence number of {@link #getIncomingReliableSeqNum()} + 1 + i was received.
+     */
+    public long getIncomingReliableBits() {
+        if (incomingReliableCommands.isEmpty())
+            return 0;
+
+        long bits = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            if (incomingReliableCommands.contains(incomingReliableSeqNum + 1 + i))
+                bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    /**
+     * Return the earliest retransmission timeout of sent reliable commands, or {@link Long#MAX_VALUE} if nothing is waiting.
+     */
+    public long getEarliestRetransmissionTimeout() {
+        OutgoingCommand command = retransmissionQueue.peek();
+        return command == null ? Long.MAX_VALUE : command.getRetransmissionTimeout();
+    }
+
+    /**
+     * Wait for the retransmission timeout of the command which was just sent.
+     */
+    public void scheduleRetransmission(OutgoingCommand command) {
+        retransmissionQueue.add(command);
+    }
 
-        for (OutgoingCommand command : sentReliableCommands.values()) {
-            long rto = command.getRetransmissionTimeout();
+    /**
+     * Queue sent reliable commands again, whose retransmission timeouts were passed.
+     *
+     * @return The count of queued commands, or -1 if a command was resent too many times.
+     */
+    public int resend(long currentTime) {
+        int resent = 0;
 
+        OutgoingCommand command;
+        while ((command = retransmissionQueue.peek()) != null && currentTime > command.getRetransmissionTimeout()) {
             if (command.getSentCount() > OutgoingCommand.MAX_RESEND_COUNT) {
                 if (logger.isDebugEnabled())
                     logger.debug("Failed to resend, relSeq[{}] currentTime[{}] rto[{}] sentTime[{}] sentCount[{}]",
-                            command.getReliableSeqNum(), currentTime, rto, command.getSentTime(), command.getSentCount());
-                return false;
+                            command.getReliableSeqNum(), currentTime, command.getRetransmissionTimeout(),
+                            command.getSentTime(), command.getSentCount());
+                return -1;
             }
 
-            if (currentTime > rto) {
-                insertOutgoingReliableCommand(command);
+            retransmissionQueue.poll();
+            insertOutgoingReliableCommand(command);
+            resent++;
+        }
+
+        return resent;
+    }
+
+    /**
+     * Queue the lowest unacknowledged command again when the threshold of acknowledgements of later sequence numbers
+     * were received, which is counted by ACK commands one by one.
+     *
+     * @param acknowledgedSeqNum The sequence number which was acknowledged just before.
+     * @return The count of queued commands.
+     */
+    public int fastRetransmit(long acknowledgedSeqNum, int threshold) {
+        OutgoingCommand lowest = lowestSentReliableCommand();
+        if (threshold <= 0 || lowest == null)
+            return 0;
+
+        if (lowest.getReliableSeqNum() != lowestUnacknowledgedSeqNum) {
+            lowestUnacknowledgedSeqNum = lowest.getReliableSeqNum();
+            laterAcknowledgementCount = 0;
+        }
+
+        if (acknowledgedSeqNum > lowestUnacknowledgedSeqNum)
+            laterAcknowledgementCount++;
+
+        if (laterAcknowledgementCount < threshold)
+            return 0;
+
+        return fastRetransmit(lowest) ? 1 : 0;
+    }
+
+    /**
+     * Queue unacknowledged commands again, which are followed by acknowledged ones as many as the threshold in a SACK command.
+     *
+     * @param cumulativeSeqNum Every sequence number up to it was acknowledged.
+     * @param bits             Bit i means that the sequence number of {@code cumulativeSeqNum + 1 + i} was acknowledged.
+     * @return The count of queued commands.
+     */
+    public int fastRetransmit(long cumulativeSeqNum, long bits, int threshold) {
+        if (threshold <= 0 || Long.bitCount(bits) < threshold)
+            return 0;
+
+        int retransmitted = 0;
+        int laterCount = 0;
+
+        for (int offset = Long.SIZE - 1 - Long.numberOfLeadingZeros(bits); offset >= 0; offset--) {
+            if ((bits & (1L << offset)) != 0) {
+                laterCount++;
+            } else if (laterCount >= threshold) {
+                OutgoingCommand command = sentReliableCommands.get(cumulativeSeqNum + 1 + offset);
+
+                if (command != null && fastRetransmit(command))
+                    retransmitted++;
             }
         }
 
+        return retransmitted;
+    }
+
+    private boolean fastRetransmit(OutgoingCommand command) {
+        // A command is retransmitted by acknowledgements once, and its retransmission is recovered by the timeout.
+        if (command.isFastRetransmitted() || !retransmissionQueue.remove(command))
+            return false;
+
+        command.setFastRetransmitted();
+        insertOutgoingReliableCommand(command);
         return true;
     }
 }
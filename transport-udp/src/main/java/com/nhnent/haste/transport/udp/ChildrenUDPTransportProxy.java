@@ -16,53 +16,82 @@
 
 package com.nhnent.haste.transport.udp;
 
+import com.nhnent.haste.common.EnvironmentTimer;
+import com.nhnent.haste.transport.EventExecutor;
+import com.nhnent.haste.transport.Timeout;
+import com.nhnent.haste.transport.TimeoutTask;
 import com.nhnent.haste.transport.state.ConnectionState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.DatagramChannel;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 final class ChildrenUDPTransportProxy extends AbstractUDPTransportProxy {
     private static final Logger logger = LoggerFactory.getLogger(ChildrenUDPTransportProxy.class);
 
-    final Map<Integer, TransportPeer> peers = new HashMap<>();
+    /**
+     * Peers are put and removed only in the event loop thread, and they are read by the metric timer too.
+     */
+    final PeerTable peers;
 
-    private final int SEND_RATE = 30;
+    /**
+     * The count of peers which were assigned to this proxy, including peers which are not added yet.
+     */
+    private final AtomicInteger peerCount = new AtomicInteger();
 
-    private long lastSentTime = 0;
-
-    public ChildrenUDPTransportProxy(UDPTransport transport, DatagramChannel ch, int port) {
-        super(transport, ch, port);
+    public ChildrenUDPTransportProxy(UDPTransport transport, EventExecutor executor, DatagramChannel ch, int port) {
+        super(transport, executor, ch, port);
         readByteBuffer.order(ByteOrder.BIG_ENDIAN);
+        this.peers = new PeerTable(transport.peerSlotCount());
     }
 
-    @Override
-    public void read(long currentTime) {
-        try {
-            SocketAddress socketAddress = ch.receive(readByteBuffer);
+    /**
+     * Calls {@link TransportPeer#send(DatagramChannel, ByteBuffer, long)} when the send timeout of a peer is expired.
+     * A peer is not touched by the event loop until its timeout is expired or it requests sending.
+     */
+    private final class SendTask implements TimeoutTask {
+        private final TransportPeer peer;
+
+        SendTask(TransportPeer peer) {
+            this.peer = peer;
+        }
 
-            int transferred_bytes = readByteBuffer.position();
-            readByteBuffer.position(0);
+        @Override
+        public void run(Timeout timeout, long currentTime) {
+            try {
+                peer.send(ch, writeByteBuffer, currentTime);
+            } catch (Exception e) {
+                logger.error("Raised exception when sending", e);
+            }
+
+            if (peer.getConnectionState().isEqual(ConnectionState.DISCONNECTED)) {
+                peer.dispose();
+                return;
+            }
 
-            if (transferred_bytes > 0)
-                onReceive(currentTime, socketAddress, readByteBuffer, transferred_bytes);
+            timeout.schedule(peer.nextSendTime());
+        }
+    }
 
-        } catch (IOException e) {
-            logger.error("Failed to read data in ChildrenUDPTransportProxy", e);
-        } finally {
-            readByteBuffer.clear();
+    @Override
+    protected void onDatagram(long currentTime, SocketAddress socketAddress, int transferred_bytes) {
+        if (transport.isReusePort() && CommandType.CONNECT.isEqual(readByteBuffer.get(0))) {
+            onConnect(currentTime, socketAddress, transferred_bytes);
+            return;
         }
+
+        onReceive(currentTime, socketAddress, readByteBuffer, transferred_bytes, true);
     }
 
-    private void onReceive(long currentTime, SocketAddress socketAddress, ByteBuffer byteBuffer, int transferred_bytes) {
+    private void onReceive(long currentTime,
+                           SocketAddress socketAddress,
+                           ByteBuffer byteBuffer,
+                           int transferred_bytes,
+                           boolean handOff) {
         byte ct = byteBuffer.get();           //1
 
         if (CommandType.MESSAGES.isNotEqual(ct))
@@ -70,74 +99,159 @@ final class ChildrenUDPTransportProxy extends AbstractUDPTransportProxy {
 
         int peerID = byteBuffer.getInt();    //4
 
+        // A late datagram of a disconnected peer is dropped, even if its slot was allocated to a new peer.
+        if (!transport.isCurrentPeerID(peerID))
+            return;
+
         TransportPeer peer = getPeer(peerID);
 
         if (peer == null) {
+            if (handOff) {
+                handOff(peerID, socketAddress, byteBuffer, transferred_bytes);
+            }
             return;
         }
 
         peer.onReceive(currentTime, socketAddress, byteBuffer, transferred_bytes);
     }
 
-    @Override
-    public void send(long currentTime) {
-        if (lastSentTime + SEND_RATE > currentTime)
+    /**
+     * Hand a datagram off to the proxy which owns the peer, when it was delivered to another socket.
+     * For instance, the source port of a client was changed by NAT rebinding,
+     * or the client has not known the new port of the peer which was migrated yet.
+     * If this proxy owns the peer, the peer is being migrated to this proxy and it is not added yet.
+     * Then the datagram is queued after {@link #addPeer(TransportPeer)}, which was queued before the owner was set.
+     */
+    private void handOff(int peerID, final SocketAddress socketAddress, ByteBuffer byteBuffer, int transferred_bytes) {
+        final ChildrenUDPTransportProxy owner = transport.getOwnerProxy(peerID);
+
+        if (owner == null)
             return;
 
-        lastSentTime = currentTime;
+        final byte[] data = new byte[transferred_bytes];
+        ByteBuffer duplicated = byteBuffer.duplicate();
+        duplicated.clear();
+        duplicated.get(data, 0, transferred_bytes);
 
-        List<TransportPeer> disconnectedPeers = new LinkedList<>();
+        owner.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                owner.onReceive(EnvironmentTimer.currentTimeMillis(), socketAddress, ByteBuffer.wrap(data), data.length, false);
+            }
+        });
+    }
 
-        synchronized (peers) {
-            for (TransportPeer peer : peers.values()) {
-                try {
-                    peer.send(ch, currentTime);
-                } catch (Exception e) {
-                    logger.error("Raised exception when sending", e);
-                }
+    int peerCount() {
+        return peerCount.get();
+    }
+
+    /**
+     * Count a peer which will be added to this proxy. It is released when the peer is removed.
+     */
+    void reservePeer() {
+        peerCount.incrementAndGet();
+    }
+
+    /**
+     * Release the count of a reserved peer which will not be added.
+     */
+    void releasePeer() {
+        peerCount.decrementAndGet();
+    }
 
-                if (peer.getConnectionState().isEqual(ConnectionState.DISCONNECTED)) {
-                    disconnectedPeers.add(peer);
+    /**
+     * Move a connected peer of this proxy to the target in the event loop thread.
+     * The target must be reserved by {@link #reservePeer()} before, and it is released if no peer can be moved.
+     * It can be called in any thread.
+     */
+    void migratePeer(final ChildrenUDPTransportProxy target) {
+        if (!executor.inEventLoop()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    migratePeer(target);
                 }
-            }
+            });
+            return;
+        }
 
-            for (TransportPeer peer : disconnectedPeers) {
-                peer.dispose();
-            }
+        long currentTime = EnvironmentTimer.currentTimeMillis();
+
+        for (int i = 0; i < peers.size(); i++) {
+            TransportPeer peer = peers.peerAt(i);
+
+            if (peer.getConnectionState().isNotEqual(ConnectionState.CONNECTED))
+                continue;
+
+            if (!peer.migrate(ch, writeByteBuffer, target.executor, target.port(), currentTime))
+                continue;
+
+            int peerID = peer.getPeerID();
+
+            peers.remove(peerID, peer);
+            peerCount.decrementAndGet();
+
+            target.addPeer(peer);
+
+            // Datagrams which are still sent to this proxy are handed off to the target.
+            // The owner is set after the peer is queued to be added, so that they are processed after it was added.
+            transport.setOwnerProxy(peerID, target);
+
+            if (logger.isDebugEnabled())
+                logger.debug("PeerID[{}] was migrated from port {} to {}", peerID, port(), target.port());
+            return;
         }
+
+        target.releasePeer();
     }
 
-    public void addPeer(TransportPeer peer) {
-        int peerID = peer.getPeerID();
+    /**
+     * Add the peer in the event loop thread. It can be called in any thread.
+     */
+    public void addPeer(final TransportPeer peer) {
+        if (!executor.inEventLoop()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    addPeer(peer);
+                }
+            });
+            return;
+        }
 
-        peer.addDisposeEvent(new TransportPeer.Disposable() {
-            private int peerID;
+        final int peerID = peer.getPeerID();
 
+        peer.addDisposeEvent(new TransportPeer.Disposable() {
             @Override
             public void dispose() {
-                removePeer(peerID);
+                removePeer(peerID, peer);
             }
+        });
 
-            public TransportPeer.Disposable build(int peerID) {
-                this.peerID = peerID;
-                return this;
-            }
-        }.build(peerID));
+        peers.put(peer);
 
-        synchronized (peers) {
-            peers.put(peerID, peer);
-        }
+        peer.register(executor.newTimeout(new SendTask(peer)), EnvironmentTimer.currentTimeMillis());
     }
 
-    private void removePeer(int peerID) {
-        synchronized (peers) {
-            peers.remove(peerID);
+    /**
+     * Remove the peer in the event loop thread, unless it was migrated to another proxy. It can be called in any thread.
+     */
+    private void removePeer(final int peerID, final TransportPeer peer) {
+        if (!executor.inEventLoop()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    removePeer(peerID, peer);
+                }
+            });
+            return;
         }
+
+        if (peers.remove(peerID, peer))
+            peerCount.decrementAndGet();
     }
 
     private TransportPeer getPeer(int peerID) {
-        synchronized (peers) {
-            return peers.get(peerID);
-        }
+        return peers.get(peerID);
     }
-}
+}
\ No newline at end of file
@@ -18,6 +18,7 @@ package com.nhnent.haste.transport.udp;
 
 public enum CommandLength {
     ACK_PAYLOAD(16),
+    SACK_PAYLOAD(24),
     CONNECT_PAYLOAD(14),
     MIN_SIZE(13),
     DISCONNECT_HEADER_SIZE(MIN_SIZE.getLength()),
@@ -27,6 +27,9 @@ public enum CommandType {
     RELIABLE((byte) 6),
     UNRELIABLE((byte) 7),
     FRAGMENT((byte) 8),
+    MIGRATE((byte) 9),
+    CONNECT_COOKIE((byte) 10),
+    SACK((byte) 11),
     EG_SERVER_TIME((byte) 14);
 
     private final byte value;
@@ -50,6 +53,8 @@ public enum CommandType {
             return CommandType.EG_SERVER_TIME;
         } else if (ACK.isEqual(value)) {
             return CommandType.ACK;
+        } else if (SACK.isEqual(value)) {
+            return CommandType.SACK;
         } else {
             return CommandType.INVALID;
         }
@@ -0,0 +1,60 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+/**
+ * A congestion control algorithm of a peer, which limits bytes of reliable commands in flight,
+ * and the rate at which datagrams are sent to the peer.
+ * A controller is created for every peer, and it is called only in the event loop thread of the peer.
+ */
+public interface CongestionController {
+    /**
+     * Return the maximum bytes of reliable commands which were sent, but are not acknowledged yet.
+     */
+    int congestionWindow();
+
+    /**
+     * Return the rate at which datagrams are paced in bytes per millisecond, or zero if they are not paced.
+     */
+    double pacingRate();
+
+    /**
+     * Called when reliable commands were acknowledged.
+     *
+     * @param ackedBytes    The serialized bytes of acknowledged commands.
+     * @param roundTripTime The round trip time which was measured by the acknowledgement.
+     * @param currentTime   The time when the acknowledgement was received.
+     */
+    void onAcked(int ackedBytes, long roundTripTime, long currentTime);
+
+    /**
+     * Called when reliable commands are retransmitted because they were not acknowledged in time.
+     */
+    void onLoss(long currentTime);
+
+    /**
+     * Creates a controller for every peer.
+     * Factories are shared by all peers of a transport, so they must be stateless.
+     */
+    interface Factory {
+        /**
+         * @param maxSegmentSize The maximum size of a datagram to the peer.
+         */
+        CongestionController newController(int maxSegmentSize);
+    }
+}
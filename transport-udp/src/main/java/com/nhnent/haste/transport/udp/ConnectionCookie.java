@@ -0,0 +1,116 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * A cookie which proves that a client receives datagrams at its source address, without any state in the server.
+ * It is the issued time and a keyed hash of the address and the time, so that it is valid only for the address
+ * until it is expired. The secret key is generated randomly for every transport.
+ * <br>
+ * {@link Mac} is not thread safe, so every event loop uses its own one by {@link #newMac()}.
+ */
+final class ConnectionCookie {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int SECRET_LENGTH = 32;
+
+    private static final int HASH_LENGTH = 16;
+
+    /**
+     * The issued time and the truncated hash.
+     */
+    static final int LENGTH = 8 + HASH_LENGTH;
+
+    /**
+     * How long a cookie is valid after it was issued in milliseconds.
+     */
+    static final int LIFETIME = 10000;
+
+    private final SecretKeySpec secretKey;
+
+    ConnectionCookie() {
+        byte[] secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        this.secretKey = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to create " + ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Write a new cookie of the address at the position of the buffer.
+     */
+    void write(Mac mac, ByteBuffer dst, SocketAddress sa, long issuedTime) {
+        dst.putLong(issuedTime);
+        dst.put(hash(mac, sa, issuedTime), 0, HASH_LENGTH);
+    }
+
+    /**
+     * Read a cookie at the position of the buffer, and verify that it was issued to the address and is not expired.
+     */
+    boolean verify(Mac mac, ByteBuffer src, SocketAddress sa, long currentTime) {
+        if (src.remaining() < LENGTH)
+            return false;
+
+        long issuedTime = src.getLong();
+
+        if (issuedTime > currentTime || currentTime - issuedTime > LIFETIME)
+            return false;
+
+        byte[] expected = hash(mac, sa, issuedTime);
+
+        // Compare every byte, so that the time of verification does not tell how many bytes are matched.
+        int difference = 0;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            difference |= expected[i] ^ src.get();
+        }
+
+        return difference == 0;
+    }
+
+    private static byte[] hash(Mac mac, SocketAddress sa, long issuedTime) {
+        InetSocketAddress address = (InetSocketAddress) sa;
+        int port = address.getPort();
+
+        mac.reset();
+        mac.update(address.getAddress().getAddress());
+        mac.update((byte) (port >>> 8));
+        mac.update((byte) port);
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mac.update((byte) (issuedTime >>> shift));
+        }
+
+        return mac.doFinal();
+    }
+}
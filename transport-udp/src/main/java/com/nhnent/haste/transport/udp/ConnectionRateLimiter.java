@@ -0,0 +1,160 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Token buckets of connection requests by source IP address, which are shared by every event loop.
+ * A bucket holds {@code burst} tokens at most, and is refilled {@code permitsPerSecond} tokens every second.
+ * <br>
+ * Buckets are sharded by their addresses, and every shard has its own lock. A shard keeps buckets up to
+ * its share of {@link #MAX_ADDRESSES} in the order of access. When it is full, buckets which have been refilled
+ * completely are removed from the head, and the least recently used one is removed if there is still no room,
+ * so that a request from a new address never scans the shard.
+ */
+final class ConnectionRateLimiter {
+    static final int MAX_ADDRESSES = 65536;
+
+    private static final int SHARD_COUNT = 16;
+
+    private static final int MAX_ADDRESSES_PER_SHARD = MAX_ADDRESSES / SHARD_COUNT;
+
+    private final double permitsPerMillisecond;
+
+    private final int burst;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+
+    ConnectionRateLimiter(int permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0)
+            throw new IllegalArgumentException("permitsPerSecond should be larger than zero");
+
+        if (burst <= 0)
+            throw new IllegalArgumentException("burst should be larger than zero");
+
+        this.permitsPerMillisecond = permitsPerSecond / 1000.0;
+        this.burst = burst;
+
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    private Shard shard(InetAddress address) {
+        int h = address.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARD_COUNT - 1)];
+    }
+
+    /**
+     * Take a token from the bucket of the source address.
+     *
+     * @return {@code true} if the request is admitted {@code false} otherwise.
+     */
+    boolean tryAcquire(SocketAddress sa, long currentTime) {
+        InetAddress address = ((InetSocketAddress) sa).getAddress();
+        Shard shard = shard(address);
+
+        synchronized (shard) {
+            Bucket bucket = shard.buckets.get(address);
+
+            if (bucket == null) {
+                if (shard.buckets.size() >= MAX_ADDRESSES_PER_SHARD)
+                    shard.evict(currentTime);
+
+                bucket = new Bucket(burst, currentTime);
+                shard.buckets.put(address, bucket);
+            }
+
+            return bucket.tryAcquire(currentTime);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private final class Shard {
+        /**
+         * Buckets in the order of access, so that the head is the least recently used one.
+         */
+        private final LinkedHashMap<InetAddress, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * Remove buckets which have been refilled completely from the head until a partial one,
+         * and remove the head if nothing was removed, so that there is room for a new bucket.
+         */
+        void evict(long currentTime) {
+            Iterator<Bucket> iterator = buckets.values().iterator();
+            boolean removed = false;
+
+            while (iterator.hasNext()) {
+                Bucket bucket = iterator.next();
+                bucket.refill(currentTime);
+
+                if (bucket.tokens < burst) {
+                    if (!removed)
+                        iterator.remove();
+                    break;
+                }
+
+                iterator.remove();
+                removed = true;
+            }
+        }
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long lastRefillTime;
+
+        Bucket(double tokens, long currentTime) {
+            this.tokens = tokens;
+            this.lastRefillTime = currentTime;
+        }
+
+        void refill(long currentTime) {
+            if (currentTime <= lastRefillTime)
+                return;
+
+            tokens = Math.min(burst, tokens + (currentTime - lastRefillTime) * permitsPerMillisecond);
+            lastRefillTime = currentTime;
+        }
+
+        boolean tryAcquire(long currentTime) {
+            refill(currentTime);
+
+            if (tokens < 1)
+                return false;
+
+            tokens -= 1;
+            return true;
+        }
+    }
+}
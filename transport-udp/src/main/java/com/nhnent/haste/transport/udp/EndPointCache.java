@@ -14,46 +14,74 @@
 * limitations under the License.
 */
 
+
 package com.nhnent.haste.transport.udp;
 
 import java.net.SocketAddress;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * End points which requested connections recently, by transport.
+ * End points are sharded by their addresses, and every shard has its own lock.
+ * A shard keeps end points in the order of adding, so that expired ones are removed from the head
+ * whenever the shard is accessed, and the cost of expiration is amortized over adding.
+ */
 final class EndPointCache {
-    private static EndPointCache instance = new EndPointCache();
-
-    private final int CONNECTION_TIMEOUT = 2000;
-
-    private final int CLEANUP_INTERVAL = 1000;
+    static final int CONNECTION_TIMEOUT = 2000;
 
-    private AtomicLong lastCleanUpTime = new AtomicLong(0);
+    private static final int SHARD_COUNT = 16;
 
-    private Map<SocketAddress, EndPoint> connectingList = new HashMap<>();
+    private final Shard[] shards = new Shard[SHARD_COUNT];
 
-    private EndPointCache() {
+    EndPointCache() {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
     }
 
-    public static EndPointCache getInstance() {
-        return instance;
+    private Shard shard(SocketAddress sa) {
+        int h = sa.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARD_COUNT - 1)];
     }
 
     public void addEndPoint(SocketAddress sa, long currentTime, ConnectionInfo connectionInfo) {
         EndPoint ep = new EndPoint(currentTime, connectionInfo);
+        Shard shard = shard(sa);
+
+        synchronized (shard) {
+            shard.expire(currentTime);
+
+            // It is removed first to be moved to the tail, because re-putting does not change the order.
+            shard.endPoints.remove(sa);
+            shard.endPoints.put(sa, ep);
+        }
+    }
+
+    /**
+     * Remove the end point which was added at the time without connection information,
+     * so that the next connection request of a failed handshake is accepted at once.
+     * An end point which was added again after it is kept.
+     */
+    void removeEndPoint(SocketAddress sa, long time) {
+        Shard shard = shard(sa);
 
-        synchronized (connectingList) {
-            connectingList.put(sa, ep);
+        synchronized (shard) {
+            EndPoint ep = shard.endPoints.get(sa);
+
+            if (ep != null && ep.getInfo() == null && ep.getTime() == time)
+                shard.endPoints.remove(sa);
         }
     }
 
     public ConnectionInfo getInfo(SocketAddress sa) {
         EndPoint ep;
+        Shard shard = shard(sa);
 
-        synchronized (connectingList) {
-            ep = connectingList.get(sa);
+        synchronized (shard) {
+            ep = shard.endPoints.get(sa);
         }
 
         if (ep == null)
@@ -62,60 +90,64 @@ final class EndPointCache {
         return ep.getInfo();
     }
 
-    private class EndPoint {
-        private final long time;
-        private final ConnectionInfo info;
+    boolean exist(long currentTime, SocketAddress sa) {
+        EndPoint endPoint;
+        Shard shard = shard(sa);
 
-        EndPoint(long currentTime, ConnectionInfo info) {
-            this.time = currentTime;
-            this.info = info;
+        synchronized (shard) {
+            shard.expire(currentTime);
+            endPoint = shard.endPoints.get(sa);
         }
 
-        long getTime() {
-            return this.time;
-        }
-
-        ConnectionInfo getInfo() {
-            return info;
-        }
+        return endPoint != null && endPoint.getTime() >= currentTime - CONNECTION_TIMEOUT;
     }
 
-    boolean exist(long currentTime, SocketAddress sa) {
-        boolean cleanUp = false;
-
-        if ((lastCleanUpTime.get() + CLEANUP_INTERVAL) > currentTime) {
-            cleanUp = true;
-            lastCleanUpTime.set(currentTime);
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.endPoints.size();
+            }
         }
+        return size;
+    }
 
+    private static final class Shard {
+        private final LinkedHashMap<SocketAddress, EndPoint> endPoints = new LinkedHashMap<>();
 
-        long threshold = currentTime - CONNECTION_TIMEOUT;
-
-        synchronized (connectingList) {
-
-            if (cleanUp) {
-                List<SocketAddress> removeList = new LinkedList<>();
-
-                for (Map.Entry<SocketAddress, EndPoint> pair : connectingList.entrySet()) {
-                    EndPoint endPoint = pair.getValue();
-
-                    if (endPoint.getTime() < threshold)
-                        removeList.add(pair.getKey());
-                }
+        /**
+         * Remove expired end points from the head until a live one.
+         * Event loops add end points with their own time, so a few may be out of order
+         * and they are removed by following calls.
+         */
+        void expire(long currentTime) {
+            long threshold = currentTime - CONNECTION_TIMEOUT;
 
-                for (SocketAddress elem : removeList) {
-                    connectingList.remove(elem);
-                }
+            Iterator<Map.Entry<SocketAddress, EndPoint>> iterator = endPoints.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue().getTime() >= threshold)
+                    break;
 
+                iterator.remove();
             }
+        }
+    }
 
-            EndPoint endPoint = connectingList.get(sa);
+    private static final class EndPoint {
+        private final long time;
+        private final ConnectionInfo info;
 
-            if (endPoint == null || endPoint.getTime() < threshold) {
-                return false;
-            }
+        EndPoint(long currentTime, ConnectionInfo info) {
+            this.time = currentTime;
+            this.info = info;
         }
 
-        return true;
+        long getTime() {
+            return this.time;
+        }
+
+        ConnectionInfo getInfo() {
+            return info;
+        }
     }
 }
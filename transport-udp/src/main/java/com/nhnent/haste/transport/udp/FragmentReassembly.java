@@ -0,0 +1,90 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.transport.Payload;
+
+/**
+ * A fragmented payload which is being received. Every fragment is copied into the buffer of the total length on arrival,
+ * and it is tracked by a bitmap of fragment numbers and a received counter, so that completeness is checked in O(1).
+ */
+final class FragmentReassembly {
+    private final long startSeqNum;
+    private final short fragmentCount;
+    private final int totalLength;
+
+    private final long[] receivedBits;
+    private int receivedCount;
+
+    private final byte[] buffer;
+
+    FragmentReassembly(long startSeqNum, short fragmentCount, int totalLength) {
+        this.startSeqNum = startSeqNum;
+        this.fragmentCount = fragmentCount;
+        this.totalLength = totalLength;
+        this.receivedBits = new long[(fragmentCount + Long.SIZE - 1) / Long.SIZE];
+        this.buffer = new byte[totalLength];
+    }
+
+    /**
+     * Return {@code true} if the fragment belongs to this payload {@code false} if its header is inconsistent with it.
+     */
+    boolean matches(IncomingCommand fragment) {
+        return fragment.getFragmentCount() == fragmentCount && fragment.getFragmentPayloadTotalLength() == totalLength;
+    }
+
+    /**
+     * Copy the payload of the fragment into the buffer.
+     * The fragment number and the range of the payload must be validated by {@link IncomingCommand} before.
+     *
+     * @return {@code false} if the fragment was already received {@code true} otherwise.
+     */
+    boolean add(short fragmentNum, int fragmentOffset, Payload payload) {
+        int index = fragmentNum / Long.SIZE;
+        long bit = 1L << (fragmentNum % Long.SIZE);
+
+        if ((receivedBits[index] & bit) != 0)
+            return false;
+
+        receivedBits[index] |= bit;
+        receivedCount++;
+
+        System.arraycopy(payload.getBytes(), 0, buffer, fragmentOffset, payload.getLength());
+        return true;
+    }
+
+    boolean isComplete() {
+        return receivedCount == fragmentCount;
+    }
+
+    long getStartSeqNum() {
+        return startSeqNum;
+    }
+
+    short getFragmentCount() {
+        return fragmentCount;
+    }
+
+    int getTotalLength() {
+        return totalLength;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+}
@@ -44,6 +44,8 @@ public final class IncomingCommand extends UDPCommand<IncomingCommand> implement
 
     private long ackReceivedSentTime;
 
+    private long ackReceivedBits;
+
     private final short MAX_COMMAND_BYTES = 1350;
 
     private final short MIN_COMMAND_BYTES = (short) CommandLength.MIN_SIZE.getLength();
@@ -93,20 +95,22 @@ public final class IncomingCommand extends UDPCommand<IncomingCommand> implement
                 ackReceivedSentTime = byteBuffer.getLong();
                 break;
             }
+            case SACK: {
+                ackReceivedReliableSeq = byteBuffer.getLong();
+                ackReceivedBits = byteBuffer.getLong();
+                ackReceivedSentTime = byteBuffer.getLong();
+                break;
+            }
             case DISCONNECT:
             case RELIABLE: {
                 this.payload.setLength(commandBufferSize - CommandLength.RELIABLE_HEADER_SIZE.getLength());
-                int offset = byteBuffer.position();
-                payload.copyBytes(byteBuffer.array(), offset, this.payload.getLength());
-                byteBuffer.position(offset + this.payload.getLength());
+                payload.copyBytes(byteBuffer, this.payload.getLength());
                 break;
             }
             case UNRELIABLE: {
                 unreliableSeqNum = byteBuffer.getLong();
                 this.payload.setLength(commandBufferSize - CommandLength.UNRELIABLE_HEADER_SIZE.getLength());
-                int offset = byteBuffer.position();
-                payload.copyBytes(byteBuffer.array(), offset, this.payload.getLength());
-                byteBuffer.position(offset + this.payload.getLength());
+                payload.copyBytes(byteBuffer, this.payload.getLength());
                 break;
             }
             case FRAGMENT: {
@@ -116,17 +120,16 @@ public final class IncomingCommand extends UDPCommand<IncomingCommand> implement
                 fragmentPayloadTotalLength = byteBuffer.getInt();
                 fragmentOffset = byteBuffer.getInt();
 
-                fragmentList.clear();
+                int length = commandBufferSize - CommandLength.FRAGMENTED_HEADER_SIZE.getLength();
 
-                for (int i = 0; i < fragmentCount; i++) {
-                    fragmentList.set(i, false);
+                if (!isValidFragment(length)) {
+                    logger.error("Invalid fragment : {}/{}, offset {}, total length {}", fragmentNum, fragmentCount, fragmentOffset, fragmentPayloadTotalLength);
+                    valid = false;
+                    return;
                 }
 
-                fragmentList.set(fragmentNum, true);
-
-                this.payload.setLength(commandBufferSize - CommandLength.FRAGMENTED_HEADER_SIZE.getLength());
-                int offset = byteBuffer.position();
-                payload.copyBytes(byteBuffer.array(), offset, this.payload.getLength());
+                this.payload.setLength(length);
+                payload.copyBytes(byteBuffer, this.payload.getLength());
 
                 break;
             }
@@ -140,41 +143,61 @@ public final class IncomingCommand extends UDPCommand<IncomingCommand> implement
         }
     }
 
+    /**
+     * A fragment must be within its payload, and its sequence number must be consistent with the start sequence number,
+     * so that it can be copied into the reassembly buffer of the payload without checking again.
+     */
+    private boolean isValidFragment(int length) {
+        return fragmentCount > 0
+                && fragmentNum >= 0 && fragmentNum < fragmentCount
+                && reliableSeqNum == startSeqNum + fragmentNum
+                && fragmentPayloadTotalLength > 0
+                && fragmentOffset >= 0 && length >= 0
+                && fragmentOffset <= fragmentPayloadTotalLength - length;
+    }
+
     public static IncomingCommand newIncomingCommand(long receivedTime, ByteBuffer byteBuffer) {
         IncomingCommand command = pool.take();
         command.init(receivedTime, byteBuffer);
         return command;
     }
 
-    public OutgoingCommand createAck(long serverSentTime) {
-        byte[] payload = new byte[CommandLength.ACK_PAYLOAD.getLength()];
-        ByteBuffer byteBuffer = ByteBuffer.wrap(payload);
-        byteBuffer.putLong(reliableSeqNum);
-        byteBuffer.putLong(serverSentTime);
-
-        return OutgoingCommand.newOutgoingCommand(CommandType.ACK, payload, payload.length, false, getChannelIndex());
-    }
-
     public long getReceiveTime() {
         return receivedTime;
     }
 
+    /**
+     * Return the acknowledged sequence number of an ACK command,
+     * or the cumulative acknowledged sequence number of a SACK command.
+     */
     public long getAckReceivedReliableSeq() {
-        assert commandType == CommandType.ACK;
+        assert commandType == CommandType.ACK || commandType == CommandType.SACK;
         return ackReceivedReliableSeq;
     }
 
+    /**
+     * Return the bits of a SACK command, in which bit i means that the sequence number of
+     * {@link #getAckReceivedReliableSeq()} + 1 + i was received.
+     */
+    public long getAckReceivedBits() {
+        assert commandType == CommandType.SACK;
+        return ackReceivedBits;
+    }
+
     public long getAckReceivedSentTime() {
         return ackReceivedSentTime;
     }
 
     public long getRoundTripTime() {
-        assert commandType == CommandType.ACK;
+        assert commandType == CommandType.ACK || commandType == CommandType.SACK;
         return receivedTime - ackReceivedSentTime;
     }
 
     public void setPayloadBuf(byte[] payload, int length) {
         assert commandType == CommandType.FRAGMENT;
+        if (this.payload == null) {
+            this.payload = Payload.take();
+        }
         this.payload.setBytes(payload);
         this.payload.setLength(length);
     }
@@ -183,10 +206,20 @@ public final class IncomingCommand extends UDPCommand<IncomingCommand> implement
         return payload;
     }
 
+    /**
+     * Release the payload before the command, when it has been copied into a reassembly buffer.
+     */
+    void releasePayload() {
+        if (this.payload != null) {
+            this.payload.release();
+            this.payload = null;
+        }
+    }
+
     @Override
     public void release() {
         if (this.handle != null) {
-            this.payload.release();
+            releasePayload();
             this.handle.release();
         }
     }
@@ -0,0 +1,95 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.security.DiffieHellman;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The pool of Diffie-Hellman key pairs of the server, which are generated in advance.
+ * Every key pair is taken only once, and the pool is refilled in the background one key pair at a time,
+ * so that refilling does not hold a thread of the executor for long.
+ */
+final class KeyPairPool {
+    private static final int PRIVATE_KEY_BITS = 160;
+
+    private final BlockingQueue<DiffieHellman.KeyPair> keyPairs;
+
+    private final Executor executor;
+
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+    private final Runnable refillTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                keyPairs.offer(DiffieHellman.generateKeyPair(PRIVATE_KEY_BITS));
+            } finally {
+                refilling.set(false);
+            }
+
+            refill();
+        }
+    };
+
+    /**
+     * @param capacity The maximum count of key pairs which are generated in advance.
+     * @param executor The executor which generates key pairs in the background.
+     */
+    KeyPairPool(int capacity, Executor executor) {
+        this.keyPairs = new ArrayBlockingQueue<>(capacity);
+        this.executor = executor;
+    }
+
+    /**
+     * Take a key pair. It is generated in the calling thread if the pool is empty. It can be called in any thread.
+     */
+    DiffieHellman.KeyPair take() {
+        DiffieHellman.KeyPair keyPair = keyPairs.poll();
+
+        refill();
+
+        if (keyPair == null)
+            keyPair = DiffieHellman.generateKeyPair(PRIVATE_KEY_BITS);
+
+        return keyPair;
+    }
+
+    /**
+     * Start refilling if the pool is not full and it is not being refilled.
+     */
+    void refill() {
+        if (keyPairs.remainingCapacity() == 0 || !refilling.compareAndSet(false, true))
+            return;
+
+        try {
+            executor.execute(refillTask);
+        } catch (RejectedExecutionException e) {
+            refilling.set(false);
+        }
+    }
+
+    int size() {
+        return keyPairs.size();
+    }
+}
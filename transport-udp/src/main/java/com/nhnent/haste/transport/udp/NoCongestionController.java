@@ -0,0 +1,53 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+/**
+ * No congestion control, so that every queued command is sent at once as before.
+ */
+public final class NoCongestionController implements CongestionController {
+    public static final CongestionController.Factory FACTORY = new CongestionController.Factory() {
+        @Override
+        public CongestionController newController(int maxSegmentSize) {
+            return INSTANCE;
+        }
+    };
+
+    private static final NoCongestionController INSTANCE = new NoCongestionController();
+
+    private NoCongestionController() {
+    }
+
+    @Override
+    public int congestionWindow() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public double pacingRate() {
+        return 0;
+    }
+
+    @Override
+    public void onAcked(int ackedBytes, long roundTripTime, long currentTime) {
+    }
+
+    @Override
+    public void onLoss(long currentTime) {
+    }
+}
@@ -16,55 +16,103 @@
 
 package com.nhnent.haste.transport.udp;
 
-import com.nhnent.haste.common.ByteWrite;
+import com.nhnent.haste.objectpool.Handle;
+import com.nhnent.haste.objectpool.ObjectPool;
+import com.nhnent.haste.objectpool.Poolable;
 
-public class OutgoingCommand extends UDPCommand<OutgoingCommand> {
+import java.nio.ByteBuffer;
+
+public class OutgoingCommand extends UDPCommand<OutgoingCommand> implements Poolable {
     public final static int MAX_RESEND_COUNT = 3;
     private final static int[] BACKOFF_MULTIPLE = new int[]{1, 1, 2, 4, 8, 16};
 
+    private static final int INITIAL_CREATE_COUNT = 1024;
+
+    private static final ObjectPool<OutgoingCommand> pool = new ObjectPool<OutgoingCommand>(true, INITIAL_CREATE_COUNT) {
+        @Override
+        protected OutgoingCommand newInstance(Handle handle) {
+            return new OutgoingCommand(handle);
+        }
+    };
+
+    private final Handle handle;
+
     private volatile int sentCount = 0;
     private long rto;
 
-    private boolean serialized = false;
-    private byte[] serializedArray = new byte[2048];
-    private short serializedArrayLength;
+    /**
+     * The payload is not copied into a command, but its slice is written into the datagram buffer when it is serialized.
+     */
+    private OutgoingPayload payload;
+    private int payloadOffset;
+    private int payloadLength;
+    private short serializedLength;
 
     private long sentTime;
 
     private int headerLength;
     private long timeout;
 
-    public OutgoingCommand() {
+    /**
+     * The index in {@link RetransmissionQueue}, or -1 if it is not queued.
+     */
+    int retransmissionIndex = -1;
+
+    /**
+     * Whether it was retransmitted by later acknowledgements, which is done once for a command.
+     */
+    private boolean fastRetransmitted;
+
+    /**
+     * Whether it is in an outgoing list of the channel, and whether it was acknowledged while it was there.
+     * A queued command is released when it is polled from the list instead of when it is acknowledged.
+     */
+    private boolean queued;
+    private boolean acknowledged;
+
+    private OutgoingCommand(Handle handle) {
+        this.handle = handle;
     }
 
-    private void init(CommandType commandType, byte[] payload, int payloadLength, boolean encrypt, byte channel) {
+    private void init(CommandType commandType, OutgoingPayload payload, int payloadOffset, int payloadLength, boolean encrypt, byte channel) {
         super.init(commandType, channel, encrypt);
 
         this.sentCount = 0;
-        this.serialized = false;
+        this.retransmissionIndex = -1;
+        this.fastRetransmitted = false;
+        this.queued = false;
+        this.acknowledged = false;
+        this.payload = payload;
+        this.payloadOffset = payloadOffset;
+        this.payloadLength = payloadLength;
 
         headerLength = commandType == CommandType.ACK ? CommandLength.ACK_HEADER_SIZE.getLength() :
                 commandType == CommandType.DISCONNECT ? CommandLength.DISCONNECT_HEADER_SIZE.getLength() :
                         commandType == CommandType.RELIABLE ? CommandLength.RELIABLE_HEADER_SIZE.getLength() :
                                 commandType == CommandType.UNRELIABLE ? CommandLength.UNRELIABLE_HEADER_SIZE.getLength() :
-                                        commandType == CommandType.FRAGMENT ? CommandLength.FRAGMENTED_HEADER_SIZE.getLength() : -1;
+                                        commandType == CommandType.FRAGMENT ? CommandLength.FRAGMENTED_HEADER_SIZE.getLength() :
+                                                commandType == CommandType.MIGRATE ? CommandLength.RELIABLE_HEADER_SIZE.getLength() : -1;
 
         if (headerLength < 0)
             return;
 
-        int length = headerLength + payloadLength;
-
-        if (length > serializedArray.length)
-            serializedArray = new byte[length];
-
-        serializedArrayLength = (short) length;
-
-        ByteWrite.set(payload, 0, payloadLength, serializedArray, headerLength);
+        serializedLength = (short) (headerLength + payloadLength);
     }
 
+    /**
+     * Create a command whose payload is a copy of the given bytes.
+     */
     public static OutgoingCommand newOutgoingCommand(CommandType commandType, byte[] payload, int payloadLength, boolean encrypt, byte channel) {
-        OutgoingCommand command = new OutgoingCommand();
-        command.init(commandType, payload, payloadLength, encrypt, channel);
+        return newOutgoingCommand(commandType, OutgoingPayload.copyOf(payload, payloadLength, 1), 0, payloadLength, encrypt, channel);
+    }
+
+    /**
+     * Create a command which refers to the slice of the payload. A reference of the payload is released with the command.
+     */
+    static OutgoingCommand newOutgoingCommand(CommandType commandType, OutgoingPayload payload, int payloadOffset, int payloadLength,
+                                              boolean encrypt, byte channel) {
+        OutgoingCommand command = pool.take();
+        command.init(commandType, payload, payloadOffset, payloadLength, encrypt, channel);
         return command;
     }
 
@@ -101,47 +149,52 @@ public class OutgoingCommand extends UDPCommand<OutgoingCommand> {
         sentCount++;
     }
 
-    public short getSerializedArrayLength() {
-        return serializedArrayLength;
+    public short getSerializedLength() {
+        return serializedLength;
     }
 
-    public byte[] serialize() {
-        if (serialized)
-            return serializedArray;
-
-        int offset = 0;
+    /**
+     * Write this command to the current position of the buffer, and the position is advanced.
+     */
+    public void serialize(ByteBuffer dst) {
+        int start = dst.position();
 
-        serializedArray[offset++] = commandType.getByte();
-        serializedArray[offset++] = getChannelIndex();
-        serializedArray[offset++] = getCommandFlag();
+        dst.put(commandType.getByte());
+        dst.put(getChannelIndex());
+        dst.put(getCommandFlag());
 
-        offset = ByteWrite.set(serializedArrayLength, serializedArray, offset);
-        offset = ByteWrite.set(getReliableSeqNum(), serializedArray, offset);
+        dst.putShort(serializedLength);
+        dst.putLong(getReliableSeqNum());
 
         switch (commandType) {
             case UNRELIABLE: {
-                offset = ByteWrite.set(getUnreliableSeqNum(), serializedArray, offset);
+                dst.putLong(getUnreliableSeqNum());
                 break;
             }
             case FRAGMENT: {
-                offset = ByteWrite.set(getFragmentStartSeqNum(), serializedArray, offset);
-                offset = ByteWrite.set(getFragmentCount(), serializedArray, offset);
-                offset = ByteWrite.set(getFragmentNum(), serializedArray, offset);
-                offset = ByteWrite.set(getFragmentPayloadTotalLength(), serializedArray, offset);
-                offset = ByteWrite.set(getFragmentOffset(), serializedArray, offset);
+                dst.putLong(getFragmentStartSeqNum());
+                dst.putShort(getFragmentCount());
+                dst.putShort(getFragmentNum());
+                dst.putInt(getFragmentPayloadTotalLength());
+                dst.putInt(getFragmentOffset());
                 break;
             }
         }
 
-        assert offset == headerLength;
+        assert dst.position() - start == headerLength;
 
-        serialized = true;
-
-        return serializedArray;
+        payload.writeTo(dst, payloadOffset, payloadLength);
     }
 
-    public void setRetransmissionTimeout(long sentTime, long rtt, long deviation) {
-        rto = sentTime + (rtt + (deviation << 2)) * backoffMultiple(sentCount);
+    /**
+     * Set the retransmission timeout by the round trip time, which is backed off by the sent count.
+     *
+     * @param minimumRto The lower bound of the timeout before backing off.
+     * @param maximumRto The upper bound of the timeout after backing off.
+     */
+    public void setRetransmissionTimeout(long sentTime, long rtt, long deviation, long minimumRto, long maximumRto) {
+        long interval = Math.max(minimumRto, rtt + (deviation << 2)) * backoffMultiple(sentCount);
+        rto = sentTime + Math.min(maximumRto, interval);
     }
 
     static int backoffMultiple(int sentCount) {
@@ -154,6 +207,30 @@ public class OutgoingCommand extends UDPCommand<OutgoingCommand> {
         return rto;
     }
 
+    boolean isFastRetransmitted() {
+        return fastRetransmitted;
+    }
+
+    void setFastRetransmitted() {
+        this.fastRetransmitted = true;
+    }
+
+    boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    boolean isAcknowledged() {
+        return acknowledged;
+    }
+
+    void setAcknowledged() {
+        this.acknowledged = true;
+    }
+
     public void setSentTime(long sentTime) {
         this.sentTime = sentTime;
     }
@@ -165,4 +242,14 @@ public class OutgoingCommand extends UDPCommand<OutgoingCommand> {
     public void setTimeout(long timeout) {
         this.timeout = timeout;
     }
+
+    @Override
+    public void release() {
+        if (payload != null) {
+            payload.release();
+            payload = null;
+        }
+
+        handle.release();
+    }
 }
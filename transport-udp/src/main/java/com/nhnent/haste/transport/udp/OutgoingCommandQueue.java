@@ -0,0 +1,97 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded multi-producer single-consumer queue without locks, in which commands of a payload are offered
+ * by any thread and polled by the event loop thread which owns the peer. Fragments of a payload are one element,
+ * so that they are never interleaved with others before their sequence numbers are assigned.
+ * <br>
+ * Every cell has its sequence number to be claimed by producers with CAS, as {@link PeerIdAllocator} does.
+ * The consumer is only one, so it advances its position without CAS.
+ */
+final class OutgoingCommandQueue {
+    private final int mask;
+    private final OutgoingCommand[][] cells;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private long dequeuePosition;
+
+    OutgoingCommandQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+
+        this.mask = capacity - 1;
+        this.cells = new OutgoingCommand[capacity][];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * It can be called in any thread.
+     *
+     * @return {@code false} if the queue is full {@code true} otherwise.
+     */
+    boolean offer(OutgoingCommand[] commands) {
+        for (; ; ) {
+            long position = enqueuePosition.get();
+            int i = (int) position & mask;
+            long difference = sequences.get(i) - position;
+
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    cells[i] = commands;
+                    sequences.set(i, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The cell is not polled yet since the last round.
+                return false;
+            }
+        }
+    }
+
+    /**
+     * It must be called in the event loop thread which owns the peer.
+     *
+     * @return Commands of a payload, or {@code null} if it is empty or the next element is not written yet.
+     */
+    OutgoingCommand[] poll() {
+        long position = dequeuePosition;
+        int i = (int) position & mask;
+
+        if (sequences.get(i) != position + 1)
+            return null;
+
+        OutgoingCommand[] commands = cells[i];
+        cells[i] = null;
+        dequeuePosition = position + 1;
+        sequences.lazySet(i, position + mask + 1);
+        return commands;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) dequeuePosition & mask) != dequeuePosition + 1;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.objectpool.Handle;
+import com.nhnent.haste.objectpool.ObjectPool;
+import com.nhnent.haste.objectpool.Poolable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pooled copy of a payload to send, which is shared by commands of the payload.
+ * Every command refers to a slice of it, and it is returned to the pool when all of them were released.
+ * It is copied once in the thread which enqueues the payload, and it is released in the event loop thread which owns the peer,
+ * so that the reference count is not shared by threads at the same time.
+ */
+final class OutgoingPayload implements Poolable {
+    private static final int PAYLOAD_CAPACITY = 2048;
+
+    /**
+     * A grown array larger than it is not kept in the pool, so that a large payload does not hold memory after it was sent.
+     */
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+    private static final int INITIAL_CREATE_COUNT = 16;
+
+    private static final ObjectPool<OutgoingPayload> pool = new ObjectPool<OutgoingPayload>(true, INITIAL_CREATE_COUNT) {
+        @Override
+        protected OutgoingPayload newInstance(Handle handle) {
+            return new OutgoingPayload(handle);
+        }
+    };
+
+    private final Handle handle;
+    private byte[] bytes = new byte[PAYLOAD_CAPACITY];
+    private int referenceCount;
+
+    private OutgoingPayload(Handle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Take a payload from the pool, and copy the bytes into it.
+     *
+     * @param referenceCount The count of commands which refer to it.
+     */
+    static OutgoingPayload copyOf(byte[] src, int length, int referenceCount) {
+        OutgoingPayload payload = pool.take();
+
+        if (payload.bytes.length < length)
+            payload.bytes = new byte[length];
+
+        System.arraycopy(src, 0, payload.bytes, 0, length);
+        payload.referenceCount = referenceCount;
+        return payload;
+    }
+
+    /**
+     * Write the slice of this payload to the current position of the buffer, and the position is advanced.
+     */
+    void writeTo(ByteBuffer dst, int offset, int length) {
+        dst.put(bytes, offset, length);
+    }
+
+    /**
+     * Release a reference, and it is returned to the pool when the last one is released.
+     */
+    @Override
+    public void release() {
+        assert referenceCount > 0;
+
+        if (--referenceCount > 0)
+            return;
+
+        if (bytes.length > MAX_POOLED_CAPACITY)
+            bytes = new byte[PAYLOAD_CAPACITY];
+
+        handle.release();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Allocate peer IDs without locks and boxing. A peer ID is a slot index in the lower {@link #INDEX_BITS} bits,
+ * and the generation of the slot in the upper bits, which is increased whenever the slot is allocated.
+ * So that a late datagram of a disconnected peer is not delivered to a new peer which reuses the slot.
+ * <br>
+ * Free slots are reused in FIFO order by a bounded ring, in which every cell has its sequence number
+ * to be claimed by producers and consumers with CAS. A cell which is claimed by another thread is waited for,
+ * so that a free slot is never missed. A slot is reused only after the other free slots,
+ * and the generation of it wraps around after {@link #MAX_GENERATION} allocations of the slot.
+ */
+final class PeerIdAllocator {
+    static final int INDEX_BITS = 20;
+
+    static final int MAX_SLOTS = 1 << INDEX_BITS;
+
+    private static final int INDEX_MASK = MAX_SLOTS - 1;
+
+    /**
+     * Generations take the rest of bits except the sign, and zero is skipped so that a peer ID is never zero.
+     */
+    static final int MAX_GENERATION = (1 << (31 - INDEX_BITS)) - 1;
+
+    static final int NONE = -1;
+
+    private final AtomicIntegerArray generations;
+
+    private final int mask;
+    private final int[] cells;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    PeerIdAllocator(int slots) {
+        if (slots <= 0 || slots > MAX_SLOTS)
+            throw new IllegalArgumentException("slots should be between 1 and " + MAX_SLOTS);
+
+        int capacity = Integer.highestOneBit(slots);
+        if (capacity < slots)
+            capacity <<= 1;
+
+        this.generations = new AtomicIntegerArray(slots);
+        this.mask = capacity - 1;
+        this.cells = new int[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+
+        for (int i = 0; i < slots; i++) {
+            offer(i);
+        }
+    }
+
+    /**
+     * Return a new peer ID, or {@link #NONE} if all slots are allocated.
+     */
+    int allocate() {
+        int index = poll();
+        if (index < 0)
+            return NONE;
+
+        // A released generation is negated, see release(int).
+        int previous = Math.abs(generations.get(index));
+        int generation = previous >= MAX_GENERATION ? 1 : previous + 1;
+
+        generations.set(index, generation);
+
+        return (generation << INDEX_BITS) | index;
+    }
+
+    /**
+     * Free the slot of the peer ID. A peer ID which is not current is ignored, so that a slot is not freed twice.
+     */
+    void release(int peerID) {
+        if (!isCurrent(peerID))
+            return;
+
+        int index = indexOf(peerID);
+        int generation = generationOf(peerID);
+
+        // The generation is negated, so that the peer ID is not current anymore, and the next one follows it.
+        if (generations.compareAndSet(index, generation, -generation))
+            offer(index);
+    }
+
+    /**
+     * Return {@code true} if the peer ID is allocated now {@code false} otherwise. It costs only one volatile read.
+     */
+    boolean isCurrent(int peerID) {
+        if (peerID <= 0)
+            return false;
+
+        int index = indexOf(peerID);
+        return index < generations.length() && generations.get(index) == generationOf(peerID);
+    }
+
+    static int indexOf(int peerID) {
+        return peerID & INDEX_MASK;
+    }
+
+    static int generationOf(int peerID) {
+        return peerID >>> INDEX_BITS;
+    }
+
+    private void offer(int value) {
+        for (; ; ) {
+            long position = enqueuePosition.get();
+            int i = (int) position & mask;
+            long difference = sequences.get(i) - position;
+
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    cells[i] = value;
+                    sequences.set(i, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                // The ring is not smaller than slots, so the cell is being polled by another thread.
+                Thread.yield();
+            }
+        }
+    }
+
+    private int poll() {
+        for (; ; ) {
+            long position = dequeuePosition.get();
+            int i = (int) position & mask;
+            long difference = sequences.get(i) - (position + 1);
+
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    int value = cells[i];
+                    sequences.set(i, position + mask + 1);
+                    return value;
+                }
+            } else if (difference < 0) {
+                if (enqueuePosition.get() == position)
+                    return -1;
+
+                // The cell is being offered by another thread.
+                Thread.yield();
+            }
+        }
+    }
+}
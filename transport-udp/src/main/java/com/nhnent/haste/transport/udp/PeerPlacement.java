@@ -0,0 +1,205 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.transport.Timeout;
+import com.nhnent.haste.transport.TimeoutTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Place new peers on the least loaded {@link ChildrenUDPTransportProxy}, and move peers between them when they are unbalanced.
+ * The load of a proxy is the mean of its shares of peers, received bytes per second and busy time of its event loop,
+ * so that the mean of all proxies is {@code 1}.
+ * It is used only in the event loop thread of the listener.
+ */
+final class PeerPlacement implements TimeoutTask {
+    private static final long LOAD_UPDATE_INTERVAL = 1000;
+
+    static final long REBALANCE_INTERVAL = 10000;
+
+    /**
+     * Peers are moved when the difference of loads between the most and the least loaded proxies exceeds it.
+     */
+    private static final double REBALANCE_THRESHOLD = 0.25;
+
+    static final int MAX_MIGRATIONS_PER_REBALANCE = 16;
+
+    private final ChildrenUDPTransportProxy[] proxies;
+
+    private final long[] lastReceivedBytes;
+    private final long[] lastBusyNanos;
+
+    private final double[] bytesPerSecond;
+    private final double[] busyRatio;
+
+    private final double[] loads;
+
+    private long lastUpdateTime = -1;
+
+    private int nextIndex = 0;
+
+    PeerPlacement(ChildrenUDPTransportProxy[] proxies) {
+        this.proxies = proxies;
+
+        int count = proxies.length;
+        lastReceivedBytes = new long[count];
+        lastBusyNanos = new long[count];
+        bytesPerSecond = new double[count];
+        busyRatio = new double[count];
+        loads = new double[count];
+    }
+
+    /**
+     * Return the least loaded proxy, which is reserved for a new peer.
+     * Proxies of the same load are chosen in turn.
+     */
+    ChildrenUDPTransportProxy place(long currentTime) {
+        updateRates(currentTime, false);
+        updateLoads();
+
+        int count = proxies.length;
+        int selected = nextIndex;
+
+        for (int i = 1; i < count; i++) {
+            int index = (nextIndex + i) % count;
+            if (loads[index] < loads[selected])
+                selected = index;
+        }
+
+        nextIndex = (selected + 1) % count;
+
+        ChildrenUDPTransportProxy proxy = proxies[selected];
+        proxy.reservePeer();
+        return proxy;
+    }
+
+    /**
+     * Move peers from the most loaded proxy to the least loaded one, then schedule the next rebalancing.
+     */
+    @Override
+    public void run(Timeout timeout, long currentTime) {
+        try {
+            rebalance(currentTime);
+        } finally {
+            timeout.schedule(currentTime + REBALANCE_INTERVAL);
+        }
+    }
+
+    private void rebalance(long currentTime) {
+        updateRates(currentTime, true);
+        updateLoads();
+
+        int most = 0;
+        int least = 0;
+
+        for (int i = 1; i < proxies.length; i++) {
+            if (loads[i] > loads[most])
+                most = i;
+            if (loads[i] < loads[least])
+                least = i;
+        }
+
+        double difference = loads[most] - loads[least];
+
+        if (difference <= REBALANCE_THRESHOLD)
+            return;
+
+        // Half of the difference is moved, which is proportional to peers of the most loaded proxy.
+        int peerCount = proxies[most].peerCount();
+        int migrations = (int) Math.min(MAX_MIGRATIONS_PER_REBALANCE, Math.ceil(peerCount * difference / (2 * loads[most])));
+
+        if (migrations >= peerCount)
+            migrations = peerCount - 1;
+
+        ChildrenUDPTransportProxy source = proxies[most];
+        ChildrenUDPTransportProxy target = proxies[least];
+
+        for (int i = 0; i < migrations; i++) {
+            target.reservePeer();
+            source.migratePeer(target);
+        }
+    }
+
+    private void updateRates(long currentTime, boolean force) {
+        if (lastUpdateTime < 0) {
+            for (int i = 0; i < proxies.length; i++) {
+                lastReceivedBytes[i] = proxies[i].receivedBytes();
+                lastBusyNanos[i] = busyNanos(proxies[i]);
+            }
+            lastUpdateTime = currentTime;
+            return;
+        }
+
+        long elapsed = currentTime - lastUpdateTime;
+
+        if (elapsed <= 0 || (!force && elapsed < LOAD_UPDATE_INTERVAL))
+            return;
+
+        for (int i = 0; i < proxies.length; i++) {
+            long receivedBytes = proxies[i].receivedBytes();
+            long busyNanos = busyNanos(proxies[i]);
+
+            bytesPerSecond[i] = (receivedBytes - lastReceivedBytes[i]) * 1000.0 / elapsed;
+            busyRatio[i] = (double) (busyNanos - lastBusyNanos[i]) / TimeUnit.MILLISECONDS.toNanos(elapsed);
+
+            lastReceivedBytes[i] = receivedBytes;
+            lastBusyNanos[i] = busyNanos;
+        }
+
+        lastUpdateTime = currentTime;
+    }
+
+    private static long busyNanos(ChildrenUDPTransportProxy proxy) {
+        return proxy.executor().metrics().workTime().sum();
+    }
+
+    private void updateLoads() {
+        int count = proxies.length;
+
+        double totalPeers = 0;
+        double totalBytes = 0;
+        double totalBusy = 0;
+
+        for (int i = 0; i < count; i++) {
+            totalPeers += proxies[i].peerCount();
+            totalBytes += bytesPerSecond[i];
+            totalBusy += busyRatio[i];
+        }
+
+        for (int i = 0; i < count; i++) {
+            double load = 0;
+            int metrics = 0;
+
+            if (totalPeers > 0) {
+                load += proxies[i].peerCount() * count / totalPeers;
+                metrics++;
+            }
+            if (totalBytes > 0) {
+                load += bytesPerSecond[i] * count / totalBytes;
+                metrics++;
+            }
+            if (totalBusy > 0) {
+                load += busyRatio[i] * count / totalBusy;
+                metrics++;
+            }
+
+            loads[i] = metrics == 0 ? 0 : load / metrics;
+        }
+    }
+}
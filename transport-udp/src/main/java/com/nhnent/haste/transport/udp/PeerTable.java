@@ -0,0 +1,124 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Peers of a proxy, which are indexed by the slot of their peer IDs, see {@link PeerIdAllocator}.
+ * Peers are also kept in a dense array for iteration, and a removed peer is swapped with the last one.
+ * <br>
+ * Peers are put and removed only in the event loop thread of the proxy.
+ * Lookup is lock-free in any thread, and iteration in other threads, for instance the metric timer,
+ * may miss a peer which is put or removed concurrently.
+ */
+final class PeerTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final AtomicReferenceArray<TransportPeer> slots;
+
+    /**
+     * The position of every slot in the dense array, which is accessed only in the event loop thread.
+     */
+    private final int[] positions;
+
+    private volatile TransportPeer[] dense = new TransportPeer[INITIAL_CAPACITY];
+
+    private volatile int size;
+
+    PeerTable(int slotCount) {
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.positions = new int[slotCount];
+    }
+
+    /**
+     * Return the peer of the peer ID, or {@code null} if it is not in this table.
+     */
+    TransportPeer get(int peerID) {
+        int index = PeerIdAllocator.indexOf(peerID);
+        if (index >= slots.length())
+            return null;
+
+        TransportPeer peer = slots.get(index);
+        if (peer == null || peer.getPeerID() != peerID)
+            return null;
+
+        return peer;
+    }
+
+    void put(TransportPeer peer) {
+        int index = PeerIdAllocator.indexOf(peer.getPeerID());
+
+        TransportPeer previous = slots.get(index);
+        if (previous != null)
+            remove(previous.getPeerID(), previous);
+
+        TransportPeer[] array = dense;
+        int position = size;
+
+        if (position == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+            dense = array;
+        }
+
+        array[position] = peer;
+        positions[index] = position;
+        slots.set(index, peer);
+
+        size = position + 1;
+    }
+
+    /**
+     * Remove the peer if it is in this table.
+     *
+     * @return {@code true} if the peer was removed {@code false} otherwise.
+     */
+    boolean remove(int peerID, TransportPeer peer) {
+        int index = PeerIdAllocator.indexOf(peerID);
+        if (index >= slots.length() || !slots.compareAndSet(index, peer, null))
+            return false;
+
+        TransportPeer[] array = dense;
+        int position = positions[index];
+        int last = size - 1;
+
+        if (position != last) {
+            TransportPeer lastPeer = array[last];
+            array[position] = lastPeer;
+            positions[PeerIdAllocator.indexOf(lastPeer.getPeerID())] = position;
+        }
+
+        array[last] = null;
+        size = last;
+
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the peer at the position of the dense array, or {@code null} if it was removed concurrently.
+     */
+    TransportPeer peerAt(int position) {
+        TransportPeer[] array = dense;
+        return position < array.length ? array[position] : null;
+    }
+}
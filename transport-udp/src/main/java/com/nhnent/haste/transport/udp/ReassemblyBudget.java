@@ -0,0 +1,57 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bytes of fragmented payloads which are being received by all peers of a transport,
+ * so that many peers can not exhaust the heap with incomplete payloads together. It can be used in any thread.
+ */
+final class ReassemblyBudget {
+    static final ReassemblyBudget UNLIMITED = new ReassemblyBudget(Long.MAX_VALUE);
+
+    private final long capacity;
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    ReassemblyBudget(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return {@code false} if the bytes exceed the capacity {@code true} otherwise.
+     */
+    boolean tryReserve(int bytes) {
+        for (; ; ) {
+            long reserved = reservedBytes.get();
+            if (reserved + bytes > capacity)
+                return false;
+
+            if (reservedBytes.compareAndSet(reserved, reserved + bytes))
+                return true;
+        }
+    }
+
+    void release(long bytes) {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    long getReservedBytes() {
+        return reservedBytes.get();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import java.util.Arrays;
+
+/**
+ * Sent reliable commands of a channel in a binary min-heap ordered by retransmission timeouts,
+ * so that only commands whose timeouts were passed are touched when resending.
+ * Every command knows its index in the heap, so that an acknowledged command is removed in O(log n).
+ * A command must not be added again until it is removed, and its timeout must not be changed while it is added.
+ */
+final class RetransmissionQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private OutgoingCommand[] heap = new OutgoingCommand[INITIAL_CAPACITY];
+    private int size;
+
+    void add(OutgoingCommand command) {
+        assert command.retransmissionIndex < 0;
+
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size << 1);
+        }
+
+        heap[size] = command;
+        command.retransmissionIndex = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Return the command whose retransmission timeout is the earliest, or {@code null} if it is empty.
+     */
+    OutgoingCommand peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    OutgoingCommand poll() {
+        if (size == 0)
+            return null;
+
+        OutgoingCommand command = heap[0];
+        removeAt(0);
+        return command;
+    }
+
+    /**
+     * @return {@code true} if the command was in this queue.
+     */
+    boolean remove(OutgoingCommand command) {
+        int index = command.retransmissionIndex;
+
+        if (index < 0 || index >= size || heap[index] != command)
+            return false;
+
+        removeAt(index);
+        return true;
+    }
+
+    boolean contains(OutgoingCommand command) {
+        int index = command.retransmissionIndex;
+        return index >= 0 && index < size && heap[index] == command;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void removeAt(int index) {
+        OutgoingCommand removed = heap[index];
+        removed.retransmissionIndex = -1;
+
+        int last = --size;
+        if (index != last) {
+            OutgoingCommand moved = heap[last];
+            heap[index] = moved;
+            moved.retransmissionIndex = index;
+
+            siftDown(index);
+            if (heap[index] == moved) {
+                siftUp(index);
+            }
+        }
+        heap[last] = null;
+    }
+
+    private void siftUp(int index) {
+        OutgoingCommand command = heap[index];
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!earlier(command, heap[parent]))
+                break;
+
+            heap[index] = heap[parent];
+            heap[index].retransmissionIndex = index;
+            index = parent;
+        }
+
+        heap[index] = command;
+        command.retransmissionIndex = index;
+    }
+
+    private void siftDown(int index) {
+        OutgoingCommand command = heap[index];
+        int half = size >>> 1;
+
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+
+            if (right < size && earlier(heap[right], heap[child]))
+                child = right;
+
+            if (!earlier(heap[child], command))
+                break;
+
+            heap[index] = heap[child];
+            heap[index].retransmissionIndex = index;
+            index = child;
+        }
+
+        heap[index] = command;
+        command.retransmissionIndex = index;
+    }
+
+    private static boolean earlier(OutgoingCommand a, OutgoingCommand b) {
+        long ra = a.getRetransmissionTimeout();
+        long rb = b.getRetransmissionTimeout();
+        return ra < rb || (ra == rb && a.getReliableSeqNum() < b.getReliableSeqNum());
+    }
+}
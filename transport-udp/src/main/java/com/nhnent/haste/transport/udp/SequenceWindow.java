@@ -0,0 +1,177 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+/**
+ * Commands of a channel in a ring buffer indexed by {@code seq & mask}, which is a sliding window from a base sequence number.
+ * The base is owned by the caller, and every command in the window must not be lower than it,
+ * so that sequence numbers in the window never share a slot. The ring grows by a power of two
+ * as far as the maximum capacity, and a command beyond the window is rejected.
+ * Occupied slots are also kept in a bitmap, so that the lowest command is found by words of 64 slots.
+ */
+final class SequenceWindow<T> {
+    private final int maxCapacity;
+
+    private long[] seqs;
+    private Object[] items;
+    private long[] occupied;
+    private int mask;
+    private int size;
+
+    SequenceWindow(int initialCapacity, int maxCapacity) {
+        if (Integer.bitCount(initialCapacity) != 1 || Integer.bitCount(maxCapacity) != 1 || initialCapacity > maxCapacity)
+            throw new IllegalArgumentException("capacities must be powers of two, and initialCapacity <= maxCapacity");
+
+        this.maxCapacity = maxCapacity;
+        this.seqs = new long[initialCapacity];
+        this.items = new Object[initialCapacity];
+        this.occupied = new long[wordCount(initialCapacity)];
+        this.mask = initialCapacity - 1;
+    }
+
+    /**
+     * @param base The lowest sequence number which can be in the window.
+     * @return {@code false} if the sequence number is out of the window or it is already in it {@code true} otherwise.
+     */
+    boolean put(long base, long seq, T item) {
+        long distance = seq - base;
+        if (distance < 0 || distance >= maxCapacity)
+            return false;
+
+        if (distance > mask)
+            grow((int) distance);
+
+        int index = (int) seq & mask;
+        if (items[index] != null)
+            return false;
+
+        seqs[index] = seq;
+        items[index] = item;
+        occupied[index >>> 6] |= 1L << index;
+        size++;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(long seq) {
+        int index = (int) seq & mask;
+        return items[index] != null && seqs[index] == seq ? (T) items[index] : null;
+    }
+
+    boolean contains(long seq) {
+        int index = (int) seq & mask;
+        return items[index] != null && seqs[index] == seq;
+    }
+
+    /**
+     * @return The removed item, or {@code null} if it was not found.
+     */
+    @SuppressWarnings("unchecked")
+    T remove(long seq) {
+        int index = (int) seq & mask;
+        if (items[index] == null || seqs[index] != seq)
+            return null;
+
+        T item = (T) items[index];
+        items[index] = null;
+        occupied[index >>> 6] &= ~(1L << index);
+        size--;
+        return item;
+    }
+
+    /**
+     * Return the lowest sequence number in the window from the given one.
+     *
+     * @param base The lowest sequence number which can be in the window, or a higher one below which nothing is left.
+     * @return The lowest sequence number, or {@code -1} if the window is empty.
+     */
+    long first(long base) {
+        if (size == 0)
+            return -1;
+
+        int start = (int) base & mask;
+
+        // Sequence numbers in the window are lower than base + capacity, so the ring is searched once from the slot of base.
+        int index = nextOccupied(start, mask + 1);
+        if (index < 0)
+            index = nextOccupied(0, start);
+
+        return seqs[index];
+    }
+
+    /**
+     * @return The lowest occupied slot from {@code fromIndex} to {@code toIndex} exclusive, or {@code -1} if there is none.
+     */
+    private int nextOccupied(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex)
+            return -1;
+
+        int word = fromIndex >>> 6;
+        long bits = occupied[word] & (-1L << fromIndex);
+
+        while (bits == 0) {
+            word++;
+            if (word << 6 >= toIndex)
+                return -1;
+            bits = occupied[word];
+        }
+
+        int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return index < toIndex ? index : -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    private void grow(int distance) {
+        int capacity = mask + 1;
+        while (capacity <= distance) {
+            capacity <<= 1;
+        }
+
+        long[] oldSeqs = seqs;
+        Object[] oldItems = items;
+
+        seqs = new long[capacity];
+        items = new Object[capacity];
+        occupied = new long[wordCount(capacity)];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldItems.length; i++) {
+            if (oldItems[i] != null) {
+                int index = (int) oldSeqs[i] & mask;
+                seqs[index] = oldSeqs[i];
+                items[index] = oldItems[i];
+                occupied[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    private static int wordCount(int capacity) {
+        return (capacity + Long.SIZE - 1) / Long.SIZE;
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.nhnent.haste.transport.udp;
 
+import com.nhnent.haste.transport.EventExecutor;
+import com.nhnent.haste.transport.Timeout;
 import com.nhnent.haste.transport.state.ConnectionState;
 
 import java.net.SocketAddress;
@@ -41,10 +43,47 @@ interface TransportPeer {
      */
     void addDisposeEvent(Disposable disposeEvent);
 
+    /**
+     * Called in the event loop thread when this peer was registered in {@link ChildrenUDPTransportProxy}.
+     *
+     * @param sendTimeout The timeout which calls {@link #send(DatagramChannel, ByteBuffer, long)} when it is expired.
+     * @param currentTime Current time.
+     */
+    void register(Timeout sendTimeout, long currentTime);
+
+    /**
+     * Schedule to send a data at the next send interval. It must be called in the event loop thread.
+     */
+    void scheduleSend(long currentTime);
+
+    /**
+     * Return the time when {@link #send(DatagramChannel, ByteBuffer, long)} has to be called at the latest.
+     * For instance, the earliest retransmission timeout or the disconnect timeout.
+     */
+    long nextSendTime();
+
+    /**
+     * Move this peer to the event loop of another proxy. It must be called in the event loop thread which owns this peer,
+     * and it is registered in the new proxy by {@link #register(Timeout, long)} afterward.
+     * The client is told the new port, and the notification is sent through the current channel at once.
+     *
+     * @param channel         The channel of the current proxy.
+     * @param writeByteBuffer The direct buffer of the current event loop.
+     * @param executor        The event loop of the new proxy.
+     * @param port            The port of the new proxy.
+     * @param currentTime     Current time.
+     * @return {@code true} if this peer was detached from the current event loop {@code false} otherwise.
+     */
+    boolean migrate(DatagramChannel channel, ByteBuffer writeByteBuffer, EventExecutor executor, int port, long currentTime);
+
     /**
      * Send a data through {@link DatagramChannel}.
+     *
+     * @param channel         The channel of the owner proxy.
+     * @param writeByteBuffer The direct buffer of the event loop, which datagrams are serialized into.
+     * @param currentTime     Current time.
      */
-    void send(DatagramChannel channel, long currentTime);
+    void send(DatagramChannel channel, ByteBuffer writeByteBuffer, long currentTime);
 
     /**
      * The callback which was received data from socket.
@@ -16,9 +16,6 @@
 
 package com.nhnent.haste.transport.udp;
 
-import java.util.List;
-import java.util.Vector;
-
 public abstract class UDPCommand<T extends UDPCommand> implements Comparable<T> {
     protected CommandType commandType;
 
@@ -40,7 +37,6 @@ public abstract class UDPCommand<T extends UDPCommand> implements Comparable<T>
 
     protected int fragmentOffset;
 
-    protected List<Boolean> fragmentList = new Vector<>();
 
     protected boolean valid = true;
 
@@ -59,7 +55,8 @@ public abstract class UDPCommand<T extends UDPCommand> implements Comparable<T>
         byte flag = (commandType == CommandType.RELIABLE) ? CommandFlags.CF_RELIABLE :
                 (commandType == CommandType.FRAGMENT) ? CommandFlags.CF_RELIABLE :
                         (commandType == CommandType.EG_SERVER_TIME) ? CommandFlags.CF_RELIABLE :
-                                (commandType == CommandType.PING) ? CommandFlags.CF_RELIABLE : CommandFlags.CF_UNRELIABLE;
+                                (commandType == CommandType.PING) ? CommandFlags.CF_RELIABLE :
+                                        (commandType == CommandType.MIGRATE) ? CommandFlags.CF_RELIABLE : CommandFlags.CF_UNRELIABLE;
 
         if (encrypt) {
             flag |= CommandFlags.CF_ENCRYPT;
@@ -20,7 +20,10 @@ import com.nhnent.haste.common.*;
 import com.nhnent.haste.security.BigInteger;
 import com.nhnent.haste.transport.AbstractNetworkPeer;
 import com.nhnent.haste.transport.DisconnectReason;
+import com.nhnent.haste.transport.EventExecutor;
 import com.nhnent.haste.transport.QoS;
+import com.nhnent.haste.transport.SendResult;
+import com.nhnent.haste.transport.Timeout;
 import com.nhnent.haste.transport.state.ConnectionState;
 import com.nhnent.haste.transport.state.Disconnected;
 import org.slf4j.Logger;
@@ -32,15 +35,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.CRC32;
 
 public final class UDPNetworkPeer extends AbstractNetworkPeer implements TransportPeer {
     private static final Logger logger = LoggerFactory.getLogger(UDPNetworkPeer.class);
 
-    private final byte[] writeBuf = new byte[2048];
-    private final ByteBuffer writeByteBuffer = ByteBuffer.wrap(writeBuf);
-
-    private int udpBufferIndex = 0;
     private short udpCommandCount = 0;
 
     private static final int MAX_COMMANDS_ON_MTU = 100;
@@ -61,25 +61,123 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
 
     private long lastSentData = 0;
 
-    private long SEND_INTERVAL_MILLISECOUNDS = 20;
+    private final int SEND_INTERVAL_MILLISECOUNDS;
+
+    /**
+     * How long a flush waits for following commands, so that a burst of them is sent together.
+     */
+    private final int FLUSH_DELAY_MILLISECONDS;
+
+    /**
+     * The event loop which owns this peer. All states of this peer are changed only in its thread.
+     * It is changed only by the owner when this peer is migrated to another event loop.
+     */
+    private volatile EventExecutor executor;
+
+    private Timeout sendTimeout;
+
+    private boolean sendRequested = false;
+
+    private long flushTime = Long.MAX_VALUE;
+
+    /**
+     * The number of datagrams which can be sent at once without pacing.
+     */
+    private static final int PACING_BURST_SEGMENTS = 4;
+
+    private final CongestionController congestionController;
+
+    /**
+     * Bounds of retransmission timeouts, and the count of acknowledgements of later commands
+     * by which an unacknowledged command is retransmitted before its timeout, where zero disables it.
+     */
+    private final int minimumRetransmissionTimeout;
+    private final int maximumRetransmissionTimeout;
+    private final int fastRetransmitThreshold;
+
+    /**
+     * Bytes of fragmented payloads which are being received by this peer, and the bound of them for this peer.
+     * They are reserved also from the budget of all peers of the transport, and they are released when the payload
+     * is delivered, or this peer is cleaned up.
+     */
+    private final int maximumReassemblyBytes;
+    private final ReassemblyBudget reassemblyBudget;
+    private long reassemblyBytes = 0;
+
+    /**
+     * Serialized bytes of reliable commands which were sent, but are not acknowledged yet.
+     */
+    private int bytesInFlight = 0;
+
+    /**
+     * Whether a reliable command is waiting for the congestion window to be opened by acknowledgements.
+     */
+    private boolean windowBlocked = false;
+
+    /**
+     * Bytes which can be sent without pacing, and the time when paced datagrams are sent next.
+     */
+    private double pacingTokens;
+    private long lastPacingTime;
+    private long pacingTime = Long.MAX_VALUE;
 
     private List<Disposable> cleanUpEvents = Collections.synchronizedList(new ArrayList<Disposable>());
 
     private final List<IncomingCommand> receivedCommands = new Vector<>(MAX_COMMANDS_ON_MTU);
 
-    private final List<OutgoingCommand> outgoingAckList = new Vector<>(MAX_COMMANDS_ON_MTU);
+    private final AckQueue outgoingAcks;
+
+    /**
+     * Whether the client acknowledges reliable commands with {@link CommandType#SACK}, which is negotiated by the protocol version.
+     */
+    private final boolean selectiveAck;
+
+    /**
+     * How long pending acknowledgements may wait for outgoing data, and the time until which they wait.
+     */
+    private final int ackDelay;
+    private long ackDeadline = Long.MAX_VALUE;
 
     private final Map<Byte, Channel> channels;
 
+    /**
+     * Whether the task which queues pending commands of channels was submitted, so that it is submitted once for many payloads.
+     */
+    private final AtomicBoolean pendingCommandsTaskSubmitted = new AtomicBoolean(false);
+
+    private final PeerTask pendingCommandsTask = new PeerTask() {
+        @Override
+        void runInEventLoop() {
+            // It is cleared first, so that a payload which is offered while queueing submits the task again.
+            pendingCommandsTaskSubmitted.set(false);
+
+            if (queuePendingOutgoingCommands())
+                requestSend();
+        }
+    };
+
     private UDPNetworkPeer(Builder builder) {
         super(builder, EnvironmentTimer.currentTimeMillis());
 
         this.MTU = builder.Mtu;
         this.DISCONNECT_TIMEOUT = builder.disconnectionTimeout;
+        this.SEND_INTERVAL_MILLISECOUNDS = builder.sendInterval;
+        this.FLUSH_DELAY_MILLISECONDS = builder.flushDelay;
         this.CHANNEL_COUNT = builder.channelCount;
 
         this.isCRCEnabled = builder.enableCRC;
         this.socketAddress = builder.socketAddress;
+        this.executor = builder.executor;
+        this.selectiveAck = builder.selectiveAck;
+        this.ackDelay = builder.ackDelay;
+        this.outgoingAcks = new AckQueue(CHANNEL_COUNT);
+        this.congestionController = builder.congestionControl.newController(MTU);
+        this.minimumRetransmissionTimeout = builder.minimumRetransmissionTimeout;
+        this.maximumRetransmissionTimeout = builder.maximumRetransmissionTimeout;
+        this.fastRetransmitThreshold = builder.fastRetransmitThreshold;
+        this.maximumReassemblyBytes = builder.maximumReassemblyBytes;
+        this.reassemblyBudget = builder.reassemblyBudget;
+        this.pacingTokens = PACING_BURST_SEGMENTS * MTU;
 
         channels = new LinkedHashMap<>(CHANNEL_COUNT);
 
@@ -90,77 +188,197 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         LAST_CHANNEL = (byte) (CHANNEL_COUNT - 1);
     }
 
+    /**
+     * Enqueue a command of the payload. It can be called in any thread.
+     * The payload is copied in the calling thread, and it is offered to the pending queue of the channel without locks.
+     * Sequence numbers are assigned in the event loop thread of this peer when the command is queued from it.
+     */
     @Override
-    public boolean enqueueOutgoingCommand(byte[] payload, int payloadLength, byte channelIndex, boolean encrypt, QoS qos) {
+    public SendResult enqueueOutgoingCommand(byte[] payload, int payloadLength, byte channelIndex, boolean encrypt, QoS qos) {
         if (getConnectionState().isNotEqual(ConnectionState.CONNECTED)) {
             if (logger.isDebugEnabled())
                 logger.debug("PeerID[{}] is not connected [{}]", peerID, getConnectionState());
-            return false;
+            return SendResult.NOT_CONNECTED;
         }
 
-        CommandType commandType = (qos == QoS.RELIABLE_SEQUENCED) ? CommandType.RELIABLE : CommandType.UNRELIABLE;
-
-        return createAndEnqueueCommand(commandType, payload, payloadLength, channelIndex, encrypt);
-    }
-
-    private boolean createAndEnqueueCommand(CommandType commandType, byte[] payload, int payloadLength, byte channelIndex, boolean encrypt) {
         Channel channel = channels.get(channelIndex);
 
         if (channel == null) {
             if (logger.isDebugEnabled())
                 logger.debug("[{}] channel is not found", channelIndex);
-            return false;
+            return SendResult.INVALID_CHANNEL;
         }
 
-        int maximumPayloadSize = MTU - (CommandLength.UDP_MTU_HEADER_LENGTH.getLength() + CommandLength.FRAGMENTED_HEADER_SIZE.getLength());
+        CommandType commandType = (qos == QoS.RELIABLE_SEQUENCED) ? CommandType.RELIABLE : CommandType.UNRELIABLE;
 
-        if (payloadLength < maximumPayloadSize) {
-            OutgoingCommand command = OutgoingCommand.newOutgoingCommand(commandType, payload, payloadLength, encrypt, channelIndex);
-            return queueOutgoingCommand(channel, command);
-        } else { //FRAGMENT
-            short fragmentCount = (short) ((payloadLength + maximumPayloadSize - 1) / maximumPayloadSize);
-            long startSequenceNumber = channel.getOutgoingReliableSeqNum() + 1;
-
-            short fragmentSeq = 0;
-
-            for (int offset = 0; offset < payloadLength; offset += maximumPayloadSize) {
-                if (payloadLength - offset < maximumPayloadSize) {
-                    //Specify last fragment's payload
-                    maximumPayloadSize = payloadLength - offset;
+        OutgoingCommand[] commands = createCommands(commandType, payload, payloadLength, channelIndex, encrypt);
+
+        // Rejected commands are released by the channel.
+        if (!channel.offerPendingOutgoingCommands(commands)) {
+            if (logger.isDebugEnabled())
+                logger.debug("PeerID[{}] ch[{}] outgoing queue is full", peerID, channelIndex);
+            return SendResult.QUEUE_FULL;
+        }
+
+        if (executor.inEventLoop()) {
+            if (queuePendingOutgoingCommands())
+                requestSend();
+        } else if (pendingCommandsTaskSubmitted.compareAndSet(false, true)) {
+            executor.execute(pendingCommandsTask);
+        }
+
+        return SendResult.QUEUED;
+    }
+
+    /**
+     * The task which is run in the event loop thread which owns this peer.
+     * If this peer was migrated to another event loop before the task is run, it is passed to the new owner.
+     */
+    private abstract class PeerTask implements Runnable {
+        @Override
+        public final void run() {
+            EventExecutor owner = executor;
+
+            if (owner.inEventLoop()) {
+                runInEventLoop();
+            } else {
+                owner.execute(this);
+            }
+        }
+
+        abstract void runInEventLoop();
+    }
+
+    /**
+     * Send enqueued commands after the flush delay instead of the next send interval.
+     * It is run in the event loop thread after commands which were enqueued before it in the same thread.
+     */
+    @Override
+    public void flush() {
+        if (getConnectionState().isNotEqual(ConnectionState.CONNECTED))
+            return;
+
+        if (executor.inEventLoop()) {
+            scheduleFlush(EnvironmentTimer.currentTimeMillis());
+        } else {
+            executor.execute(new PeerTask() {
+                @Override
+                void runInEventLoop() {
+                    scheduleFlush(EnvironmentTimer.currentTimeMillis());
                 }
+            });
+        }
+    }
 
-                byte[] fragment = new byte[maximumPayloadSize];
-                System.arraycopy(payload, offset, fragment, 0, maximumPayloadSize);
+    private void scheduleFlush(long currentTime) {
+        Timeout timeout = this.sendTimeout;
 
-                OutgoingCommand command = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, fragment, fragment.length, encrypt, channelIndex);
+        if (timeout == null || flushTime != Long.MAX_VALUE)
+            return;
 
-                command.setFragmentNum(fragmentSeq++);
-                command.setStartSeqNum(startSequenceNumber);
-                command.setFragmentCount(fragmentCount);
-                command.setFragmentOffset(offset);
-                command.setFragmentPayloadTotalLength(payloadLength);
+        flushTime = currentTime + FLUSH_DELAY_MILLISECONDS;
 
-                boolean result = queueOutgoingCommand(channel, command);
+        if (!timeout.isScheduled() || flushTime < timeout.deadline()) {
+            timeout.schedule(flushTime);
+        }
+    }
+
+    /**
+     * Schedule sending of this peer at the next send interval. It must be called in the event loop thread.
+     */
+    private void requestSend() {
+        sendRequested = true;
+        scheduleSend(EnvironmentTimer.currentTimeMillis());
+    }
+
+    /**
+     * Create commands of the payload, and the payload which exceeds the MTU is split into fragments.
+     * The payload is copied once into a pooled buffer which fragments refer to, so that it can be called in any thread.
+     */
+    private OutgoingCommand[] createCommands(CommandType commandType, byte[] payload, int payloadLength, byte channelIndex, boolean encrypt) {
+        int maximumPayloadSize = MTU - (CommandLength.UDP_MTU_HEADER_LENGTH.getLength() + CommandLength.FRAGMENTED_HEADER_SIZE.getLength());
 
-                if (!result)
-                    return false;
+        if (payloadLength < maximumPayloadSize) {
+            return new OutgoingCommand[]{
+                    OutgoingCommand.newOutgoingCommand(commandType, payload, payloadLength, encrypt, channelIndex)
+            };
+        }
+
+        //FRAGMENT
+        short fragmentCount = (short) ((payloadLength + maximumPayloadSize - 1) / maximumPayloadSize);
+        OutgoingCommand[] commands = new OutgoingCommand[fragmentCount];
+
+        OutgoingPayload outgoingPayload = OutgoingPayload.copyOf(payload, payloadLength, fragmentCount);
+
+        short fragmentSeq = 0;
+
+        for (int offset = 0; offset < payloadLength; offset += maximumPayloadSize) {
+            if (payloadLength - offset < maximumPayloadSize) {
+                //Specify last fragment's payload
+                maximumPayloadSize = payloadLength - offset;
             }
 
-            return true;
+            OutgoingCommand command = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, outgoingPayload, offset, maximumPayloadSize,
+                    encrypt, channelIndex);
+
+            command.setFragmentNum(fragmentSeq);
+            command.setFragmentCount(fragmentCount);
+            command.setFragmentOffset(offset);
+            command.setFragmentPayloadTotalLength(payloadLength);
+
+            commands[fragmentSeq++] = command;
         }
+
+        return commands;
     }
 
-    private boolean queueOutgoingCommand(Channel channel, OutgoingCommand command) {
-        assert command.getSentCount() == 0;
+    /**
+     * Queue pending commands of every channel as far as the outgoing lists are not full. It must be called in the event loop thread.
+     * Pending commands of a disconnected peer are dropped.
+     *
+     * @return {@code true} if any command was queued {@code false} otherwise.
+     */
+    private boolean queuePendingOutgoingCommands() {
+        boolean disconnected = getConnectionState().isEqual(ConnectionState.DISCONNECTED);
+        boolean queued = false;
 
-        if (command.isReliable()) {
+        for (Channel channel : channels.values()) {
+            OutgoingCommand[] commands;
 
-            int queueSize = channel.outgoingReliableCommandCount();
+            while ((commands = channel.pollPendingOutgoingCommands()) != null) {
+                if (disconnected) {
+                    for (OutgoingCommand command : commands) {
+                        command.release();
+                    }
+                    continue;
+                }
 
-            if (queueSize > Channel.MAX_COMMAND_SIZE) {
-                return false;
+                queueOutgoingCommands(channel, commands);
+                queued = true;
             }
+        }
 
+        return queued;
+    }
+
+    /**
+     * Assign sequence numbers to the commands, and queue them. It must be called in the event loop thread.
+     */
+    private void queueOutgoingCommands(Channel channel, OutgoingCommand[] commands) {
+        long startSequenceNumber = channel.getOutgoingReliableSeqNum() + 1;
+
+        for (OutgoingCommand command : commands) {
+            if (command.getCommandType() == CommandType.FRAGMENT)
+                command.setStartSeqNum(startSequenceNumber);
+
+            queueOutgoingCommand(channel, command);
+        }
+    }
+
+    private void queueOutgoingCommand(Channel channel, OutgoingCommand command) {
+        assert command.getSentCount() == 0;
+
+        if (command.isReliable()) {
             command.setReliableSeqNum(channel.increaseOutgoingReliableSeqNum());
 
             channel.insertOutgoingReliableCommand(command);
@@ -172,8 +390,6 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
 
             channel.insertOutgoingUnreliableCommand(command);
         }
-
-        return true;
     }
 
     @Override
@@ -188,16 +404,92 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
     }
 
     @Override
-    public void send(DatagramChannel ch, long currentTime) {
-        if (getConnectionState().isEqual(ConnectionState.DISCONNECTED))
-            return;
+    public void register(Timeout sendTimeout, long currentTime) {
+        this.sendTimeout = sendTimeout;
+
+        sendTimeout.schedule(currentTime);
+    }
 
-        if (lastSentData + SEND_INTERVAL_MILLISECOUNDS > currentTime) {
+    @Override
+    public void scheduleSend(long currentTime) {
+        Timeout timeout = this.sendTimeout;
+
+        if (timeout == null || getConnectionState().isEqual(ConnectionState.DISCONNECTED))
             return;
-        } else {
-            lastSentData = currentTime;
+
+        long sendTime = Math.max(currentTime, lastSentData + SEND_INTERVAL_MILLISECOUNDS);
+
+        if (!timeout.isScheduled() || sendTime < timeout.deadline()) {
+            timeout.schedule(sendTime);
+        }
+    }
+
+    @Override
+    public boolean migrate(DatagramChannel ch, ByteBuffer writeByteBuffer, EventExecutor executor, int port, long currentTime) {
+        if (getConnectionState().isNotEqual(ConnectionState.CONNECTED))
+            return false;
+
+        Channel channel = channels.get(LAST_CHANNEL);
+
+        byte[] payload = new byte[4];
+        int length = ByteWrite.setInt(port, payload, 0);
+
+        queueOutgoingCommands(channel, createCommands(CommandType.MIGRATE, payload, length, LAST_CHANNEL, false));
+
+        // The client may not know the new port until the notification arrives, so it is sent through the current channel.
+        // Retransmissions and the following data are sent through the new one.
+        send(ch, writeByteBuffer, currentTime);
+
+        if (getConnectionState().isNotEqual(ConnectionState.CONNECTED))
+            return false;
+
+        if (sendTimeout != null) {
+            sendTimeout.cancel();
+            sendTimeout = null;
+        }
+
+        this.executor = executor;
+        return true;
+    }
+
+    @Override
+    public long nextSendTime() {
+        // The connection is checked after the disconnect timeout was passed.
+        long nextTime = timestampOfLastReceive + DISCONNECT_TIMEOUT + 1;
+
+        if (sendRequested) {
+            nextTime = Math.min(nextTime, lastSentData + SEND_INTERVAL_MILLISECOUNDS);
+        }
+
+        nextTime = Math.min(nextTime, flushTime);
+        nextTime = Math.min(nextTime, pacingTime);
+
+        if (!outgoingAcks.isEmpty()) {
+            nextTime = Math.min(nextTime, Math.max(ackDeadline, lastSentData + SEND_INTERVAL_MILLISECOUNDS));
         }
 
+        for (Channel channel : channels.values()) {
+            long rto = channel.getEarliestRetransmissionTimeout();
+
+            if (rto != Long.MAX_VALUE) {
+                nextTime = Math.min(nextTime, rto + 1);
+            }
+        }
+
+        return nextTime;
+    }
+
+    @Override
+    public void send(DatagramChannel ch, ByteBuffer writeByteBuffer, long currentTime) {
+        if (getConnectionState().isEqual(ConnectionState.DISCONNECTED))
+            return;
+
+        lastSentData = currentTime;
+
+        sendRequested = false;
+
+        flushTime = Long.MAX_VALUE;
+
         //Check valid connection state.
         if (currentTime > timestampOfLastReceive + DISCONNECT_TIMEOUT) {
             long interval = currentTime - timestampOfLastReceive;
@@ -210,6 +502,19 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         // then, a channel which contains a resend command is added in a channelQueueList.
         resendCommand(currentTime);
 
+        // Payloads which were left while the outgoing lists were full are queued before sending.
+        queuePendingOutgoingCommands();
+
+        // A disconnecting peer sends everything at once, because it is closed after this.
+        boolean congestionLimited = getConnectionState().isNotEqual(ConnectionState.DISCONNECTING);
+
+        double pacingRate = congestionLimited ? congestionController.pacingRate() : 0;
+        if (pacingRate > 0) {
+            pacingTokens = Math.min(PACING_BURST_SEGMENTS * MTU, pacingTokens + (currentTime - lastPacingTime) * pacingRate);
+        }
+        lastPacingTime = currentTime;
+        pacingTime = Long.MAX_VALUE;
+
         Queue<ChannelQueue> channelQueueList = new ArrayBlockingQueue<>(channels.size());
 
         for (Channel channel : channels.values()) {
@@ -223,26 +528,35 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
                 channelQueueList.add(queue);
         }
 
+        // Acknowledgements are piggybacked on data, and they are sent alone only when the delay is passed.
+        boolean flushAcks = !channelQueueList.isEmpty() || currentTime >= ackDeadline ||
+                getConnectionState().isEqual(ConnectionState.DISCONNECTING);
+
         int commandLeft;
 
         do {
             commandLeft = 0;
 
+            if (pacingRate > 0 && pacingTokens < 0) {
+                pacingTime = currentTime + Math.max(1, (long) Math.ceil(-pacingTokens / pacingRate));
+                break;
+            }
+
             writeByteBuffer.clear();
 
-            udpBufferIndex = 0;
             udpCommandCount = 0;
 
-            udpBufferIndex = CommandLength.UDP_MTU_HEADER_LENGTH.getLength();
+            writeByteBuffer.position(CommandLength.UDP_MTU_HEADER_LENGTH.getLength());
 
-            sendAck();
+            if (flushAcks)
+                sendAck(writeByteBuffer);
 
             while (!channelQueueList.isEmpty()) {
 
                 ChannelQueue channelQueue = channelQueueList.peek();
 
-                commandLeft = serializeToBuffer(currentTime, channelQueue.unreliableCommandQueue, channelQueue.channel);
-                commandLeft += serializeToBuffer(currentTime, channelQueue.reliableCommandQueue, channelQueue.channel);
+                commandLeft = serializeToBuffer(currentTime, writeByteBuffer, channelQueue.unreliableCommandQueue, channelQueue.channel, false);
+                commandLeft += serializeToBuffer(currentTime, writeByteBuffer, channelQueue.reliableCommandQueue, channelQueue.channel, congestionLimited);
 
                 if (commandLeft > 0) {
                     break;
@@ -252,10 +566,14 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             }
 
             if (udpCommandCount > 0) {
-                goOut(ch, currentTime);
+                pacingTokens -= writeByteBuffer.position();
+                goOut(ch, writeByteBuffer, currentTime);
             }
 
-        } while (commandLeft > 0);
+        } while (commandLeft > 0 || (flushAcks && !outgoingAcks.isEmpty()));
+
+        if (outgoingAcks.isEmpty())
+            ackDeadline = Long.MAX_VALUE;
 
 
         if (getConnectionState().isEqual(ConnectionState.DISCONNECTING)) {
@@ -264,30 +582,35 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         }
     }
 
-    private void goOut(DatagramChannel ch, long currentTime) {
+    private void goOut(DatagramChannel ch, ByteBuffer writeByteBuffer, long currentTime) {
+        int length = writeByteBuffer.position();
         int offset = 0;
 
-        offset = ByteWrite.setByte(CommandType.MESSAGES.getByte(), writeBuf, offset);
-        offset = ByteWrite.setInt(getPeerID(), writeBuf, offset);
-        offset = ByteWrite.setLong(currentTime, writeBuf, offset);
-        offset = ByteWrite.setShort(udpCommandCount, writeBuf, offset);
+        writeByteBuffer.put(offset, CommandType.MESSAGES.getByte());
+        offset += 1;
+        writeByteBuffer.putInt(offset, getPeerID());
+        offset += 4;
+        writeByteBuffer.putLong(offset, currentTime);
+        offset += 8;
+        writeByteBuffer.putShort(offset, udpCommandCount);
+        offset += 2;
 
         if (isCRCEnabled) {
-            CRC.Write(crc32, writeBuf, udpBufferIndex, offset);
+            CRC.Write(crc32, writeByteBuffer, length, offset);
+        } else {
+            writeByteBuffer.putLong(offset, 0);
         }
 
         offset += CRC.CRC_LENGTH;
 
         assert offset == CommandLength.UDP_MTU_HEADER_LENGTH.getLength();
 
-        writeByteBuffer.position(udpBufferIndex);
-
         try {
             writeByteBuffer.flip();
 
             int sentBytes = ch.send(writeByteBuffer, socketAddress);
 
-            if (udpBufferIndex != sentBytes) {
+            if (length != sentBytes) {
                 if (logger.isDebugEnabled())
                     logger.debug("sent bytes: {}", sentBytes);
             }
@@ -297,26 +620,47 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         }
     }
 
-    private int serializeToBuffer(long currentTime, Queue<OutgoingCommand> commandQueue, Channel channel) {
+    /**
+     * @param congestionLimited Whether new reliable commands are limited by the congestion window.
+     * @return The count of commands which are left, because they did not fit in the buffer.
+     * Commands which are left by the congestion window are not counted, because they can not be sent until acknowledgements.
+     */
+    private int serializeToBuffer(long currentTime, ByteBuffer writeByteBuffer, Queue<OutgoingCommand> commandQueue, Channel channel,
+                                  boolean congestionLimited) {
         while (commandQueue.size() > 0) {
 
             OutgoingCommand outgoingCommand = commandQueue.peek();
 
-            int length = outgoingCommand.getSerializedArrayLength();
+            // It was acknowledged while it was waiting for retransmission.
+            if (outgoingCommand.isAcknowledged()) {
+                commandQueue.poll();
+                outgoingCommand.release();
+                continue;
+            }
+
+            int length = outgoingCommand.getSerializedLength();
+
+            // At least one command is in flight, so that the window is opened by its acknowledgement.
+            if (congestionLimited && outgoingCommand.getSentCount() == 0 && bytesInFlight > 0 &&
+                    bytesInFlight + length > congestionController.congestionWindow()) {
+                windowBlocked = true;
+                return 0;
+            }
 
-            if ((udpBufferIndex + length) > MTU) {
+            if ((writeByteBuffer.position() + length) > MTU) {
                 break;
             } else {
                 commandQueue.poll();
+                outgoingCommand.setQueued(false);
             }
 
-            outgoingCommand.serialize();
-
-            udpBufferIndex = ByteWrite.set(outgoingCommand.serialize(), 0, length, writeBuf, udpBufferIndex);
+            outgoingCommand.serialize(writeByteBuffer);
             udpCommandCount++;
 
             if (outgoingCommand.isReliable()) {
                 queueSentReliableCommand(currentTime, channel, outgoingCommand);
+            } else {
+                outgoingCommand.release();
             }
         }
 
@@ -327,55 +671,74 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         outgoingCommand.setSentTime(currentTime);
         outgoingCommand.increaseSentCount();
 
-        outgoingCommand.setRetransmissionTimeout(currentTime, getMeanOfRoundTripTime(), getMeanOfRoundTripTimeDeviation());
+        outgoingCommand.setRetransmissionTimeout(currentTime, getMeanOfRoundTripTime(), getMeanOfRoundTripTimeDeviation(),
+                minimumRetransmissionTimeout, maximumRetransmissionTimeout);
 
         if (outgoingCommand.getSentCount() == 1) {
+            bytesInFlight += outgoingCommand.getSerializedLength();
             outgoingCommand.setTimeout(currentTime + DISCONNECT_TIMEOUT);
             channel.addSentReliableCommand(outgoingCommand);
         }
+
+        channel.scheduleRetransmission(outgoingCommand);
     }
 
     private void resendCommand(long currentTime) {
+        int resent = 0;
+
         for (Channel channel : channels.values()) {
-            if (!channel.resend(currentTime)) {
+            int count = channel.resend(currentTime);
+
+            if (count < 0) {
                 disconnect(DisconnectReason.TIMEOUT_DISCONNECT, "timeout");
+            } else {
+                resent += count;
             }
         }
+
+        if (resent > 0) {
+            congestionController.onLoss(currentTime);
+        }
     }
 
-    public void sendAck() {
-        if (0 == outgoingAckList.size())
+    /**
+     * Send commands which were queued again by acknowledgements of later commands without waiting for the send interval.
+     */
+    private void onFastRetransmit(int retransmitted, long currentTime) {
+        if (retransmitted == 0)
             return;
 
-        short ackCommandCount = 0;
+        if (logger.isTraceEnabled())
+            logger.trace("[{}] Fast retransmit count[{}]", peerID, retransmitted);
 
-        List<OutgoingCommand> removeList = new LinkedList<>();
-        for (OutgoingCommand command : outgoingAckList) {
-            byte[] array = command.serialize();
-            int length = command.getSerializedArrayLength();
+        congestionController.onLoss(currentTime);
+        scheduleFlush(currentTime);
+    }
 
-            if (udpBufferIndex + length >= MTU) {
-                break;
-            }
+    /**
+     * Update the congestion control by acknowledged commands, and send commands which were waiting for the window.
+     */
+    private void onAcked(int ackedBytes, long roundTripTime, long currentTime) {
+        bytesInFlight -= ackedBytes;
 
-            removeList.add(command);
-            ackCommandCount++;
+        congestionController.onAcked(ackedBytes, roundTripTime, currentTime);
 
-            System.arraycopy(array, 0, writeBuf, udpBufferIndex, length);
-            udpBufferIndex += length;
+        if (windowBlocked) {
+            windowBlocked = false;
+            scheduleFlush(currentTime);
         }
+    }
 
-        for (int i = 0; i < removeList.size(); i++) {
-            if (outgoingAckList.contains(removeList.get(i))) {
-                outgoingAckList.remove(removeList.get(i));
-            }
-        }
-        removeList.clear();
+    public void sendAck(ByteBuffer writeByteBuffer) {
+        if (outgoingAcks.isEmpty())
+            return;
+
+        int ackCommandCount = outgoingAcks.write(writeByteBuffer, MTU);
 
-        int queueSize = outgoingAckList.size();
+        int queueSize = outgoingAcks.size();
         if (queueSize > 0 && (queueSize % WARNING_SIZE) == 0) {
             if (logger.isDebugEnabled())
-                logger.debug("[{}] outgoingAckList Count [{}]", peerID, queueSize);
+                logger.debug("[{}] outgoingAcks Count [{}]", peerID, queueSize);
         }
 
         udpCommandCount += ackCommandCount;
@@ -385,11 +748,23 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         private final int CHANNEL_COUNT_MAX = 100;
         private final int CHANNEL_COUNT_MIN = 5;
         private final int MIN_MTU_SIZE = 400;
+        private static final int DEFAULT_SEND_INTERVAL = 20;
 
         private SocketAddress socketAddress = null;
+        private EventExecutor executor = null;
         private int Mtu = MIN_MTU_SIZE;
         private int disconnectionTimeout = -1;
         private boolean enableCRC = false;
+        private boolean selectiveAck = false;
+        private int ackDelay = 0;
+        private int sendInterval = DEFAULT_SEND_INTERVAL;
+        private int flushDelay = 0;
+        private CongestionController.Factory congestionControl = NoCongestionController.FACTORY;
+        private int minimumRetransmissionTimeout = 0;
+        private int maximumRetransmissionTimeout = Integer.MAX_VALUE;
+        private int fastRetransmitThreshold = 0;
+        private int maximumReassemblyBytes = Integer.MAX_VALUE;
+        private ReassemblyBudget reassemblyBudget = ReassemblyBudget.UNLIMITED;
         private int channelCount = CHANNEL_COUNT_MIN;
 
         public Builder() {
@@ -400,6 +775,11 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             return this;
         }
 
+        public Builder executor(EventExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         public Builder mtu(int Mtu) {
             this.Mtu = Mtu;
             return this;
@@ -415,6 +795,52 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             return this;
         }
 
+        public Builder selectiveAck(boolean selectiveAck) {
+            this.selectiveAck = selectiveAck;
+            return this;
+        }
+
+        public Builder ackDelay(int ackDelay) {
+            this.ackDelay = ackDelay;
+            return this;
+        }
+
+        public Builder sendInterval(int sendInterval) {
+            this.sendInterval = sendInterval;
+            return this;
+        }
+
+        public Builder flushDelay(int flushDelay) {
+            this.flushDelay = flushDelay;
+            return this;
+        }
+
+        public Builder congestionControl(CongestionController.Factory congestionControl) {
+            this.congestionControl = congestionControl;
+            return this;
+        }
+
+        public Builder retransmissionTimeout(int minimumRetransmissionTimeout, int maximumRetransmissionTimeout) {
+            this.minimumRetransmissionTimeout = minimumRetransmissionTimeout;
+            this.maximumRetransmissionTimeout = maximumRetransmissionTimeout;
+            return this;
+        }
+
+        public Builder fastRetransmitThreshold(int fastRetransmitThreshold) {
+            this.fastRetransmitThreshold = fastRetransmitThreshold;
+            return this;
+        }
+
+        public Builder maximumReassemblyBytes(int maximumReassemblyBytes) {
+            this.maximumReassemblyBytes = maximumReassemblyBytes;
+            return this;
+        }
+
+        Builder reassemblyBudget(ReassemblyBudget reassemblyBudget) {
+            this.reassemblyBudget = reassemblyBudget;
+            return this;
+        }
+
         public Builder channelCount(int channelCount) {
             this.channelCount = channelCount < CHANNEL_COUNT_MIN ? CHANNEL_COUNT_MIN :
                     channelCount > CHANNEL_COUNT_MAX ? CHANNEL_COUNT_MAX : channelCount;
@@ -422,6 +848,7 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         }
 
         public UDPNetworkPeer build() {
+            Check.NotNull(executor, "executor");
             return new UDPNetworkPeer(this);
         }
     }
@@ -451,7 +878,7 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         long commandCount = byteBuffer.getShort();      //2
 
         if (isCRCEnabled) {
-            if (!CRC.Check(crc32, byteBuffer.array(), transferredBytes, byteBuffer.position())) {
+            if (!CRC.Check(crc32, byteBuffer, transferredBytes, byteBuffer.position())) {
                 logger.debug("Invalid CRC value");
                 packetLossByCRC++;
 
@@ -472,18 +899,42 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
 
         timestampOfLastReceive = currentTime;
 
+        int handedOffCommands = 0;
+
         try {
             for (int i = 0; i < commandCount; i++) {
                 IncomingCommand command = IncomingCommand.newIncomingCommand(timestampOfLastReceive, byteBuffer);
 
                 if (!command.valid()) {
+                    command.release();
                     disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Invalid commandType");
                     return;
                 }
 
                 if (command.isReliable()) {
-                    OutgoingCommand ack = command.createAck(serverSentTime);
-                    outgoingAckList.add(ack);
+                    Channel channel = channels.get(command.getChannelIndex());
+
+                    // A command beyond the incoming window is dropped, so it must be resent.
+                    if (channel != null && !channel.isInIncomingReliableWindow(command.getReliableSeqNum())) {
+                        receivedCommands.add(command);
+                        continue;
+                    }
+
+                    // A fragment which can not be reassembled now is not acknowledged, so it is resent later.
+                    if (channel != null && command.getCommandType() == CommandType.FRAGMENT && !reserveFragmentReassembly(channel, command)) {
+                        command.release();
+
+                        if (getConnectionState().isEqual(ConnectionState.DISCONNECTING))
+                            return;
+                        continue;
+                    }
+
+                    // DISCONNECT is acknowledged by ACK always, because its SACK can not be sent after disconnection.
+                    if (selectiveAck && channel != null && command.getCommandType() != CommandType.DISCONNECT) {
+                        outgoingAcks.addSelective(channel, serverSentTime);
+                    } else {
+                        outgoingAcks.add(command.getChannelIndex(), command.getReliableSeqNum(), serverSentTime);
+                    }
                 }
 
                 receivedCommands.add(command);
@@ -491,6 +942,7 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
 
             for (IncomingCommand command : receivedCommands) {
                 Channel channel = chooseChannelToProcess(command);
+                handedOffCommands++;
 
                 if (channel != null)
                     temporalChannelList.put(channel.getChannelNumber(), channel);
@@ -501,9 +953,20 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             }
 
         } finally {
+            // Commands which were not handed off by an early exit are released here.
+            for (int i = handedOffCommands; i < receivedCommands.size(); i++) {
+                receivedCommands.get(i).release();
+            }
             receivedCommands.clear();
             temporalChannelList.clear();
         }
+
+        if (!outgoingAcks.isEmpty()) {
+            if (ackDeadline == Long.MAX_VALUE)
+                ackDeadline = currentTime + ackDelay;
+
+            scheduleSend(ackDeadline);
+        }
     }
 
     private void processChannel(Channel channel) {
@@ -513,32 +976,7 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             targetCommand = null;
 
             if (channel.incomingUnreliableCommandCount() > 0) {
-                long minimumUnreliableSeq = Long.MAX_VALUE;
-
-                Set<Long> seqs = channel.getIncomingUnreliableCommandSeqs();
-
-                for (Long seq : seqs) {
-                    IncomingCommand command = channel.getIncomingUnreliableCommand(seq);
-
-                    if (command == null)
-                        continue;
-
-                    long reliableSeq = command.getReliableSeqNum();
-                    long unreliableSeq = command.getUnreliableSeqNum();
-
-                    if (unreliableSeq < minimumUnreliableSeq && reliableSeq == channel.getIncomingReliableSeqNum()) {
-                        minimumUnreliableSeq = unreliableSeq;
-                    }
-                }
-
-                if (minimumUnreliableSeq < Long.MAX_VALUE) {
-                    targetCommand = channel.getIncomingUnreliableCommand(minimumUnreliableSeq);
-
-                    if (targetCommand != null) {
-                        channel.removeIncomingUnreliableCommand(targetCommand.getUnreliableSeqNum());
-                        channel.setIncomingUnreliableSeqNum(targetCommand.getUnreliableSeqNum());
-                    }
-                }
+                targetCommand = channel.pollIncomingUnreliableCommand();
             }
 
             if (targetCommand == null && channel.incomingReliableCommandCount() > 0) {
@@ -568,31 +1006,28 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
                     case FRAGMENT: {
 
                         long startSeq = targetCommand.getFragmentStartSeqNum();
-                        long endSeq = targetCommand.getFragmentStartSeqNum() + targetCommand.getFragmentCount();
-
-                        for (long seq = startSeq; seq < endSeq; seq++) {
-                            if (!channel.containIncomingReliableSeqNum(seq)) {
-                                targetCommand = null;
-                                break;
-                            }
-                        }
+                        FragmentReassembly reassembly = channel.getFragmentReassembly(startSeq);
 
-                        if (targetCommand == null)
+                        if (startSeq != expectedReliableSeq || reassembly == null || !reassembly.isComplete()) {
+                            targetCommand = null;
                             break;
+                        }
 
-                        byte[] payload = new byte[targetCommand.getFragmentPayloadTotalLength()];
+                        long endSeq = startSeq + reassembly.getFragmentCount();
 
-                        for (long seq = startSeq; seq < endSeq; seq++) {
+                        // Payloads of fragments were copied into the reassembly buffer on arrival.
+                        channel.removeIncomingReliableCommand(startSeq);
+                        for (long seq = startSeq + 1; seq < endSeq; seq++) {
                             IncomingCommand command = channel.getIncomingReliableCommand(seq);
-                            if (command == null)
-                                continue;
-                            if (command.getPayload() != null)
-                                command.getPayload().copyBytes(payload, command.getFragmentOffset(), command.getPayload().getLength());
                             channel.removeIncomingReliableCommand(seq);
+                            command.release();
                         }
 
-                        targetCommand.setPayloadBuf(payload, targetCommand.getFragmentPayloadTotalLength());
-                        channel.setIncomingReliableSeqNum(channel.getIncomingReliableSeqNum() + targetCommand.getFragmentCount());
+                        channel.removeFragmentReassembly(startSeq);
+                        releaseReassemblyBytes(reassembly.getTotalLength());
+
+                        targetCommand.setPayloadBuf(reassembly.getBuffer(), reassembly.getTotalLength());
+                        channel.setIncomingReliableSeqNum(endSeq - 1);
                         break;
                     }
                 }
@@ -635,8 +1070,10 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
 
         Channel channel = null;
 
-        if (getConnectionState().isEqual(ConnectionState.DISCONNECTED))
+        if (getConnectionState().isEqual(ConnectionState.DISCONNECTED)) {
+            command.release();
             return null;
+        }
 
         switch (command.getCommandType()) {
             case ACK: {
@@ -644,6 +1081,11 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
                 command.release();
                 break;
             }
+            case SACK: {
+                handleReceivedSelectiveAck(command);
+                command.release();
+                break;
+            }
             case PING: {
                 channel = queueIncomingCommand(command);
                 break;
@@ -664,8 +1106,10 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             case UNRELIABLE:
             case RELIABLE: {
                 if (getConnectionState().isEqual(ConnectionState.DISCONNECTED) ||
-                        getConnectionState().isEqual(ConnectionState.DISCONNECTING))
+                        getConnectionState().isEqual(ConnectionState.DISCONNECTING)) {
+                    command.release();
                     return null;
+                }
 
                 channel = queueIncomingCommand(command);
 
@@ -676,6 +1120,7 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
                 break;
             }
             default: {
+                command.release();
                 disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Invalid Command Type");
                 break;
             }
@@ -690,19 +1135,72 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         if (channel == null)
             return null;
 
-        int totalCommands = command.getFragmentCount();
+        FragmentReassembly reassembly = channel.getFragmentReassembly(command.getFragmentStartSeqNum());
+
+        if (reassembly == null) {
+            disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Unexpected fragment");
+            return null;
+        }
+
+        reassembly.add(command.getFragmentNum(), command.getFragmentOffset(), command.getPayload());
+        command.releasePayload();
+
+        return reassembly.isComplete() ? channel : null;
+    }
 
+    /**
+     * Prepare the reassembly of the payload of the fragment, when its first fragment is received.
+     *
+     * @return {@code false} if the fragment must not be acknowledged, because the payload exceeds the reassembly budget,
+     * or this peer is being disconnected by an invalid fragment {@code true} otherwise.
+     */
+    private boolean reserveFragmentReassembly(Channel channel, IncomingCommand command) {
         long startSeq = command.getFragmentStartSeqNum();
-        long endSeq = startSeq + totalCommands;
 
+        // A fragment of a delivered payload is dropped as a duplicate.
+        if (startSeq <= channel.getIncomingReliableSeqNum())
+            return true;
 
-        for (long seq = startSeq; seq < endSeq; seq++) {
-            if (!channel.containIncomingReliableSeqNum(seq)) {
-                return null;
-            }
+        if (getConnectionState().isEqual(ConnectionState.DISCONNECTED) ||
+                getConnectionState().isEqual(ConnectionState.DISCONNECTING))
+            return true;
+
+        FragmentReassembly reassembly = channel.getFragmentReassembly(startSeq);
+
+        if (reassembly != null) {
+            if (reassembly.matches(command))
+                return true;
+
+            disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Inconsistent fragment");
+            return false;
         }
 
-        return channel;
+        if (command.getFragmentCount() > Channel.MAX_INCOMING_RELIABLE_WINDOW) {
+            disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Too many fragments : " + command.getFragmentCount());
+            return false;
+        }
+
+        int totalLength = command.getFragmentPayloadTotalLength();
+
+        if (totalLength > maximumReassemblyBytes) {
+            disconnect(DisconnectReason.INVALID_DATA_FORMAT, "Too large fragmented payload : " + totalLength);
+            return false;
+        }
+
+        if (reassemblyBytes + totalLength > maximumReassemblyBytes || !reassemblyBudget.tryReserve(totalLength)) {
+            if (logger.isDebugEnabled())
+                logger.debug("[{}] Reassembly budget is exhausted, {} bytes are being received", peerID, reassemblyBytes);
+            return false;
+        }
+
+        reassemblyBytes += totalLength;
+        channel.addFragmentReassembly(new FragmentReassembly(startSeq, command.getFragmentCount(), totalLength));
+        return true;
+    }
+
+    private void releaseReassemblyBytes(long bytes) {
+        reassemblyBytes -= bytes;
+        reassemblyBudget.release(bytes);
     }
 
     private Channel queueIncomingCommand(final IncomingCommand command) {
@@ -715,14 +1213,11 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         long reliableSeq = command.getReliableSeqNum();
 
         if (command.isReliable()) {
-            if (reliableSeq <= channel.getIncomingReliableSeqNum() ||
-                    channel.containIncomingReliableSeqNum(reliableSeq)) {
+            if (reliableSeq <= channel.getIncomingReliableSeqNum() || !channel.insertIncomingReliableCommand(command)) {
                 command.release();
                 return null;
             }
 
-            channel.insertIncomingReliableCommand(command);
-
             int queueSize = channel.incomingReliableCommandCount();
 
             if (queueSize > 0 && (queueSize % WARNING_SIZE) == 0) {
@@ -732,13 +1227,12 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             }
         } else { //CF_UNRELIABLE
             if (command.getReliableSeqNum() < channel.getIncomingReliableSeqNum() ||
-                    command.getUnreliableSeqNum() <= channel.getIncomingUnreliableSeqNum()) {
+                    command.getUnreliableSeqNum() <= channel.getIncomingUnreliableSeqNum() ||
+                    !channel.insertIncomingUnreliableCommand(command)) {
                 command.release();
                 return null;
             }
 
-            channel.insertIncomingUnreliableCommand(command);
-
             int queueSize = channel.incomingUnreliableCommandCount();
 
             if (queueSize > 0 && (queueSize % WARNING_SIZE) == 0) {
@@ -758,7 +1252,9 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         if (channel == null)
             return;
 
-        if (channel.removeSentReliableCommand(command.getAckReceivedReliableSeq())) {
+        OutgoingCommand acked = channel.removeSentReliableCommand(command.getAckReceivedReliableSeq());
+
+        if (acked != null) {
             long rtt = command.getRoundTripTime();
 
             if (logger.isTraceEnabled()) {
@@ -772,7 +1268,39 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
             }
 
             UpdateRoundTripTimeAndVariance(rtt);
+
+            onAcked(acked.getSerializedLength(), rtt, command.getReceiveTime());
+            channel.releaseAcknowledgedCommand(acked);
+
+            onFastRetransmit(channel.fastRetransmit(command.getAckReceivedReliableSeq(), fastRetransmitThreshold),
+                    command.getReceiveTime());
+        }
+    }
+
+    private void handleReceivedSelectiveAck(IncomingCommand command) {
+        Channel channel = channels.get(command.getChannelIndex());
+        if (channel == null)
+            return;
+
+        int removedBytes = channel.removeSentReliableCommands(command.getAckReceivedReliableSeq(), command.getAckReceivedBits());
+        if (removedBytes > 0) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("[{}] Received SAck ch[{}] seq[{}] bits[{}] removedBytes[{}] rtt[{}]",
+                        peerID,
+                        command.getChannelIndex(),
+                        command.getAckReceivedReliableSeq(),
+                        Long.toBinaryString(command.getAckReceivedBits()),
+                        removedBytes,
+                        command.getRoundTripTime());
+            }
+
+            UpdateRoundTripTimeAndVariance(command.getRoundTripTime());
+
+            onAcked(removedBytes, command.getRoundTripTime(), command.getReceiveTime());
         }
+
+        onFastRetransmit(channel.fastRetransmit(command.getAckReceivedReliableSeq(), command.getAckReceivedBits(), fastRetransmitThreshold),
+                command.getReceiveTime());
     }
 
     public void processDisconnectCommand(IncomingCommand command) {
@@ -789,8 +1317,23 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         doCleanUp();
     }
 
+    /**
+     * Disconnect this peer in the event loop thread. It can be called in any thread.
+     */
     @Override
-    public void disconnect(DisconnectReason disconnectReason, String detail) {
+    public void disconnect(final DisconnectReason disconnectReason, String detail) {
+        if (!executor.inEventLoop()) {
+            final String disconnectDetail = detail;
+
+            executor.execute(new PeerTask() {
+                @Override
+                void runInEventLoop() {
+                    disconnect(disconnectReason, disconnectDetail);
+                }
+            });
+            return;
+        }
+
         if (getConnectionState().isEqual(ConnectionState.DISCONNECTED) ||
                 getConnectionState().isEqual(ConnectionState.DISCONNECTING)) {
             return;
@@ -812,14 +1355,20 @@ public final class UDPNetworkPeer extends AbstractNetworkPeer implements Transpo
         offset = ByteWrite.setBytes(message, 0, length, payload, offset);
 
         // TODO Must call onDisconnect when disconnecting by timeout.
-        createAndEnqueueCommand(CommandType.DISCONNECT, payload, offset, LAST_CHANNEL, false);
+        queueOutgoingCommands(channels.get(LAST_CHANNEL),
+                createCommands(CommandType.DISCONNECT, payload, offset, LAST_CHANNEL, false));
 
         this.disconnectReason = disconnectReason;
         this.disconnectDetail = detail;
         getConnectionState().transitDisconnecting(this);
+
+        requestSend();
     }
 
     private void doCleanUp() {
+        // Incomplete fragmented payloads are never delivered after cleaning up.
+        releaseReassemblyBytes(reassemblyBytes);
+
         synchronized (cleanUpEvents) {
             for (Disposable disposable : cleanUpEvents) {
                 disposable.dispose();
@@ -18,47 +18,132 @@ package com.nhnent.haste.transport.udp;
 
 import com.nhnent.haste.common.CRC;
 import com.nhnent.haste.common.Check;
+import com.nhnent.haste.common.EnvironmentTimer;
 import com.nhnent.haste.security.BigInteger;
 import com.nhnent.haste.security.DiffieHellman;
 import com.nhnent.haste.transport.AbstractTransport;
 import com.nhnent.haste.transport.EventExecutor;
 import com.nhnent.haste.transport.EventExecutorGroup;
+import com.nhnent.haste.transport.ExtendedMetricListener;
 import com.nhnent.haste.transport.MetricListener;
+import com.nhnent.haste.transport.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.CRC32;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class UDPTransport extends AbstractTransport {
     private static final Logger logger = LoggerFactory.getLogger(UDPTransport.class);
 
     private static final int PROTOCOL_VERSION = 0x02;
 
+    /**
+     * The protocol version of clients which acknowledge reliable commands with {@link CommandType#SACK}.
+     * Clients of {@link #PROTOCOL_VERSION} are still acknowledged with {@link CommandType#ACK}.
+     */
+    private static final int PROTOCOL_VERSION_SELECTIVE_ACK = 0x03;
+
+    private static final int DEFAULT_READ_BUDGET_DATAGRAMS = 64;
+
+    private static final int DEFAULT_READ_BUDGET_BYTES = 64 * 1024;
+
+    private static final int DEFAULT_HANDSHAKE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final int DEFAULT_KEY_PAIR_POOL_SIZE = 256;
+
+    private static final int MAX_PENDING_HANDSHAKES = 4096;
+
+    private static final int DEFAULT_CONNECTION_BURST_PER_ADDRESS = 8;
+
+    private static final int DEFAULT_SEND_INTERVAL = 20;
+
+    private static final int DEFAULT_FLUSH_DELAY = 1;
+
+    private static final int DEFAULT_MINIMUM_RETRANSMISSION_TIMEOUT = 20;
+
+    private static final int DEFAULT_MAXIMUM_RETRANSMISSION_TIMEOUT = 10000;
+
+    private static final int DEFAULT_FAST_RETRANSMIT_THRESHOLD = 3;
+
+    private static final int DEFAULT_MAXIMUM_REASSEMBLY_BYTES_PER_PEER = 1024 * 1024;
+
+    private static final int DEFAULT_MAXIMUM_REASSEMBLY_BYTES = 64 * 1024 * 1024;
+
     private AtomicInteger connectionCount = new AtomicInteger(0);
 
     private EventExecutorGroup executorGroup;
 
-    AtomicInteger childIndex = new AtomicInteger();
-
     private ListenerUDPTransportProxy listenerTransportProxy;
     private ChildrenUDPTransportProxy[] childTransportProxies;
 
     private final int clientStartPort;
 
-    private final CRC32 crc32 = new CRC32();
+    private final boolean reusePort;
 
-    private final Queue<Integer> peerIDs = new ConcurrentLinkedQueue<>();
+    private final boolean peerMigration;
+
+    private PeerPlacement peerPlacement;
+
+    private final int handshakeThreads;
+
+    private final int keyPairPoolSize;
+
+    private ThreadPoolExecutor handshakeExecutor;
+
+    private KeyPairPool keyPairPool;
+
+    private final int readBudgetDatagrams;
+
+    private final int readBudgetBytes;
+
+    private final int ackDelay;
+
+    private final int sendInterval;
+
+    private final int flushDelay;
+
+    private final CongestionController.Factory congestionControl;
+
+    private final int minimumRetransmissionTimeout;
+
+    private final int maximumRetransmissionTimeout;
+
+    private final int fastRetransmitThreshold;
+
+    private final int maximumReassemblyBytesPerPeer;
+
+    /**
+     * Bytes of fragmented payloads which are being received by all peers of this transport.
+     */
+    private final ReassemblyBudget reassemblyBudget;
+
+    private final EndPointCache endPointCache = new EndPointCache();
+
+    private final ConnectionCookie connectionCookie;
+
+    private final ConnectionRateLimiter connectionRateLimiter;
+
+    private final PeerIdAllocator peerIDs;
+
+    /**
+     * The proxies which own peers by the slot of peer ID, so that a datagram which arrived at another proxy can be handed off.
+     */
+    private final AtomicReferenceArray<ChildrenUDPTransportProxy> peerOwners;
 
     private Timer metricTimer;
 
@@ -66,25 +151,266 @@ public final class UDPTransport extends AbstractTransport {
         super(builder);
 
         this.clientStartPort = builder.clientStartPort;
-
-        //prepare peerIDs
-        int max = MAX_CONNECTION * 2;
-
-        for (int i = 1; i < max; i++) {
-            peerIDs.add(i);
-        }
+        this.reusePort = builder.reusePort;
+        this.peerMigration = builder.peerMigration;
+        this.handshakeThreads = builder.handshakeThreads;
+        this.keyPairPoolSize = builder.keyPairPoolSize;
+        this.readBudgetDatagrams = builder.readBudgetDatagrams;
+        this.readBudgetBytes = builder.readBudgetBytes;
+        this.ackDelay = builder.ackDelay;
+        this.sendInterval = builder.sendInterval;
+        this.flushDelay = builder.flushDelay;
+        this.congestionControl = builder.congestionControl;
+        this.minimumRetransmissionTimeout = builder.minimumRetransmissionTimeout;
+        this.maximumRetransmissionTimeout = builder.maximumRetransmissionTimeout;
+        this.fastRetransmitThreshold = builder.fastRetransmitThreshold;
+        this.maximumReassemblyBytesPerPeer = builder.maximumReassemblyBytesPerPeer;
+        this.reassemblyBudget = new ReassemblyBudget(builder.maximumReassemblyBytes);
+        this.connectionCookie = builder.connectionCookie ? new ConnectionCookie() : null;
+        this.connectionRateLimiter = builder.connectionRatePerAddress > 0
+                ? new ConnectionRateLimiter(builder.connectionRatePerAddress, builder.connectionBurstPerAddress)
+                : null;
+        this.peerIDs = new PeerIdAllocator(MAX_CONNECTION);
+        this.peerOwners = new AtomicReferenceArray<>(MAX_CONNECTION);
     }
 
     public static class Builder extends AbstractTransport.Builder<Builder, UDPTransport> {
         private int clientStartPort;
+        private boolean reusePort;
+        private boolean peerMigration;
+        private int handshakeThreads = DEFAULT_HANDSHAKE_THREADS;
+        private int keyPairPoolSize = DEFAULT_KEY_PAIR_POOL_SIZE;
+        private int readBudgetDatagrams = DEFAULT_READ_BUDGET_DATAGRAMS;
+        private int readBudgetBytes = DEFAULT_READ_BUDGET_BYTES;
+        private boolean connectionCookie;
+        private int connectionRatePerAddress;
+        private int connectionBurstPerAddress = DEFAULT_CONNECTION_BURST_PER_ADDRESS;
+        private int ackDelay;
+        private int sendInterval = DEFAULT_SEND_INTERVAL;
+        private int flushDelay = DEFAULT_FLUSH_DELAY;
+        private CongestionController.Factory congestionControl = NoCongestionController.FACTORY;
+        private int minimumRetransmissionTimeout = DEFAULT_MINIMUM_RETRANSMISSION_TIMEOUT;
+        private int maximumRetransmissionTimeout = DEFAULT_MAXIMUM_RETRANSMISSION_TIMEOUT;
+        private int fastRetransmitThreshold = DEFAULT_FAST_RETRANSMIT_THRESHOLD;
+        private int maximumReassemblyBytesPerPeer = DEFAULT_MAXIMUM_REASSEMBLY_BYTES_PER_PEER;
+        private int maximumReassemblyBytes = DEFAULT_MAXIMUM_REASSEMBLY_BYTES;
 
         public Builder clientStartPort(int clientStartPort) {
             this.clientStartPort = clientStartPort;
             return this;
         }
 
+        /**
+         * Bind a socket of every event loop on the listen port with SO_REUSEPORT,
+         * so that the kernel spreads connection requests and messages across event loops.
+         * Client ports are not used in this mode.
+         * SO_REUSEPORT requires a Java 9 or later runtime on an operating system which supports it, such as Linux 3.9 or later.
+         * Otherwise {@link #build()} throws {@link IllegalArgumentException}.
+         */
+        public Builder reusePort(boolean reusePort) {
+            this.reusePort = reusePort;
+            return this;
+        }
+
+        /**
+         * Move connected peers between event loops periodically when their loads are unbalanced.
+         * A moved peer keeps its state, and its client is told the new port by a {@link CommandType#MIGRATE} command,
+         * so that clients must support it. It is ignored with {@link #reusePort(boolean)}.
+         */
+        public Builder peerMigration(boolean peerMigration) {
+            this.peerMigration = peerMigration;
+            return this;
+        }
+
+        /**
+         * Set the number of threads which compute keys of connection requests, instead of event loops.
+         */
+        public Builder handshakeThreads(int handshakeThreads) {
+            if (handshakeThreads <= 0)
+                throw new IllegalArgumentException("handshakeThreads should be larger than zero");
+
+            this.handshakeThreads = handshakeThreads;
+            return this;
+        }
+
+        /**
+         * Set the number of key pairs of the server which are generated in advance by handshake threads.
+         */
+        public Builder keyPairPoolSize(int keyPairPoolSize) {
+            if (keyPairPoolSize <= 0)
+                throw new IllegalArgumentException("keyPairPoolSize should be larger than zero");
+
+            this.keyPairPoolSize = keyPairPoolSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of datagrams which are read at once when a socket is readable.
+         */
+        public Builder readBudgetDatagrams(int readBudgetDatagrams) {
+            if (readBudgetDatagrams <= 0)
+                throw new IllegalArgumentException("readBudgetDatagrams should be larger than zero");
+
+            this.readBudgetDatagrams = readBudgetDatagrams;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes which are read at once when a socket is readable.
+         */
+        public Builder readBudgetBytes(int readBudgetBytes) {
+            if (readBudgetBytes <= 0)
+                throw new IllegalArgumentException("readBudgetBytes should be larger than zero");
+
+            this.readBudgetBytes = readBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Answer a connection request without a valid cookie by a {@link CommandType#CONNECT_COOKIE} command,
+         * and start the handshake only when the request is sent again with the cookie.
+         * A peer is not created, and keys are not computed for a spoofed source address,
+         * but clients must support it and connecting takes one more round trip.
+         */
+        public Builder connectionCookie(boolean connectionCookie) {
+            this.connectionCookie = connectionCookie;
+            return this;
+        }
+
+        /**
+         * Set how many connection requests of a source IP address are admitted per second, where zero means no limit.
+         * Requests over the limit are ignored before the handshake.
+         */
+        public Builder connectionRatePerAddress(int connectionRatePerAddress) {
+            if (connectionRatePerAddress < 0)
+                throw new IllegalArgumentException("connectionRatePerAddress should not be negative");
+
+            this.connectionRatePerAddress = connectionRatePerAddress;
+            return this;
+        }
+
+        /**
+         * Set how many connection requests of a source IP address are admitted at once over the rate.
+         */
+        public Builder connectionBurstPerAddress(int connectionBurstPerAddress) {
+            if (connectionBurstPerAddress <= 0)
+                throw new IllegalArgumentException("connectionBurstPerAddress should be larger than zero");
+
+            this.connectionBurstPerAddress = connectionBurstPerAddress;
+            return this;
+        }
+
+        /**
+         * Set how long acknowledgements may wait for outgoing data in milliseconds, where zero means no waiting.
+         * Waiting acknowledgements are sent with the data, and only when the delay is passed they are sent alone.
+         * Round trip times which clients measure are increased by up to the delay.
+         */
+        public Builder ackDelay(int ackDelay) {
+            if (ackDelay < 0)
+                throw new IllegalArgumentException("ackDelay should not be negative");
+
+            this.ackDelay = ackDelay;
+            return this;
+        }
+
+        /**
+         * Set the interval in milliseconds at which enqueued commands of a peer are sent together.
+         */
+        public Builder sendInterval(int sendInterval) {
+            if (sendInterval <= 0)
+                throw new IllegalArgumentException("sendInterval should be larger than zero");
+
+            this.sendInterval = sendInterval;
+            return this;
+        }
+
+        /**
+         * Set how long a flush of a peer waits for following commands in milliseconds,
+         * so that a burst of commands is sent in as few datagrams as possible.
+         */
+        public Builder flushDelay(int flushDelay) {
+            if (flushDelay < 0)
+                throw new IllegalArgumentException("flushDelay should not be negative");
+
+            this.flushDelay = flushDelay;
+            return this;
+        }
+
+        /**
+         * Set the congestion control of peers, for instance {@link AimdCongestionController#FACTORY},
+         * {@link BbrCongestionController#FACTORY} or {@link NoCongestionController#FACTORY}.
+         * It is {@link NoCongestionController#FACTORY} by default, so that commands are sent as before unless it is set.
+         */
+        public Builder congestionControl(CongestionController.Factory congestionControl) {
+            Check.NotNull(congestionControl, "congestionControl");
+
+            this.congestionControl = congestionControl;
+            return this;
+        }
+
+        /**
+         * Set the lower bound of retransmission timeouts in milliseconds, which is applied before backing off.
+         */
+        public Builder minimumRetransmissionTimeout(int minimumRetransmissionTimeout) {
+            if (minimumRetransmissionTimeout < 0)
+                throw new IllegalArgumentException("minimumRetransmissionTimeout should not be negative");
+
+            this.minimumRetransmissionTimeout = minimumRetransmissionTimeout;
+            return this;
+        }
+
+        /**
+         * Set the upper bound of retransmission timeouts in milliseconds, which is applied after backing off.
+         */
+        public Builder maximumRetransmissionTimeout(int maximumRetransmissionTimeout) {
+            if (maximumRetransmissionTimeout <= 0)
+                throw new IllegalArgumentException("maximumRetransmissionTimeout should be larger than zero");
+
+            this.maximumRetransmissionTimeout = maximumRetransmissionTimeout;
+            return this;
+        }
+
+        /**
+         * Set how many commands which were sent later must be acknowledged to retransmit an unacknowledged command
+         * before its retransmission timeout, where zero means that it is retransmitted only by the timeout.
+         */
+        public Builder fastRetransmitThreshold(int fastRetransmitThreshold) {
+            if (fastRetransmitThreshold < 0)
+                throw new IllegalArgumentException("fastRetransmitThreshold should not be negative");
+
+            this.fastRetransmitThreshold = fastRetransmitThreshold;
+            return this;
+        }
+
+        /**
+         * Set the bytes of fragmented payloads which can be received by a peer at the same time.
+         * A peer which sends a larger payload is disconnected, and fragments of other payloads over it are not acknowledged
+         * until earlier payloads are delivered, so they are resent by the client.
+         */
+        public Builder maximumReassemblyBytesPerPeer(int maximumReassemblyBytesPerPeer) {
+            if (maximumReassemblyBytesPerPeer <= 0)
+                throw new IllegalArgumentException("maximumReassemblyBytesPerPeer should be positive");
+
+            this.maximumReassemblyBytesPerPeer = maximumReassemblyBytesPerPeer;
+            return this;
+        }
+
+        /**
+         * Set the bytes of fragmented payloads which can be received by all peers of the transport at the same time.
+         */
+        public Builder maximumReassemblyBytes(int maximumReassemblyBytes) {
+            if (maximumReassemblyBytes <= 0)
+                throw new IllegalArgumentException("maximumReassemblyBytes should be positive");
+
+            this.maximumReassemblyBytes = maximumReassemblyBytes;
+            return this;
+        }
+
         @Override
         public UDPTransport build() {
+            if (reusePort && !isReusePortSupported())
+                throw new IllegalArgumentException("reusePort requires SO_REUSEPORT, which is supported by Java 9 or later");
+
             return new UDPTransport(this);
         }
     }
@@ -118,11 +444,9 @@ public final class UDPTransport extends AbstractTransport {
                         ChildrenUDPTransportProxy proxy = childTransportProxies[i];
                         if (proxy == null) continue;
 
-                        Map<Integer, TransportPeer> peerMap = childTransportProxies[i].peers;
-                        if (peerMap == null) continue;
-
-                        Collection<TransportPeer> peers = peerMap.values();
-                        for (TransportPeer peer : peers) {
+                        PeerTable peers = proxy.peers;
+                        for (int j = 0; j < peers.size(); j++) {
+                            TransportPeer peer = peers.peerAt(j);
                             if (peer == null) continue;
                             if (!(peer instanceof UDPNetworkPeer)) continue;
 
@@ -142,6 +466,22 @@ public final class UDPTransport extends AbstractTransport {
                     // Do nothing because this task must not interrupt the main method.
                 }
                 this.listener.onReceive(index - 1, meanOfRoundTripTime, meanOfRoundTripTimeDeviation);
+
+                if (this.listener instanceof ExtendedMetricListener) {
+                    notifyEventLoopMetrics((ExtendedMetricListener) this.listener);
+                }
+            }
+        }
+
+        private void notifyEventLoopMetrics(ExtendedMetricListener listener) {
+            EventExecutorGroup group = executorGroup;
+            if (group == null) return;
+
+            listener.onReceiveEventLoop(0, group.listenerExecutor().metrics());
+
+            EventExecutor[] childExecutors = group.childExecutors();
+            for (int i = 0; i < childExecutors.length; i++) {
+                listener.onReceiveEventLoop(i + 1, childExecutors[i].metrics());
             }
         }
     }
@@ -154,35 +494,13 @@ public final class UDPTransport extends AbstractTransport {
 
         this.executorGroup = executorGroup;
 
-        try {
-            EventExecutor listenerExecutor = executorGroup.listenerExecutor();
-            DatagramChannel listener = DatagramChannel.open();
-
-            listener.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUF_SIZE);
-            listener.setOption(StandardSocketOptions.SO_RCVBUF, RECV_BUF_SIZE);
-
-            logger.info("UDP Listen Port: {}", LISTEN_PORT);
-
-            bind(listener, listenerExecutor.selector(), LISTEN_PORT);
-            listenerTransportProxy = new ListenerUDPTransportProxy(this, listener, LISTEN_PORT);
-            listenerExecutor.registerProxy(listenerTransportProxy);
-            listenerExecutor.setSelectorTimeout(0);
-
-            EventExecutor[] childExecutors = executorGroup.childExecutors();
-
-            DatagramChannel[] children = new DatagramChannel[childExecutors.length];
-            childTransportProxies = new ChildrenUDPTransportProxy[childExecutors.length];
+        startHandshake();
 
-            for (int i = 0; i < childExecutors.length; i++) {
-                children[i] = DatagramChannel.open();
-                children[i].setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUF_SIZE);
-                children[i].setOption(StandardSocketOptions.SO_RCVBUF, RECV_BUF_SIZE);
-
-                int port = i + clientStartPort;
-                bind(children[i], childExecutors[i].selector(), port);
-                childTransportProxies[i] = new ChildrenUDPTransportProxy(this, children[i], port);
-                childExecutors[i].registerProxy(childTransportProxies[i]);
-                childExecutors[i].setSelectorTimeout(1);
+        try {
+            if (reusePort) {
+                registerReusePort(executorGroup);
+            } else {
+                registerListener(executorGroup);
             }
 
             // If exists a metric listener, start a metric collecting task.
@@ -203,31 +521,184 @@ public final class UDPTransport extends AbstractTransport {
         return false;
     }
 
-    private void bind(DatagramChannel ch, Selector selector, int port) throws IOException {
+    private void startHandshake() {
+        if (handshakeExecutor != null) {
+            handshakeExecutor.shutdown();
+        }
+
+        handshakeExecutor = new ThreadPoolExecutor(handshakeThreads, handshakeThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_PENDING_HANDSHAKES),
+                new ThreadFactory() {
+                    private final AtomicInteger threadIndex = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "haste-udp-handshake-" + threadIndex.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        keyPairPool = new KeyPairPool(keyPairPoolSize, handshakeExecutor);
+        keyPairPool.refill();
+    }
+
+    private void registerListener(EventExecutorGroup executorGroup) throws IOException {
+        EventExecutor listenerExecutor = executorGroup.listenerExecutor();
+        DatagramChannel listener = openChannel();
+
+        logger.info("UDP Listen Port: {}", LISTEN_PORT);
+
+        bind(listener, LISTEN_PORT);
+        listenerTransportProxy = new ListenerUDPTransportProxy(this, listenerExecutor, listener, LISTEN_PORT);
+        listen(listenerExecutor, listener, listenerTransportProxy);
+        listenerExecutor.registerProxy(listenerTransportProxy);
+        listenerExecutor.setSelectorTimeout(0);
+
+        EventExecutor[] childExecutors = executorGroup.childExecutors();
+
+        childTransportProxies = new ChildrenUDPTransportProxy[childExecutors.length];
+
+        for (int i = 0; i < childExecutors.length; i++) {
+            int port = i + clientStartPort;
+            registerChild(i, childExecutors[i], openChannel(), port);
+        }
+
+        peerPlacement = new PeerPlacement(childTransportProxies);
+
+        if (peerMigration && childTransportProxies.length > 1) {
+            scheduleRebalance(listenerExecutor);
+        }
+    }
+
+    /**
+     * Rebalancing runs in the event loop of the listener, where new peers are placed.
+     */
+    private void scheduleRebalance(EventExecutor listenerExecutor) {
+        final Timeout timeout = listenerExecutor.newTimeout(peerPlacement);
+
+        listenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                timeout.schedule(EnvironmentTimer.currentTimeMillis() + PeerPlacement.REBALANCE_INTERVAL);
+            }
+        });
+    }
+
+    /**
+     * Every event loop, including the listener, binds its own socket on the listen port
+     * and accepts connection requests by itself.
+     */
+    private void registerReusePort(EventExecutorGroup executorGroup) throws IOException {
+        EventExecutor[] childExecutors = executorGroup.childExecutors();
+        EventExecutor[] executors = new EventExecutor[childExecutors.length + 1];
+
+        executors[0] = executorGroup.listenerExecutor();
+        System.arraycopy(childExecutors, 0, executors, 1, childExecutors.length);
+
+        logger.info("UDP Listen Port: {} with SO_REUSEPORT, sockets: {}", LISTEN_PORT, executors.length);
+
+        childTransportProxies = new ChildrenUDPTransportProxy[executors.length];
+
+        for (int i = 0; i < executors.length; i++) {
+            DatagramChannel ch = openChannel();
+            setReusePort(ch);
+            registerChild(i, executors[i], ch, LISTEN_PORT);
+        }
+    }
+
+    private void registerChild(int index, EventExecutor executor, DatagramChannel ch, int port) throws IOException {
+        bind(ch, port);
+        childTransportProxies[index] = new ChildrenUDPTransportProxy(this, executor, ch, port);
+        listen(executor, ch, childTransportProxies[index]);
+        executor.registerProxy(childTransportProxies[index]);
+        executor.setSelectorTimeout(1);
+    }
+
+    private DatagramChannel openChannel() throws IOException {
+        DatagramChannel ch = DatagramChannel.open();
+        ch.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUF_SIZE);
+        ch.setOption(StandardSocketOptions.SO_RCVBUF, RECV_BUF_SIZE);
+        return ch;
+    }
+
+    /**
+     * SO_REUSEPORT is not a standard socket option until Java 9, so it is looked up from the supported options.
+     *
+     * @return The option, or {@code null} if it is not supported.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption(DatagramChannel ch) {
+        for (SocketOption<?> option : ch.supportedOptions()) {
+            if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class)
+                return (SocketOption<Boolean>) option;
+        }
+        return null;
+    }
+
+    private static boolean isReusePortSupported() {
+        try (DatagramChannel ch = DatagramChannel.open()) {
+            return reusePortOption(ch) != null;
+        } catch (IOException e) {
+            logger.error("Failed to open a channel to check SO_REUSEPORT", e);
+            return false;
+        }
+    }
+
+    private static void setReusePort(DatagramChannel ch) throws IOException {
+        SocketOption<Boolean> option = reusePortOption(ch);
+
+        if (option == null)
+            throw new IOException("SO_REUSEPORT is not supported");
+
+        ch.setOption(option, true);
+    }
+
+    private void bind(DatagramChannel ch, int port) throws IOException {
         Check.NotNull(ch, "channel");
-        Check.NotNull(selector, "selector");
 
         ch.socket().bind(new InetSocketAddress(port));
-        ch.configureBlocking(false);
+    }
+
+    /**
+     * Register the channel in the selector of the executor,
+     * or start a receiving thread if the executor receives by blocking.
+     */
+    private void listen(EventExecutor executor, DatagramChannel ch, AbstractUDPTransportProxy proxy) throws IOException {
+        if (executor.isBlockingReceive()) {
+            proxy.startBlockingReceive(executor);
+            return;
+        }
 
-        ch.register(selector, SelectionKey.OP_READ);
+        ch.configureBlocking(false);
+        ch.register(executor.selector(), SelectionKey.OP_READ);
     }
 
-    ConnectionInfo accept(long currentTime, SocketAddress socketAddress, ByteBuffer byteBuffer) {
+    /**
+     * Validate the connection request in the buffer, and start its handshake.
+     * Keys are computed by handshake threads, and the response is sent by the event loop of the receiver when they are done.
+     * With connection cookies, a request without a valid cookie is answered by a new cookie instead.
+     *
+     * @return {@code true} if the handshake was started {@code false} otherwise.
+     */
+    boolean accept(long currentTime,
+                   SocketAddress socketAddress,
+                   ByteBuffer byteBuffer,
+                   int transferred_bytes,
+                   AbstractUDPTransportProxy receiver) {
         if (connectionCount.get() >= MAX_CONNECTION)
-            return null;
+            return false;
 
-        int transferred_bytes = byteBuffer.position();
         byteBuffer.position(0);
 
         if (CommandType.CONNECT.isNotEqual(byteBuffer.get()))  //1
-            return null;
+            return false;
 
         int version = byteBuffer.getInt();             //4
 
         if (!validateProtocolVersion(version)) {
             logger.error("Invalid connection protocol version : {}", version);
-            return null;
+            return false;
         }
 
         long sendingTime = byteBuffer.getLong();        //8
@@ -240,7 +711,7 @@ public final class UDPTransport extends AbstractTransport {
         byte clientPublicKeyLength = byteBuffer.get();
         if (transferred_bytes - byteBuffer.position() < clientPublicKeyLength) {
             logger.error("Invalid connection packet");
-            return null;
+            return false;
         }
 
         byte[] clientPublicKey = new byte[clientPublicKeyLength];
@@ -249,77 +720,271 @@ public final class UDPTransport extends AbstractTransport {
         boolean isCrcEnabled = enableCrc > 0;
 
         if (isCrcEnabled) {
-            if (!CRC.Check(crc32, byteBuffer.array(), transferred_bytes, byteBuffer.position())) {
+            if (!CRC.Check(receiver.crc32, byteBuffer, transferred_bytes, byteBuffer.position())) {
                 logger.error("CRC Error");
-                return null;
+                return false;
             }
         }
 
         byteBuffer.position(byteBuffer.position() + CRC.CRC_LENGTH);
 
-        // TODO Re-Implement Diffie-Hellman
-        BigInteger clientPublicKeyNumber = new BigInteger(clientPublicKey);
-        BigInteger privateKeyNumber = DiffieHellman.generatePrivateKey(160);
-        BigInteger serverKeyNumber = DiffieHellman.generatePublicKey(privateKeyNumber);
-        BigInteger secretNumber = DiffieHellman.generateSecretKey(clientPublicKeyNumber, privateKeyNumber);
+        if (connectionCookie != null && !receiver.verifyCookie(currentTime, socketAddress, transferred_bytes)) {
+            receiver.sendCookie(socketAddress, sendingTime, currentTime);
+            return false;
+        }
 
-        ChildrenUDPTransportProxy childrenTransportProxy = getClientProxy();
+        if (connectionRateLimiter != null && !connectionRateLimiter.tryAcquire(socketAddress, currentTime))
+            return false;
 
-        UDPNetworkPeer networkPeer = new UDPNetworkPeer.Builder()
-                .application(application)
-                .socketAddress(socketAddress)
-                .diffieHellman(secretNumber, serverKeyNumber)
-                .peerId(getPeerID())
-                .disconnectTimeout(disconnectionTimeout)
-                .channelCount(channelCount)
-                .enableCRC(isCrcEnabled)
-                .mtu(mtu)
-                .build();
+        if (connectionCount.incrementAndGet() > MAX_CONNECTION) {
+            connectionCount.decrementAndGet();
+            return false;
+        }
 
-        connectionCount.getAndIncrement();
+        int peerID = peerIDs.allocate();
+        if (peerID == PeerIdAllocator.NONE) {
+            connectionCount.decrementAndGet();
+            return false;
+        }
 
-        networkPeer.addDisposeEvent(new TransportPeer.Disposable() {
+        Handshake handshake = new Handshake(currentTime, socketAddress, receiver, getClientProxy(receiver, currentTime), peerID);
 
-            private int peerID;
+        handshake.version = version;
+        handshake.clientPublicKey = clientPublicKey;
+        handshake.sendingTime = sendingTime;
+        handshake.channelCount = channelCount;
+        handshake.mtu = mtu;
+        handshake.disconnectionTimeout = disconnectionTimeout;
+        handshake.isCrcEnabled = isCrcEnabled;
 
-            @Override
-            public void dispose() {
-                releasePeerID(peerID);
-                connectionCount.decrementAndGet();
+        try {
+            handshakeExecutor.execute(handshake);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Too many pending handshakes, the connection request is dropped");
+            handshake.abort();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * The handshake of a connection request, which is run by a handshake thread.
+     * The peer is created with the agreed key, and it is registered in the event loop of its owner.
+     * The response is sent by the receiver only after the registration, so that the first datagram of the client finds the peer.
+     */
+    private final class Handshake implements Runnable {
+        private final long requestTime;
+        private final SocketAddress socketAddress;
+        private final AbstractUDPTransportProxy receiver;
+        private final ChildrenUDPTransportProxy owner;
+        private final int peerID;
+
+        private int version;
+        private byte[] clientPublicKey;
+        private long sendingTime;
+        private short channelCount;
+        private short mtu;
+        private int disconnectionTimeout;
+        private boolean isCrcEnabled;
+
+        Handshake(long requestTime, SocketAddress socketAddress, AbstractUDPTransportProxy receiver,
+                  ChildrenUDPTransportProxy owner, int peerID) {
+            this.requestTime = requestTime;
+            this.socketAddress = socketAddress;
+            this.receiver = receiver;
+            this.owner = owner;
+            this.peerID = peerID;
+        }
+
+        @Override
+        public void run() {
+            // The client has already sent the request again, which starts another handshake.
+            if (EnvironmentTimer.currentTimeMillis() - requestTime > EndPointCache.CONNECTION_TIMEOUT) {
+                abort();
+                return;
             }
 
-            public TransportPeer.Disposable build(int peerID) {
-                this.peerID = peerID;
-                return this;
+            final UDPNetworkPeer networkPeer;
+
+            try {
+                DiffieHellman.KeyPair keyPair = keyPairPool.take();
+                BigInteger clientPublicKeyNumber = new BigInteger(clientPublicKey);
+                BigInteger secretNumber = DiffieHellman.generateSecretKey(clientPublicKeyNumber, keyPair.getPrivateKey());
+
+                networkPeer = new UDPNetworkPeer.Builder()
+                        .application(application)
+                        .socketAddress(socketAddress)
+                        .executor(owner.executor())
+                        .diffieHellman(secretNumber, keyPair.getPublicKey())
+                        .peerId(peerID)
+                        .disconnectTimeout(disconnectionTimeout)
+                        .channelCount(channelCount)
+                        .enableCRC(isCrcEnabled)
+                        .selectiveAck(version >= PROTOCOL_VERSION_SELECTIVE_ACK)
+                        .ackDelay(ackDelay)
+                        .sendInterval(sendInterval)
+                        .flushDelay(flushDelay)
+                        .congestionControl(congestionControl)
+                        .retransmissionTimeout(minimumRetransmissionTimeout, maximumRetransmissionTimeout)
+                        .fastRetransmitThreshold(fastRetransmitThreshold)
+                        .maximumReassemblyBytes(maximumReassemblyBytesPerPeer)
+                        .reassemblyBudget(reassemblyBudget)
+                        .mtu(mtu)
+                        .build();
+            } catch (Exception e) {
+                logger.error("Failed to handshake", e);
+                abort();
+                return;
             }
-        }.build(networkPeer.getPeerID()));
 
-        childrenTransportProxy.addPeer(networkPeer);
+            owner.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    complete(networkPeer);
+                }
+            });
+        }
+
+        private void complete(UDPNetworkPeer networkPeer) {
+            networkPeer.addDisposeEvent(new TransportPeer.Disposable() {
+                @Override
+                public void dispose() {
+                    peerOwners.set(PeerIdAllocator.indexOf(peerID), null);
+                    releasePeerID(peerID);
+                    connectionCount.decrementAndGet();
+                }
+            });
+
+            peerOwners.set(PeerIdAllocator.indexOf(peerID), owner);
 
-        ConnectionInfo connectionInfo = ConnectionInfo.newConnectionInfo(networkPeer.getPeerID(), networkPeer.getServerKey(), childrenTransportProxy.port());
+            owner.addPeer(networkPeer);
 
-        listenerTransportProxy.sendConnectionResponse(socketAddress,
-                connectionInfo,
-                sendingTime,
-                currentTime);
+            final ConnectionInfo connectionInfo = ConnectionInfo.newConnectionInfo(peerID, networkPeer.getServerKey(), owner.port());
+
+            if (receiver.executor().inEventLoop()) {
+                receiver.onHandshakeCompleted(socketAddress, connectionInfo, sendingTime);
+            } else {
+                receiver.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        receiver.onHandshakeCompleted(socketAddress, connectionInfo, sendingTime);
+                    }
+                });
+            }
+        }
 
-        return connectionInfo;
+        /**
+         * Release everything which was reserved for this handshake, and forget the request so that a retry is accepted.
+         */
+        void abort() {
+            owner.releasePeer();
+            releasePeerID(peerID);
+            connectionCount.decrementAndGet();
+
+            if (receiver.executor().inEventLoop()) {
+                receiver.onHandshakeAborted(socketAddress, requestTime);
+            } else {
+                receiver.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        receiver.onHandshakeAborted(socketAddress, requestTime);
+                    }
+                });
+            }
+        }
     }
 
     boolean validateProtocolVersion(int version) {
-        return PROTOCOL_VERSION == version;
+        return PROTOCOL_VERSION == version || PROTOCOL_VERSION_SELECTIVE_ACK == version;
+    }
+
+    /**
+     * Return the number of peer ID slots, by which peer tables are indexed.
+     */
+    int peerSlotCount() {
+        return MAX_CONNECTION;
     }
 
-    private ChildrenUDPTransportProxy getClientProxy() {
-        return childTransportProxies[Math.abs(childIndex.getAndIncrement() % childTransportProxies.length)];
+    EndPointCache endPointCache() {
+        return endPointCache;
     }
 
-    private int getPeerID() {
-        Integer peerID = peerIDs.poll();
-        return peerID == null ? -1 : peerID;
+    ConnectionCookie connectionCookie() {
+        return connectionCookie;
+    }
+
+    int readBudgetDatagrams() {
+        return readBudgetDatagrams;
+    }
+
+    int readBudgetBytes() {
+        return readBudgetBytes;
+    }
+
+    /**
+     * Return how many times reading of sockets was stopped by the read budget, since the transport was registered.
+     * A steadily increasing count means that sockets are not drained as fast as datagrams arrive.
+     */
+    public long readBudgetExhaustedCount() {
+        long count = 0;
+
+        if (listenerTransportProxy != null)
+            count += listenerTransportProxy.readBudgetExhaustedCount();
+
+        ChildrenUDPTransportProxy[] proxies = childTransportProxies;
+        if (proxies != null) {
+            for (ChildrenUDPTransportProxy proxy : proxies) {
+                if (proxy != null)
+                    count += proxy.readBudgetExhaustedCount();
+            }
+        }
+
+        return count;
+    }
+
+    boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Return the proxy which owns the peer, or {@code null} if it does not exist.
+     */
+    ChildrenUDPTransportProxy getOwnerProxy(int peerID) {
+        if (!isCurrentPeerID(peerID))
+            return null;
+
+        return peerOwners.get(PeerIdAllocator.indexOf(peerID));
+    }
+
+    void setOwnerProxy(int peerID, ChildrenUDPTransportProxy owner) {
+        peerOwners.set(PeerIdAllocator.indexOf(peerID), owner);
+    }
+
+    /**
+     * A peer is owned by the proxy which received its connection request when sockets are sharded by SO_REUSEPORT,
+     * because the kernel delivers the following messages of the same address to the same socket.
+     * Otherwise, it is placed on the least loaded proxy.
+     */
+    private ChildrenUDPTransportProxy getClientProxy(AbstractUDPTransportProxy receiver, long currentTime) {
+        if (receiver instanceof ChildrenUDPTransportProxy) {
+            ChildrenUDPTransportProxy proxy = (ChildrenUDPTransportProxy) receiver;
+            proxy.reservePeer();
+            return proxy;
+        }
+
+        return peerPlacement.place(currentTime);
+    }
+
+    /**
+     * Return {@code true} if the peer ID belongs to a peer now {@code false} otherwise.
+     * A peer ID of a disconnected peer is not current even if its slot was allocated again.
+     */
+    boolean isCurrentPeerID(int peerID) {
+        return peerIDs.isCurrent(peerID);
     }
 
     private void releasePeerID(int peerID) {
-        peerIDs.offer(peerID);
+        peerIDs.release(peerID);
     }
 }
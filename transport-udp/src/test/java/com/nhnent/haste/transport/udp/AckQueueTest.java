@@ -0,0 +1,111 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class AckQueueTest {
+    @Test
+    public void testWrite() {
+        AckQueue queue = new AckQueue(5);
+        queue.add((byte) 2, 7, 1000);
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        Assert.assertEquals(1, queue.write(buffer, 100));
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(AckQueue.ACK_COMMAND_LENGTH, buffer.position());
+
+        buffer.flip();
+        Assert.assertEquals(CommandType.ACK.getByte(), buffer.get());
+        Assert.assertEquals(2, buffer.get());
+        Assert.assertEquals(UDPCommand.CommandFlags.CF_UNRELIABLE, buffer.get());
+        Assert.assertEquals(AckQueue.ACK_COMMAND_LENGTH, buffer.getShort());
+        Assert.assertEquals(0, buffer.getLong());
+        Assert.assertEquals(7, buffer.getLong());
+        Assert.assertEquals(1000, buffer.getLong());
+    }
+
+    @Test
+    public void testGrowAndLimit() {
+        AckQueue queue = new AckQueue(5);
+
+        for (int i = 0; i < 1000; i++) {
+            queue.add((byte) (i % 5), i, i * 10L);
+
+            // Interleave removing, so that the ring wraps around before growing.
+            if (i % 3 == 0) {
+                ByteBuffer buffer = ByteBuffer.allocate(AckQueue.ACK_COMMAND_LENGTH + 1);
+                Assert.assertEquals(1, queue.write(buffer, buffer.capacity()));
+            }
+        }
+
+        int limit = AckQueue.ACK_COMMAND_LENGTH * 10 + 1;
+        long expected = -1;
+        while (!queue.isEmpty()) {
+            ByteBuffer buffer = ByteBuffer.allocate(limit);
+            int count = queue.write(buffer, limit);
+            Assert.assertTrue(count > 0 && count <= 10);
+
+            buffer.flip();
+            for (int i = 0; i < count; i++) {
+                buffer.position(i * AckQueue.ACK_COMMAND_LENGTH + 13);
+                long seq = buffer.getLong();
+                Assert.assertTrue(seq > expected);
+                Assert.assertEquals(seq * 10, buffer.getLong());
+                expected = seq;
+            }
+        }
+        Assert.assertEquals(999, expected);
+    }
+
+    @Test
+    public void testWriteSelective() {
+        AckQueue queue = new AckQueue(5);
+        Channel channel = new Channel(3);
+        channel.setIncomingReliableSeqNum(10);
+
+        // A channel is written once with the latest sent time, however many commands were received.
+        queue.addSelective(channel, 1000);
+        queue.addSelective(channel, 2000);
+        queue.add((byte) 1, 4, 500);
+        Assert.assertEquals(2, queue.size());
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        Assert.assertEquals(2, queue.write(buffer, 100));
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(AckQueue.ACK_COMMAND_LENGTH + AckQueue.SACK_COMMAND_LENGTH, buffer.position());
+
+        buffer.flip();
+        buffer.position(AckQueue.ACK_COMMAND_LENGTH);
+        Assert.assertEquals(CommandType.SACK.getByte(), buffer.get());
+        Assert.assertEquals(3, buffer.get());
+        Assert.assertEquals(UDPCommand.CommandFlags.CF_UNRELIABLE, buffer.get());
+        Assert.assertEquals(AckQueue.SACK_COMMAND_LENGTH, buffer.getShort());
+        Assert.assertEquals(0, buffer.getLong());
+        Assert.assertEquals(10, buffer.getLong());
+        Assert.assertEquals(0, buffer.getLong());
+        Assert.assertEquals(2000, buffer.getLong());
+
+        // The channel is marked again after writing.
+        queue.addSelective(channel, 3000);
+        Assert.assertEquals(1, queue.write(ByteBuffer.allocate(100), 100));
+    }
+}
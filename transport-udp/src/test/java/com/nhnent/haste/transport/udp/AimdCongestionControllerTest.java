@@ -0,0 +1,62 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AimdCongestionControllerTest {
+    private static final int MSS = 1000;
+
+    @Test
+    public void testSlowStartAndAvoidance() {
+        AimdCongestionController controller = new AimdCongestionController(MSS);
+        Assert.assertEquals(AimdCongestionController.INITIAL_WINDOW_SEGMENTS * MSS, controller.congestionWindow());
+        Assert.assertEquals(0, controller.pacingRate(), 0);
+
+        // The window grows by acknowledged bytes in slow start.
+        controller.onAcked(5 * MSS, 100, 0);
+        Assert.assertEquals(15 * MSS, controller.congestionWindow());
+        Assert.assertTrue(controller.pacingRate() > 0);
+
+        controller.onLoss(1000);
+        Assert.assertEquals(7500, controller.congestionWindow());
+
+        // And by a segment per window after the loss.
+        controller.onAcked(7500, 100, 1100);
+        Assert.assertEquals(7500 + MSS, controller.congestionWindow());
+    }
+
+    @Test
+    public void testReduceOncePerRoundTrip() {
+        AimdCongestionController controller = new AimdCongestionController(MSS);
+        controller.onAcked(6 * MSS, 100, 0);
+
+        controller.onLoss(1000);
+        controller.onLoss(1050);
+        Assert.assertEquals(8 * MSS, controller.congestionWindow());
+
+        controller.onLoss(1100);
+        Assert.assertEquals(4 * MSS, controller.congestionWindow());
+
+        for (int i = 0; i < 10; i++) {
+            controller.onLoss(2000 + i * 1000);
+        }
+        Assert.assertEquals(AimdCongestionController.MINIMUM_WINDOW_SEGMENTS * MSS, controller.congestionWindow());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BbrCongestionControllerTest {
+    private static final int MSS = 1000;
+
+    @Test
+    public void testEstimateBandwidth() {
+        BbrCongestionController controller = new BbrCongestionController(MSS);
+        Assert.assertEquals(BbrCongestionController.INITIAL_WINDOW_SEGMENTS * MSS, controller.congestionWindow());
+        Assert.assertEquals(0, controller.pacingRate(), 0);
+
+        // 1000 bytes per millisecond are delivered with the round trip time of 50 milliseconds.
+        for (long time = 0; time <= 2000; time += 10) {
+            controller.onAcked(10000, 50, time);
+        }
+
+        Assert.assertEquals(1000, controller.bottleneckBandwidth(), 10);
+        Assert.assertEquals(BbrCongestionController.PROBE_BANDWIDTH, controller.state());
+
+        // The window is twice the bandwidth-delay product.
+        Assert.assertEquals(100000, controller.congestionWindow(), 2000);
+        Assert.assertTrue(controller.pacingRate() >= 750 && controller.pacingRate() <= 1250);
+    }
+
+    @Test
+    public void testLossEndsStartup() {
+        BbrCongestionController controller = new BbrCongestionController(MSS);
+
+        controller.onLoss(0);
+        Assert.assertEquals(BbrCongestionController.STARTUP, controller.state());
+
+        for (long time = 0; time <= 100; time += 10) {
+            controller.onAcked(1000, 50, time);
+        }
+
+        controller.onLoss(100);
+        Assert.assertEquals(BbrCongestionController.DRAIN, controller.state());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ChannelTest {
+    private static IncomingCommand incomingCommand(long reliableSeq, long unreliableSeq) {
+        boolean reliable = unreliableSeq == 0;
+        int length = reliable ? CommandLength.RELIABLE_HEADER_SIZE.getLength() : CommandLength.UNRELIABLE_HEADER_SIZE.getLength();
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(reliable ? CommandType.RELIABLE.getByte() : CommandType.UNRELIABLE.getByte());
+        buffer.put((byte) 0);
+        buffer.put(reliable ? UDPCommand.CommandFlags.CF_RELIABLE : UDPCommand.CommandFlags.CF_UNRELIABLE);
+        buffer.putShort((short) length);
+        buffer.putLong(reliableSeq);
+        if (!reliable)
+            buffer.putLong(unreliableSeq);
+        buffer.flip();
+
+        return IncomingCommand.newIncomingCommand(0, buffer);
+    }
+
+    private static Channel sentChannel(int count) {
+        Channel channel = new Channel(0);
+
+        for (int i = 1; i <= count; i++) {
+            OutgoingCommand command = OutgoingCommand.newOutgoingCommand(CommandType.RELIABLE, new byte[1], 1, false, (byte) 0);
+            command.setReliableSeqNum(channel.increaseOutgoingReliableSeqNum());
+            command.increaseSentCount();
+            command.setRetransmissionTimeout(100, 50, 0, 0, Long.MAX_VALUE);
+
+            channel.addSentReliableCommand(command);
+            channel.scheduleRetransmission(command);
+        }
+
+        return channel;
+    }
+
+    @Test
+    public void testResendByTimeout() {
+        Channel channel = sentChannel(5);
+        Assert.assertEquals(150, channel.getEarliestRetransmissionTimeout());
+
+        Assert.assertEquals(0, channel.resend(150));
+
+        channel.removeSentReliableCommand(1);
+        Assert.assertEquals(4, channel.resend(151));
+        Assert.assertEquals(4, channel.getOutgoingReliableCommandList().size());
+        Assert.assertEquals(Long.MAX_VALUE, channel.getEarliestRetransmissionTimeout());
+    }
+
+    @Test
+    public void testSelectiveAck() {
+        Channel channel = sentChannel(10);
+
+        // 1 and 2 are cumulative, and 4, 5, 6 and 8 are selective.
+        int removedBytes = channel.removeSentReliableCommands(2, 0b101110);
+        Assert.assertEquals(6, removedBytes / (CommandLength.RELIABLE_HEADER_SIZE.getLength() + 1));
+
+        // 3 is followed by four acknowledged ones, and 7 by one.
+        Assert.assertEquals(1, channel.fastRetransmit(2, 0b101110, 3));
+        Assert.assertEquals(3, channel.getOutgoingReliableCommandList().peek().getReliableSeqNum());
+
+        // A command is fast retransmitted only once.
+        Assert.assertEquals(0, channel.fastRetransmit(2, 0b101110, 3));
+    }
+
+    @Test
+    public void testFastRetransmitByAcks() {
+        Channel channel = sentChannel(5);
+
+        for (long seq = 2; seq <= 4; seq++) {
+            Assert.assertNotNull(channel.removeSentReliableCommand(seq));
+            Assert.assertEquals(seq == 4 ? 1 : 0, channel.fastRetransmit(seq, 3));
+        }
+
+        Assert.assertEquals(1, channel.getOutgoingReliableCommandList().peek().getReliableSeqNum());
+
+        // Only 5 is left to be resent by the timeout.
+        Assert.assertEquals(1, channel.resend(151));
+    }
+
+    @Test
+    public void testIncomingReliableWindow() {
+        Channel channel = new Channel(0);
+
+        Assert.assertTrue(channel.insertIncomingReliableCommand(incomingCommand(2, 0)));
+        Assert.assertTrue(channel.insertIncomingReliableCommand(incomingCommand(3, 0)));
+        Assert.assertFalse(channel.insertIncomingReliableCommand(incomingCommand(3, 0)));
+        Assert.assertFalse(channel.containIncomingReliableSeqNum(1));
+        Assert.assertEquals(0b11, channel.getIncomingReliableBits() >>> 1);
+
+        // 1 fills the hole, so 1 to 3 were received in order.
+        Assert.assertTrue(channel.insertIncomingReliableCommand(incomingCommand(1, 0)));
+        Assert.assertTrue(channel.containIncomingReliableSeqNum(1));
+        Assert.assertFalse(channel.containIncomingReliableSeqNum(4));
+
+        Assert.assertTrue(channel.isInIncomingReliableWindow(Channel.MAX_INCOMING_RELIABLE_WINDOW));
+        Assert.assertFalse(channel.isInIncomingReliableWindow(Channel.MAX_INCOMING_RELIABLE_WINDOW + 1));
+        Assert.assertFalse(channel.insertIncomingReliableCommand(incomingCommand(Channel.MAX_INCOMING_RELIABLE_WINDOW + 1, 0)));
+    }
+
+    @Test
+    public void testReleaseRejectedPendingCommands() {
+        Channel channel = new Channel(0);
+
+        while (channel.offerPendingOutgoingCommands(new OutgoingCommand[]{
+                OutgoingCommand.newOutgoingCommand(CommandType.RELIABLE, new byte[1], 1, false, (byte) 0)})) {
+        }
+
+        OutgoingPayload payload = OutgoingPayload.copyOf(new byte[4], 4, 2);
+        OutgoingCommand first = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, payload, 0, 2, false, (byte) 0);
+        OutgoingCommand second = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, payload, 2, 2, false, (byte) 0);
+        Assert.assertFalse(channel.offerPendingOutgoingCommands(new OutgoingCommand[]{first, second}));
+
+        // Rejected commands and their payload were returned to the pools of this thread, so they are taken again.
+        Assert.assertSame(payload, OutgoingPayload.copyOf(new byte[4], 4, 1));
+        Assert.assertSame(second, OutgoingCommand.newOutgoingCommand(CommandType.RELIABLE, new byte[1], 1, false, (byte) 0));
+    }
+
+    @Test
+    public void testPollIncomingUnreliable() {
+        Channel channel = new Channel(0);
+
+        Assert.assertTrue(channel.insertIncomingUnreliableCommand(incomingCommand(0, 2)));
+        Assert.assertTrue(channel.insertIncomingUnreliableCommand(incomingCommand(1, 3)));
+
+        // 1 was lost, and 2 follows the current reliable sequence number.
+        Assert.assertEquals(2, channel.pollIncomingUnreliableCommand().getUnreliableSeqNum());
+        Assert.assertEquals(2, channel.getIncomingUnreliableSeqNum());
+
+        // 3 waits for the reliable command of 1.
+        Assert.assertNull(channel.pollIncomingUnreliableCommand());
+        channel.setIncomingReliableSeqNum(1);
+        Assert.assertEquals(3, channel.pollIncomingUnreliableCommand().getUnreliableSeqNum());
+        Assert.assertEquals(0, channel.incomingUnreliableCommandCount());
+    }
+}
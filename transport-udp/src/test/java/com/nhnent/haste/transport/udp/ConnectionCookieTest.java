@@ -0,0 +1,73 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+public class ConnectionCookieTest {
+    private final ConnectionCookie cookie = new ConnectionCookie();
+    private final Mac mac = cookie.newMac();
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 40000);
+
+    private ByteBuffer issue(long issuedTime) {
+        ByteBuffer buffer = ByteBuffer.allocate(ConnectionCookie.LENGTH);
+        cookie.write(mac, buffer, address, issuedTime);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testVerify() {
+        Assert.assertTrue(cookie.verify(mac, issue(1000), address, 1000));
+        Assert.assertTrue(cookie.verify(mac, issue(1000), address, 1000 + ConnectionCookie.LIFETIME));
+    }
+
+    @Test
+    public void testExpired() {
+        Assert.assertFalse(cookie.verify(mac, issue(1000), address, 1001 + ConnectionCookie.LIFETIME));
+        Assert.assertFalse(cookie.verify(mac, issue(1000), address, 999));
+    }
+
+    @Test
+    public void testOtherAddress() {
+        Assert.assertFalse(cookie.verify(mac, issue(1000), new InetSocketAddress("127.0.0.1", 40001), 1000));
+        Assert.assertFalse(cookie.verify(mac, issue(1000), new InetSocketAddress("127.0.0.2", 40000), 1000));
+    }
+
+    @Test
+    public void testOtherSecret() {
+        ConnectionCookie other = new ConnectionCookie();
+        Assert.assertFalse(other.verify(other.newMac(), issue(1000), address, 1000));
+    }
+
+    @Test
+    public void testTampered() {
+        ByteBuffer buffer = issue(1000);
+        buffer.put(ConnectionCookie.LENGTH - 1, (byte) (buffer.get(ConnectionCookie.LENGTH - 1) ^ 1));
+        Assert.assertFalse(cookie.verify(mac, buffer, address, 1000));
+
+        buffer = issue(1000);
+        buffer.putLong(0, 1001);
+        Assert.assertFalse(cookie.verify(mac, buffer, address, 1001));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+public class ConnectionRateLimiterTest {
+    @Test
+    public void testBurstAndRefill() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(10, 3);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 40000);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire(address, 0));
+        }
+        Assert.assertFalse(limiter.tryAcquire(address, 0));
+
+        // Other ports of the same address share the bucket.
+        Assert.assertFalse(limiter.tryAcquire(new InetSocketAddress("127.0.0.1", 40001), 50));
+
+        Assert.assertTrue(limiter.tryAcquire(address, 100));
+        Assert.assertFalse(limiter.tryAcquire(address, 100));
+
+        Assert.assertTrue(limiter.tryAcquire(new InetSocketAddress("127.0.0.2", 40000), 100));
+    }
+
+    private static InetSocketAddress address(int i) {
+        return new InetSocketAddress("10." + (i >>> 16) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF), 40000);
+    }
+
+    @Test
+    public void testRemoveFullBuckets() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(1, 1);
+
+        for (int i = 0; i < ConnectionRateLimiter.MAX_ADDRESSES; i++) {
+            limiter.tryAcquire(address(i), 0);
+        }
+
+        // Every bucket has been refilled, so they are removed from the head for the new address.
+        InetSocketAddress newAddress = new InetSocketAddress("127.0.0.1", 40000);
+        Assert.assertTrue(limiter.tryAcquire(newAddress, 1000));
+        Assert.assertTrue(limiter.size() < ConnectionRateLimiter.MAX_ADDRESSES);
+    }
+
+    @Test
+    public void testNewAddressOnFullTableDoesNotScan() {
+        ConnectionRateLimiter limiter = new ConnectionRateLimiter(1, 1);
+
+        for (int i = 0; i < ConnectionRateLimiter.MAX_ADDRESSES; i++) {
+            limiter.tryAcquire(address(i), 0);
+        }
+
+        // A flood of new addresses while no bucket is refilled evicts the least recently used one each,
+        // which would scan the whole table for every request if it were not removed from the head.
+        long startTime = System.nanoTime();
+        for (int i = ConnectionRateLimiter.MAX_ADDRESSES; i < 2 * ConnectionRateLimiter.MAX_ADDRESSES; i++) {
+            Assert.assertTrue(limiter.tryAcquire(address(i), 0));
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        Assert.assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis < 5000);
+        Assert.assertTrue(limiter.size() <= ConnectionRateLimiter.MAX_ADDRESSES);
+
+        // The bucket of the first address was evicted, so it starts with a full bucket again.
+        Assert.assertTrue(limiter.tryAcquire(address(0), 0));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+public class EndPointCacheTest {
+    @Test
+    public void testExpire() {
+        EndPointCache cache = new EndPointCache();
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 40000);
+
+        cache.addEndPoint(address, 1000, null);
+
+        Assert.assertTrue(cache.exist(1000 + EndPointCache.CONNECTION_TIMEOUT, address));
+        Assert.assertFalse(cache.exist(1001 + EndPointCache.CONNECTION_TIMEOUT, address));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReAdd() {
+        EndPointCache cache = new EndPointCache();
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 40000);
+        ConnectionInfo info = ConnectionInfo.newConnectionInfo(1, null, 10000);
+
+        cache.addEndPoint(address, 1000, null);
+        cache.addEndPoint(address, 2000, info);
+
+        Assert.assertTrue(cache.exist(1500 + EndPointCache.CONNECTION_TIMEOUT, address));
+        Assert.assertSame(info, cache.getInfo(address));
+    }
+
+    @Test
+    public void testRemove() {
+        EndPointCache cache = new EndPointCache();
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 40000);
+        ConnectionInfo info = ConnectionInfo.newConnectionInfo(1, null, 10000);
+
+        cache.addEndPoint(address, 1000, null);
+        cache.removeEndPoint(address, 1000);
+
+        Assert.assertFalse(cache.exist(1000, address));
+
+        // The end point of a newer request or a completed handshake is kept.
+        cache.addEndPoint(address, 2000, null);
+        cache.removeEndPoint(address, 1000);
+
+        Assert.assertTrue(cache.exist(2000, address));
+
+        cache.addEndPoint(address, 3000, info);
+        cache.removeEndPoint(address, 3000);
+
+        Assert.assertSame(info, cache.getInfo(address));
+    }
+
+    @Test
+    public void testExpireAmortized() {
+        EndPointCache cache = new EndPointCache();
+
+        for (int i = 0; i < 10000; i++) {
+            cache.addEndPoint(new InetSocketAddress("127.0.0.1", 10000 + i), i, null);
+        }
+
+        // Every shard is accessed by new end points, and expired ones are removed from the heads of them.
+        long currentTime = 10000 + EndPointCache.CONNECTION_TIMEOUT;
+        for (int i = 0; i < 1000; i++) {
+            cache.addEndPoint(new InetSocketAddress("127.0.0.2", 10000 + i), currentTime, null);
+        }
+
+        Assert.assertEquals(1000, cache.size());
+    }
+}
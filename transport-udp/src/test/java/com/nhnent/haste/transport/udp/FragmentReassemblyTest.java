@@ -0,0 +1,76 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class FragmentReassemblyTest {
+    private static IncomingCommand fragment(long startSeq, int count, int num, int totalLength, int offset, byte[] payload) {
+        int length = CommandLength.FRAGMENTED_HEADER_SIZE.getLength() + payload.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(CommandType.FRAGMENT.getByte());
+        buffer.put((byte) 0);
+        buffer.put(UDPCommand.CommandFlags.CF_RELIABLE);
+        buffer.putShort((short) length);
+        buffer.putLong(startSeq + num);
+        buffer.putLong(startSeq);
+        buffer.putShort((short) count);
+        buffer.putShort((short) num);
+        buffer.putInt(totalLength);
+        buffer.putInt(offset);
+        buffer.put(payload);
+        buffer.flip();
+
+        return IncomingCommand.newIncomingCommand(0, buffer);
+    }
+
+    @Test
+    public void testReassembleOutOfOrder() {
+        FragmentReassembly reassembly = new FragmentReassembly(1, (short) 3, 5);
+
+        IncomingCommand third = fragment(1, 3, 2, 5, 4, new byte[]{5});
+        IncomingCommand first = fragment(1, 3, 0, 5, 0, new byte[]{1, 2});
+        IncomingCommand second = fragment(1, 3, 1, 5, 2, new byte[]{3, 4});
+        Assert.assertTrue(reassembly.matches(first));
+
+        Assert.assertTrue(reassembly.add(third.getFragmentNum(), third.getFragmentOffset(), third.getPayload()));
+        Assert.assertTrue(reassembly.add(first.getFragmentNum(), first.getFragmentOffset(), first.getPayload()));
+        Assert.assertFalse(reassembly.add(first.getFragmentNum(), first.getFragmentOffset(), first.getPayload()));
+        Assert.assertFalse(reassembly.isComplete());
+
+        Assert.assertTrue(reassembly.add(second.getFragmentNum(), second.getFragmentOffset(), second.getPayload()));
+        Assert.assertTrue(reassembly.isComplete());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, reassembly.getBuffer());
+    }
+
+    @Test
+    public void testRejectInvalidFragment() {
+        Assert.assertTrue(fragment(1, 2, 1, 4, 2, new byte[2]).valid());
+
+        // The fragment number is beyond the count.
+        Assert.assertFalse(fragment(1, 2, 2, 4, 2, new byte[2]).valid());
+        // The payload is beyond the total length.
+        Assert.assertFalse(fragment(1, 2, 1, 4, 3, new byte[2]).valid());
+        Assert.assertFalse(fragment(1, 2, 1, 4, -1, new byte[2]).valid());
+        Assert.assertFalse(fragment(1, 0, 0, 4, 0, new byte[2]).valid());
+    }
+}
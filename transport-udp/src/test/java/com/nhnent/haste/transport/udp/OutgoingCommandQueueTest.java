@@ -0,0 +1,107 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class OutgoingCommandQueueTest {
+    private static OutgoingCommand[] newCommands(long seq) {
+        OutgoingCommand command = OutgoingCommand.newOutgoingCommand(CommandType.RELIABLE, new byte[1], 1, false, (byte) 0);
+        command.setReliableSeqNum(seq);
+        return new OutgoingCommand[]{command};
+    }
+
+    @Test
+    public void testBounded() {
+        OutgoingCommandQueue queue = new OutgoingCommandQueue(4);
+        Assert.assertTrue(queue.isEmpty());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(newCommands(i)));
+        }
+        Assert.assertFalse(queue.offer(newCommands(4)));
+
+        Assert.assertEquals(0, queue.poll()[0].getReliableSeqNum());
+        Assert.assertTrue(queue.offer(newCommands(4)));
+
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(i, queue.poll()[0].getReliableSeqNum());
+        }
+        Assert.assertNull(queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        final int producers = 4;
+        final int countPerProducer = 10000;
+        final OutgoingCommandQueue queue = new OutgoingCommandQueue(64);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = 0; i < countPerProducer; i++) {
+                        OutgoingCommand[] commands = newCommands((long) producer * countPerProducer + i);
+                        while (!queue.offer(commands)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        start.countDown();
+
+        // Payloads of every producer are polled in the order of offering.
+        long[] last = new long[producers];
+        for (int p = 0; p < producers; p++) {
+            last[p] = (long) p * countPerProducer - 1;
+        }
+
+        int polled = 0;
+        while (polled < producers * countPerProducer) {
+            OutgoingCommand[] commands = queue.poll();
+            if (commands == null) {
+                Thread.yield();
+                continue;
+            }
+
+            long seq = commands[0].getReliableSeqNum();
+            int producer = (int) (seq / countPerProducer);
+            Assert.assertEquals(last[producer] + 1, seq);
+            last[producer] = seq;
+            polled++;
+        }
+
+        Assert.assertTrue(queue.isEmpty());
+    }
+}
@@ -19,6 +19,8 @@ package com.nhnent.haste.transport.udp;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 public class OutgoingCommandTest {
     @Test
     public void testBackoffMultiple() {
@@ -29,4 +31,32 @@ public class OutgoingCommandTest {
             Assert.assertEquals(expectedBackOffMultiple[index], backOff);
         }
     }
+
+    @Test
+    public void testSerializeSlicesOfPayload() {
+        byte[] bytes = {1, 2, 3, 4, 5};
+        OutgoingPayload payload = OutgoingPayload.copyOf(bytes, bytes.length, 2);
+
+        // The source can be reused after it was copied.
+        bytes[0] = 0;
+
+        OutgoingCommand first = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, payload, 0, 3, false, (byte) 0);
+        OutgoingCommand second = OutgoingCommand.newOutgoingCommand(CommandType.FRAGMENT, payload, 3, 2, false, (byte) 0);
+
+        int headerLength = CommandLength.FRAGMENTED_HEADER_SIZE.getLength();
+        Assert.assertEquals(headerLength + 3, first.getSerializedLength());
+
+        ByteBuffer buffer = ByteBuffer.allocate(first.getSerializedLength() + second.getSerializedLength());
+        first.serialize(buffer);
+        second.serialize(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+
+        Assert.assertEquals(1, buffer.get(headerLength));
+        Assert.assertEquals(3, buffer.get(headerLength + 2));
+        Assert.assertEquals(4, buffer.get(2 * headerLength + 3));
+        Assert.assertEquals(5, buffer.get(2 * headerLength + 4));
+
+        first.release();
+        second.release();
+    }
 }
@@ -0,0 +1,120 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PeerIdAllocatorTest {
+    @Test
+    public void testAllocateAll() {
+        PeerIdAllocator allocator = new PeerIdAllocator(100);
+        Set<Integer> indexes = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            int peerID = allocator.allocate();
+            Assert.assertTrue(peerID > 0);
+            Assert.assertTrue(allocator.isCurrent(peerID));
+            Assert.assertTrue(indexes.add(PeerIdAllocator.indexOf(peerID)));
+        }
+
+        Assert.assertEquals(PeerIdAllocator.NONE, allocator.allocate());
+    }
+
+    @Test
+    public void testGeneration() {
+        PeerIdAllocator allocator = new PeerIdAllocator(1);
+
+        int peerID = allocator.allocate();
+        allocator.release(peerID);
+        Assert.assertFalse(allocator.isCurrent(peerID));
+
+        int newPeerID = allocator.allocate();
+        Assert.assertEquals(PeerIdAllocator.indexOf(peerID), PeerIdAllocator.indexOf(newPeerID));
+        Assert.assertEquals(PeerIdAllocator.generationOf(peerID) + 1, PeerIdAllocator.generationOf(newPeerID));
+        Assert.assertFalse(allocator.isCurrent(peerID));
+        Assert.assertTrue(allocator.isCurrent(newPeerID));
+
+        // A stale peer ID does not free the slot of the new peer.
+        allocator.release(peerID);
+        Assert.assertTrue(allocator.isCurrent(newPeerID));
+        Assert.assertEquals(PeerIdAllocator.NONE, allocator.allocate());
+    }
+
+    @Test
+    public void testGenerationWrapsAround() {
+        PeerIdAllocator allocator = new PeerIdAllocator(1);
+
+        int peerID = 0;
+        for (int i = 0; i < PeerIdAllocator.MAX_GENERATION + 1; i++) {
+            peerID = allocator.allocate();
+            Assert.assertTrue(peerID > 0);
+            allocator.release(peerID);
+        }
+
+        Assert.assertEquals(1, PeerIdAllocator.generationOf(peerID));
+    }
+
+    @Test
+    public void testFifoReuse() {
+        PeerIdAllocator allocator = new PeerIdAllocator(3);
+
+        int first = allocator.allocate();
+        allocator.release(first);
+
+        Assert.assertNotEquals(PeerIdAllocator.indexOf(first), PeerIdAllocator.indexOf(allocator.allocate()));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final PeerIdAllocator allocator = new PeerIdAllocator(64);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        int peerID = allocator.allocate();
+                        if (peerID == PeerIdAllocator.NONE || !allocator.isCurrent(peerID)) {
+                            failed.set(true);
+                            break;
+                        }
+                        allocator.release(peerID);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        latch.await();
+        Assert.assertFalse(failed.get());
+
+        for (int i = 0; i < 64; i++) {
+            Assert.assertNotEquals(PeerIdAllocator.NONE, allocator.allocate());
+        }
+        Assert.assertEquals(PeerIdAllocator.NONE, allocator.allocate());
+    }
+}
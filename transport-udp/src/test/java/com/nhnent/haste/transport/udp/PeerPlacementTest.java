@@ -0,0 +1,202 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.common.Histogram;
+import com.nhnent.haste.transport.EventExecutor;
+import com.nhnent.haste.transport.EventLoopMetrics;
+import com.nhnent.haste.transport.Timeout;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PeerPlacementTest {
+    /**
+     * The executor of a proxy, which is not the current thread, so that migrations are queued in {@link #tasks}.
+     */
+    private static final class StubExecutor implements InvocationHandler {
+        final Histogram workTime = new Histogram();
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "execute":
+                    tasks.add((Runnable) args[0]);
+                    return null;
+                case "inEventLoop":
+                    return false;
+                case "metrics":
+                    return newProxy(EventLoopMetrics.class, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return workTime;
+                        }
+                    });
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class StubTimeout implements InvocationHandler {
+        long deadline = -1;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("schedule"))
+                deadline = (Long) args[0];
+            return null;
+        }
+    }
+
+    private final UDPTransport transport = new UDPTransport.Builder().maxConnnection(16).build();
+
+    private final List<StubExecutor> executors = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private ChildrenUDPTransportProxy[] newProxies(int... peerCounts) {
+        ChildrenUDPTransportProxy[] proxies = new ChildrenUDPTransportProxy[peerCounts.length];
+
+        for (int i = 0; i < proxies.length; i++) {
+            StubExecutor executor = new StubExecutor();
+            executors.add(executor);
+
+            proxies[i] = new ChildrenUDPTransportProxy(transport, newProxy(EventExecutor.class, executor), null, i);
+            for (int j = 0; j < peerCounts[i]; j++) {
+                proxies[i].reservePeer();
+            }
+        }
+        return proxies;
+    }
+
+    private static void rebalance(PeerPlacement placement, long currentTime) {
+        StubTimeout timeout = new StubTimeout();
+        placement.run(newProxy(Timeout.class, timeout), currentTime);
+
+        Assert.assertEquals(currentTime + PeerPlacement.REBALANCE_INTERVAL, timeout.deadline);
+    }
+
+    @Test
+    public void testPlaceOnLeastPeers() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(2, 0, 1);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        Assert.assertSame(proxies[1], placement.place(0));
+        Assert.assertEquals(1, proxies[1].peerCount());
+    }
+
+    @Test
+    public void testPlaceInTurn() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(0, 0, 0);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        Assert.assertSame(proxies[0], placement.place(0));
+        Assert.assertSame(proxies[1], placement.place(0));
+        Assert.assertSame(proxies[2], placement.place(0));
+        Assert.assertSame(proxies[0], placement.place(0));
+    }
+
+    @Test
+    public void testPlaceByBusyTime() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(1, 1);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        Assert.assertSame(proxies[0], placement.place(0));
+
+        // The second proxy has fewer peers, but it was busy for 900ms of 1000ms.
+        executors.get(1).workTime.record(900000000L);
+
+        Assert.assertSame(proxies[0], placement.place(1000));
+        Assert.assertEquals(3, proxies[0].peerCount());
+    }
+
+    @Test
+    public void testRebalanceMovesHalfOfDifference() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(10, 0);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        // The loads are 2 and 0, so the half of the difference is 5 peers.
+        rebalance(placement, 0);
+
+        Assert.assertEquals(5, executors.get(0).tasks.size());
+        Assert.assertEquals(5, proxies[1].peerCount());
+        Assert.assertTrue(executors.get(1).tasks.isEmpty());
+    }
+
+    @Test
+    public void testRebalanceIsLimited() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(100, 0);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        rebalance(placement, 0);
+
+        Assert.assertEquals(PeerPlacement.MAX_MIGRATIONS_PER_REBALANCE, executors.get(0).tasks.size());
+        Assert.assertEquals(PeerPlacement.MAX_MIGRATIONS_PER_REBALANCE, proxies[1].peerCount());
+    }
+
+    @Test
+    public void testRebalanceKeepsLastPeer() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(1, 0);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        // Moving the only peer would unbalance the proxies the other way.
+        rebalance(placement, 0);
+
+        Assert.assertTrue(executors.get(0).tasks.isEmpty());
+        Assert.assertEquals(0, proxies[1].peerCount());
+    }
+
+    @Test
+    public void testNoRebalanceUnderThreshold() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(9, 8, 8);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        rebalance(placement, 0);
+
+        for (StubExecutor executor : executors) {
+            Assert.assertTrue(executor.tasks.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRebalanceByBusyTime() {
+        ChildrenUDPTransportProxy[] proxies = newProxies(4, 4);
+        PeerPlacement placement = new PeerPlacement(proxies);
+
+        rebalance(placement, 0);
+        Assert.assertTrue(executors.get(0).tasks.isEmpty());
+
+        // The loads are (1 + 2) / 2 and (1 + 0) / 2, so the half of the difference is 4 * 1 / 3 peers.
+        executors.get(0).workTime.record(500000000L);
+        rebalance(placement, 1000);
+
+        Assert.assertEquals(2, executors.get(0).tasks.size());
+        Assert.assertEquals(4 + 2, proxies[1].peerCount());
+    }
+}
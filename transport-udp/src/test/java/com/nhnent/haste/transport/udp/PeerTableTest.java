@@ -0,0 +1,106 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+public class PeerTableTest {
+    private static TransportPeer newPeer(final int peerID) {
+        return (TransportPeer) Proxy.newProxyInstance(TransportPeer.class.getClassLoader(), new Class<?>[]{TransportPeer.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getPeerID"))
+                            return peerID;
+                        if (method.getName().equals("equals"))
+                            return proxy == args[0];
+                        if (method.getName().equals("hashCode"))
+                            return peerID;
+                        return null;
+                    }
+                });
+    }
+
+    private static int peerID(int generation, int index) {
+        return (generation << PeerIdAllocator.INDEX_BITS) | index;
+    }
+
+    @Test
+    public void testGet() {
+        PeerTable table = new PeerTable(8);
+        TransportPeer peer = newPeer(peerID(1, 3));
+
+        table.put(peer);
+
+        Assert.assertSame(peer, table.get(peerID(1, 3)));
+        Assert.assertNull(table.get(peerID(2, 3)));
+        Assert.assertNull(table.get(peerID(1, 4)));
+        Assert.assertNull(table.get(peerID(1, 100)));
+    }
+
+    @Test
+    public void testSwapRemove() {
+        PeerTable table = new PeerTable(64);
+        TransportPeer[] peers = new TransportPeer[40];
+
+        for (int i = 0; i < peers.length; i++) {
+            peers[i] = newPeer(peerID(1, i));
+            table.put(peers[i]);
+        }
+
+        Assert.assertFalse(table.remove(peerID(1, 5), peers[6]));
+
+        for (int i = 0; i < peers.length; i += 2) {
+            Assert.assertTrue(table.remove(peerID(1, i), peers[i]));
+        }
+        Assert.assertFalse(table.remove(peerID(1, 0), peers[0]));
+
+        Assert.assertEquals(peers.length / 2, table.size());
+
+        Set<TransportPeer> iterated = new HashSet<>();
+        for (int i = 0; i < table.size(); i++) {
+            iterated.add(table.peerAt(i));
+        }
+
+        for (int i = 0; i < peers.length; i++) {
+            Assert.assertEquals(i % 2 == 1, iterated.contains(peers[i]));
+            Assert.assertEquals(i % 2 == 1 ? peers[i] : null, table.get(peerID(1, i)));
+        }
+    }
+
+    @Test
+    public void testPutReplacesSlot() {
+        PeerTable table = new PeerTable(8);
+        TransportPeer oldPeer = newPeer(peerID(1, 2));
+        TransportPeer newPeer = newPeer(peerID(2, 2));
+
+        table.put(oldPeer);
+        table.put(newPeer);
+
+        Assert.assertEquals(1, table.size());
+        Assert.assertSame(newPeer, table.peerAt(0));
+        Assert.assertFalse(table.remove(peerID(1, 2), oldPeer));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RetransmissionQueueTest {
+    private static OutgoingCommand newCommand(long seq, long rto) {
+        OutgoingCommand command = OutgoingCommand.newOutgoingCommand(CommandType.RELIABLE, new byte[1], 1, false, (byte) 0);
+        command.setReliableSeqNum(seq);
+        command.setRetransmissionTimeout(rto, 0, 0, 0, Long.MAX_VALUE);
+        return command;
+    }
+
+    @Test
+    public void testOrderAndRemove() {
+        Random random = new Random(7);
+        RetransmissionQueue queue = new RetransmissionQueue();
+        List<OutgoingCommand> commands = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            OutgoingCommand command = newCommand(i, random.nextInt(500));
+            commands.add(command);
+            queue.add(command);
+        }
+
+        // Remove every third command, as if it was acknowledged.
+        for (int i = 0; i < commands.size(); i += 3) {
+            Assert.assertTrue(queue.remove(commands.get(i)));
+            Assert.assertFalse(queue.remove(commands.get(i)));
+            Assert.assertFalse(queue.contains(commands.get(i)));
+        }
+
+        Assert.assertEquals(666, queue.size());
+
+        long lastRto = -1;
+        long lastSeq = -1;
+        OutgoingCommand command;
+        while ((command = queue.poll()) != null) {
+            Assert.assertNotEquals(0, command.getReliableSeqNum() % 3);
+            Assert.assertTrue(command.getRetransmissionTimeout() >= lastRto);
+            if (command.getRetransmissionTimeout() == lastRto)
+                Assert.assertTrue(command.getReliableSeqNum() > lastSeq);
+
+            lastRto = command.getRetransmissionTimeout();
+            lastSeq = command.getReliableSeqNum();
+        }
+        Assert.assertTrue(queue.isEmpty());
+    }
+}
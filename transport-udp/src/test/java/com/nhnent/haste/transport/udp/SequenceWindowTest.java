@@ -0,0 +1,79 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequenceWindowTest {
+    @Test
+    public void testPutAndRemove() {
+        SequenceWindow<String> window = new SequenceWindow<>(4, 16);
+
+        Assert.assertTrue(window.put(1, 1, "1"));
+        Assert.assertTrue(window.put(1, 3, "3"));
+        Assert.assertFalse(window.put(1, 3, "3"));
+        Assert.assertFalse(window.put(1, 0, "0"));
+
+        // 5 shares the slot of 1 in four slots, so it grows.
+        Assert.assertTrue(window.put(1, 5, "5"));
+        Assert.assertEquals(8, window.capacity());
+        Assert.assertEquals("1", window.get(1));
+        Assert.assertEquals("3", window.get(3));
+        Assert.assertEquals("5", window.get(5));
+        Assert.assertNull(window.get(9));
+
+        Assert.assertEquals("1", window.remove(1));
+        Assert.assertNull(window.remove(1));
+        Assert.assertEquals(2, window.size());
+    }
+
+    @Test
+    public void testBoundedByMaxCapacity() {
+        SequenceWindow<String> window = new SequenceWindow<>(4, 16);
+
+        Assert.assertTrue(window.put(100, 115, "115"));
+        Assert.assertFalse(window.put(100, 116, "116"));
+        Assert.assertEquals(16, window.capacity());
+
+        // The slot of 115 is reused by 131 after the base passed it.
+        Assert.assertEquals("115", window.remove(115));
+        Assert.assertTrue(window.put(116, 131, "131"));
+        Assert.assertFalse(window.contains(115));
+        Assert.assertEquals("131", window.get(131));
+    }
+
+    @Test
+    public void testFirstAcrossWordsAndWrap() {
+        SequenceWindow<String> window = new SequenceWindow<>(128, 128);
+        Assert.assertEquals(-1, window.first(100));
+
+        // 100 is in the slot 100, and 170 and 220 wrap around to the slots 42 and 92.
+        Assert.assertTrue(window.put(100, 220, "220"));
+        Assert.assertTrue(window.put(100, 170, "170"));
+        Assert.assertEquals(170, window.first(100));
+
+        Assert.assertTrue(window.put(100, 120, "120"));
+        Assert.assertEquals(120, window.first(100));
+
+        window.remove(120);
+        Assert.assertEquals(170, window.first(121));
+        window.remove(170);
+        Assert.assertEquals(220, window.first(171));
+    }
+}
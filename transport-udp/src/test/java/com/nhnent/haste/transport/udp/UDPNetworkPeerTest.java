@@ -0,0 +1,213 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport.udp;
+
+import com.nhnent.haste.common.EnvironmentTimer;
+import com.nhnent.haste.security.BigInteger;
+import com.nhnent.haste.transport.ApplicationPeer;
+import com.nhnent.haste.transport.EventExecutor;
+import com.nhnent.haste.transport.Payload;
+import com.nhnent.haste.transport.QoS;
+import com.nhnent.haste.transport.SendResult;
+import com.nhnent.haste.transport.Timeout;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acknowledgements of received reliable commands wait for outgoing data until the ack delay,
+ * and they are sent alone only when it is passed.
+ */
+public class UDPNetworkPeerTest {
+    private static final int ACK_DELAY = 50;
+    private static final int SEND_INTERVAL = 20;
+
+    private DatagramChannel server;
+    private DatagramChannel client;
+    private UDPNetworkPeer peer;
+
+    private final ByteBuffer writeByteBuffer = ByteBuffer.allocate(2048);
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client.configureBlocking(false);
+
+        // The peer runs in the current thread, and its send timeout is not expired by itself.
+        EventExecutor executor = newProxy(EventExecutor.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("inEventLoop"))
+                    return true;
+                if (method.getName().equals("execute"))
+                    ((Runnable) args[0]).run();
+                return null;
+            }
+        });
+
+        peer = new UDPNetworkPeer.Builder()
+                .socketAddress(client.getLocalAddress())
+                .executor(executor)
+                .diffieHellman(BigInteger.valueOf(1), BigInteger.valueOf(1))
+                .peerId(1)
+                .disconnectTimeout(10000)
+                .ackDelay(ACK_DELAY)
+                .sendInterval(SEND_INTERVAL)
+                .build();
+
+        peer.setApplicationPeer(newProxy(ApplicationPeer.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("internal_onReceive"))
+                    ((Payload) args[0]).release();
+                return null;
+            }
+        }));
+
+        peer.register(newProxy(Timeout.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("isScheduled") ? false : null;
+            }
+        }), EnvironmentTimer.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        client.close();
+    }
+
+    /**
+     * Receive a datagram of the reliable command from the client, which must be acknowledged.
+     */
+    private void receiveReliable(long currentTime, long reliableSeq) throws IOException {
+        int length = CommandLength.RELIABLE_HEADER_SIZE.getLength() + 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(CommandLength.UDP_MTU_HEADER_LENGTH.getLength() + length);
+        buffer.put(CommandType.MESSAGES.getByte());
+        buffer.putInt(1);
+        buffer.putLong(currentTime);
+        buffer.putShort((short) 1);
+        buffer.putLong(0);
+
+        buffer.put(CommandType.RELIABLE.getByte());
+        buffer.put((byte) 0);
+        buffer.put(UDPCommand.CommandFlags.CF_RELIABLE);
+        buffer.putShort((short) length);
+        buffer.putLong(reliableSeq);
+        buffer.put((byte) 7);
+
+        int transferredBytes = buffer.position();
+        buffer.position(5);
+
+        peer.onReceive(currentTime, client.getLocalAddress(), buffer, transferredBytes);
+    }
+
+    /**
+     * Return the command types of datagrams which the client receives in the wait time.
+     */
+    private List<List<CommandType>> receiveDatagrams(long waitMillis) throws IOException, InterruptedException {
+        List<List<CommandType>> datagrams = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(2048);
+        long deadline = System.currentTimeMillis() + waitMillis;
+
+        do {
+            buffer.clear();
+
+            if (client.receive(buffer) == null) {
+                Thread.sleep(1);
+                continue;
+            }
+
+            List<CommandType> commands = new ArrayList<>();
+            int position = CommandLength.UDP_MTU_HEADER_LENGTH.getLength();
+
+            while (position < buffer.position()) {
+                commands.add(CommandType.convert(buffer.get(position)));
+                position += buffer.getShort(position + 3);
+            }
+
+            Assert.assertEquals(buffer.getShort(13), commands.size());
+            datagrams.add(commands);
+        } while (System.currentTimeMillis() < deadline);
+
+        return datagrams;
+    }
+
+    @Test
+    public void testAckIsPiggybackedOnData() throws Exception {
+        long currentTime = EnvironmentTimer.currentTimeMillis();
+
+        receiveReliable(currentTime, 1);
+
+        Assert.assertEquals(SendResult.QUEUED, peer.enqueueOutgoingCommand(new byte[]{1}, 1, (byte) 0, false, QoS.RELIABLE_SEQUENCED));
+
+        peer.send(server, writeByteBuffer, currentTime + SEND_INTERVAL);
+
+        List<List<CommandType>> datagrams = receiveDatagrams(100);
+        Assert.assertEquals(1, datagrams.size());
+        Assert.assertTrue(datagrams.get(0).contains(CommandType.ACK));
+        Assert.assertTrue(datagrams.get(0).contains(CommandType.RELIABLE));
+
+        // Nothing is left to be acknowledged alone.
+        peer.send(server, writeByteBuffer, currentTime + ACK_DELAY);
+
+        Assert.assertTrue(receiveDatagrams(100).isEmpty());
+    }
+
+    @Test
+    public void testAckWaitsForDeadline() throws Exception {
+        long currentTime = EnvironmentTimer.currentTimeMillis();
+
+        receiveReliable(currentTime, 1);
+
+        Assert.assertEquals(currentTime + ACK_DELAY, peer.nextSendTime());
+
+        peer.send(server, writeByteBuffer, currentTime + ACK_DELAY - 1);
+
+        Assert.assertTrue(receiveDatagrams(100).isEmpty());
+
+        // The send interval from the previous sending is kept, even if the deadline is passed.
+        Assert.assertEquals(currentTime + ACK_DELAY - 1 + SEND_INTERVAL, peer.nextSendTime());
+
+        peer.send(server, writeByteBuffer, currentTime + ACK_DELAY - 1 + SEND_INTERVAL);
+
+        List<List<CommandType>> datagrams = receiveDatagrams(100);
+        Assert.assertEquals(1, datagrams.size());
+        Assert.assertEquals(CommandType.ACK, datagrams.get(0).get(0));
+        Assert.assertEquals(1, datagrams.get(0).size());
+    }
+}
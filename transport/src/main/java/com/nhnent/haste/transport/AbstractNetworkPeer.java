@@ -173,10 +173,7 @@ public abstract class AbstractNetworkPeer implements NetworkPeer {
         if (applicationPeer == null)
             return false;
 
-        byte[] data = payload.copyOf();
-        int dataLength = payload.getLength();
-
-        applicationPeer.internal_onReceive(data, dataLength, channel, isEncrypted, qos);
+        applicationPeer.internal_onReceive(payload.retain(), channel, isEncrypted, qos);
 
         return true;
     }
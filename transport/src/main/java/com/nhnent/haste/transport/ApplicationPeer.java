@@ -22,13 +22,13 @@ package com.nhnent.haste.transport;
 public interface ApplicationPeer {
     /**
      * The callback that would receive a payload.
-     * @param data The received data.
-     * @param dataLength The length of received data.
+     * The payload is not copied, and it is retained for the callee, which must release it after it was processed.
+     * @param payload The received payload, whose data must not be modified.
      * @param channel The channel that received a payload.
      * @param isEncrypted {@code true} if a payload was encrypted {@code false} otherwise.
      * @param qos The received {@link QoS}
      */
-    void internal_onReceive(byte[] data, int dataLength,
+    void internal_onReceive(Payload payload,
                             byte channel,
                             boolean isEncrypted,
                             QoS qos);
@@ -37,4 +37,44 @@ public interface EventExecutor {
      * Set a timeout of selector.
      */
     void setSelectorTimeout(long milliseconds);
+
+    /**
+     * Create a new {@link Timeout} of the timer in this executor. The created timeout is not scheduled yet,
+     * and it must be scheduled in the event loop thread of this executor.
+     *
+     * @param task The task which is run when the timeout is expired.
+     * @return A new timeout.
+     */
+    Timeout newTimeout(TimeoutTask task);
+
+    /**
+     * Wake up the event loop thread if it is waiting. It can be called in any thread.
+     * Wakeups are coalesced, so that the waiting thread is woken up at most once until it waits again.
+     */
+    void wakeup();
+
+    /**
+     * Run the task in the event loop thread of this executor. It can be called in any thread.
+     * Tasks are run in the order of submission.
+     *
+     * @param task The task to run in the event loop thread.
+     */
+    void execute(Runnable task);
+
+    /**
+     * Return {@code true} if the current thread is the event loop thread of this executor {@code false} otherwise.
+     */
+    boolean inEventLoop();
+
+    /**
+     * Return the metrics of the event loop of this executor.
+     */
+    EventLoopMetrics metrics();
+
+    /**
+     * Return {@code true} if sockets of this executor must not be registered in the selector,
+     * and must be read by dedicated threads which block on receiving {@code false} otherwise.
+     * In this case, {@link TransportProxy#read(long)} is called every iteration of the event loop.
+     */
+    boolean isBlockingReceive();
 }
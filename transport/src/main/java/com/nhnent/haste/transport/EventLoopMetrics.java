@@ -0,0 +1,70 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport;
+
+import com.nhnent.haste.common.Histogram;
+
+/**
+ * Histograms of an event loop which are recorded every iteration. Times are in nanoseconds.
+ * They are recorded by the event loop thread without allocation, and they can be read by any thread.
+ */
+public interface EventLoopMetrics {
+    /**
+     * Return the histogram of the time of an iteration, including waiting.
+     */
+    Histogram iterationTime();
+
+    /**
+     * Return the histogram of the time which was blocked in waiting for events.
+     */
+    Histogram selectTime();
+
+    /**
+     * Return the histogram of the time of reading and processing received datagrams.
+     */
+    Histogram readTime();
+
+    /**
+     * Return the histogram of the time of running tasks which were queued by {@link EventExecutor#execute(Runnable)},
+     * such as adding and migrating peers.
+     */
+    Histogram taskTime();
+
+    /**
+     * Return the histogram of the time of expiring timeouts and sending, which includes processing of outgoing commands.
+     */
+    Histogram sendTime();
+
+    /**
+     * Return the histogram of the time of an iteration except waiting.
+     * It is the sum of the read time, the task time and the send time.
+     */
+    Histogram workTime();
+
+    /**
+     * Return the histogram of the count of datagrams which were read in an iteration.
+     */
+    Histogram datagramsPerIteration();
+
+    /**
+     * Return the histogram of the lag of the event loop, that is how late it woke up after the wait timeout it requested.
+     * For instance, it grows when the event loop thread is descheduled or stopped by the garbage collector.
+     * {@link Histogram#getAndResetMax()} returns the maximum lag of an interval.
+     */
+    Histogram loopLag();
+}
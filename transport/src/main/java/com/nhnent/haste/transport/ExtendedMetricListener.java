@@ -0,0 +1,33 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport;
+
+/**
+ * The {@link MetricListener} which receives metrics of every event loop in addition.
+ * <strong>For performance testing purposes only!</strong>
+ */
+public interface ExtendedMetricListener extends MetricListener {
+    /**
+     * The callback which will be received metrics of an event loop periodically, after {@link #onReceive(int, double, double)}.
+     * The metrics are live, so it must not be kept after the callback returns.
+     *
+     * @param eventLoopIndex The index of the event loop, the listener event loop is {@code 0} and children are followed.
+     * @param metrics The metrics of the event loop.
+     */
+    void onReceiveEventLoop(int eventLoopIndex, EventLoopMetrics metrics);
+}
@@ -53,10 +53,16 @@ public interface NetworkPeer {
     ConnectionState getConnectionState();
 
     /**
-     * Enqueue a command which received data to a queue of channel.
-     * @return {@code true} if enqueuing was success {@code false} otherwise.
+     * Enqueue a command which received data to a queue of channel. It can be called in any thread.
+     * @return {@link SendResult#QUEUED} if enqueuing was success, or the reason of the failure otherwise.
      */
-    boolean enqueueOutgoingCommand(byte[] payload, int payloadLength, byte channelIndex, boolean encrypt, QoS qos);
+    SendResult enqueueOutgoingCommand(byte[] payload, int payloadLength, byte channelIndex, boolean encrypt, QoS qos);
+
+    /**
+     * Send enqueued commands without waiting for the send interval, for latency-critical data.
+     * Commands which are enqueued within a short window after it are sent together.
+     */
+    void flush();
 
     /**
      * Set {@link ApplicationPeer} in order to link between NetworkPeer and ApplicationPeer.
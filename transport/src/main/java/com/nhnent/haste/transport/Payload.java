@@ -22,15 +22,22 @@ import com.nhnent.haste.objectpool.Poolable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Wrapped a byte array which received through network in order to recycle object.
+ * It is reference-counted, because it is passed to the application without copying.
+ * A holder which passes it to another one calls {@link #retain()} for it, and every holder calls {@link #release()}
+ * when it does not use it anymore. It is returned to the pool when the last reference is released.
+ * Bytes after the length are left from the previous use, so they must not be read.
  */
 public class Payload implements Poolable {
     private static final Logger logger = LoggerFactory.getLogger(Payload.class);
 
     private static final int PAYLOAD_CAPACITY = 2048;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
     private static final int INITIAL_CREATE_COUNT = 16;
     private static final ObjectPool<Payload> pool = new ObjectPool<Payload>(true, INITIAL_CREATE_COUNT) {
         @Override
@@ -42,6 +49,7 @@ public class Payload implements Poolable {
     private Handle handle;
     private byte[] bytes;
     private int length;
+    private final AtomicInteger referenceCount = new AtomicInteger();
 
     private Payload(Handle handle, int capacity) {
         this.handle = handle;
@@ -54,11 +62,18 @@ public class Payload implements Poolable {
      * @return A payload object
      */
     public static Payload take() {
-        return pool.take();
+        Payload payload = pool.take();
+        if (payload != null)
+            payload.referenceCount.set(1);
+        return payload;
     }
 
-    private void clear() {
-        Arrays.fill(this.bytes, (byte) 0);
+    /**
+     * Add a reference for another holder, which must release it. It can be called in any thread.
+     */
+    public Payload retain() {
+        referenceCount.incrementAndGet();
+        return this;
     }
 
     /**
@@ -101,6 +116,26 @@ public class Payload implements Poolable {
         System.arraycopy(src, srcPos, this.bytes, dstPos, srcLen);
     }
 
+    /**
+     * Copy bytes from the current position of {@code src} to this payload, and the position of src is advanced.
+     *
+     * @param src    A source buffer.
+     * @param srcLen A length of bytes to copy.
+     */
+    public void copyBytes(ByteBuffer src, int srcLen) {
+        if (this.bytes.length < srcLen) {
+            this.bytes = Arrays.copyOf(this.bytes, srcLen);
+        }
+        src.get(this.bytes, 0, srcLen);
+    }
+
+    /**
+     * Return a read-only view of the data in payload without copying, which is valid until this payload is released.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(this.bytes, 0, this.length).slice().asReadOnlyBuffer();
+    }
+
     /**
      * Return a copy of the data in payload.
      *
@@ -128,11 +163,21 @@ public class Payload implements Poolable {
         this.length = length;
     }
 
+    /**
+     * Release a reference, and it is returned to the pool without clearing when the last one is released.
+     * It can be called in any thread.
+     */
     @Override
     public void release() {
+        if (referenceCount.decrementAndGet() > 0)
+            return;
+
         if (this.handle != null) {
+            // A large buffer, for instance a reassembled fragmented payload, is not kept in the pool.
+            if (this.bytes.length > MAX_POOLED_CAPACITY) {
+                this.bytes = new byte[PAYLOAD_CAPACITY];
+            }
             this.handle.release();
-            clear();
         }
     }
 }
@@ -0,0 +1,40 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport;
+
+/**
+ * The result of enqueuing a payload to a {@link NetworkPeer}.
+ */
+public enum SendResult {
+    /**
+     * The payload was queued, and it is sent by the event loop.
+     */
+    QUEUED,
+    /**
+     * The peer is not connected.
+     */
+    NOT_CONNECTED,
+    /**
+     * The channel does not exist.
+     */
+    INVALID_CHANNEL,
+    /**
+     * Too many payloads are waiting in the channel, because the peer can not keep up with them.
+     */
+    QUEUE_FULL
+}
@@ -0,0 +1,52 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport;
+
+/**
+ * A handle of {@link TimeoutTask} which was registered in the timer of {@link EventExecutor}.
+ * A timeout can be rescheduled many times without allocation, and all methods must be called in the event loop thread.
+ */
+public interface Timeout {
+    /**
+     * Return the task which is run when this timeout is expired.
+     */
+    TimeoutTask task();
+
+    /**
+     * Return the deadline of this timeout, it is meaningful only when this timeout is scheduled.
+     */
+    long deadline();
+
+    /**
+     * Return {@code true} if this timeout is waiting for expiration {@code false} otherwise.
+     */
+    boolean isScheduled();
+
+    /**
+     * Schedule this timeout to expire at {@code deadline}.
+     * If this timeout was already scheduled, the previous deadline is replaced.
+     *
+     * @param deadline The time when this timeout is expired.
+     */
+    void schedule(long deadline);
+
+    /**
+     * Cancel this timeout if it is scheduled.
+     */
+    void cancel();
+}
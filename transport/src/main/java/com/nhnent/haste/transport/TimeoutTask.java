@@ -0,0 +1,31 @@
+/*
+* Copyright 2016 NHN Entertainment Corp.
+*
+* NHN Entertainment Corp. licenses this file to you under the Apache License,
+* version 2.0 (the "License"); you may not use this file except in compliance
+* with the License. You may obtain a copy of the License at:
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package com.nhnent.haste.transport;
+
+/**
+ * A task which is expired by the timer of {@link EventExecutor}.
+ */
+public interface TimeoutTask {
+    /**
+     * Called in the event loop thread when the deadline of {@code timeout} was reached.
+     *
+     * @param timeout     The expired timeout. It can be rescheduled in this method.
+     * @param currentTime Current time.
+     */
+    void run(Timeout timeout, long currentTime);
+}
@@ -33,8 +33,9 @@ public interface TransportProxy {
      * Perform when SelectionKey was {@code OP_READ}
      *
      * @param currentTime Current time.
+     * @return The count of read datagrams or packets.
      */
-    void read(long currentTime);
+    int read(long currentTime);
 
     /**
      * Perform when SelectionKey was {@code OP_WRITE}